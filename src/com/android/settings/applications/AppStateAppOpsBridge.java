@@ -55,6 +55,10 @@ public abstract class AppStateAppOpsBridge extends AppStateBaseBridge {
     private final Context mContext;
     private final int[] mAppOpsOpCodes;
     private final String[] mPermissions;
+    private final AppOpsManager.OnOpChangedListener mOnOpChangedListener =
+            (op, packageName) -> notifyPackageChanged(packageName);
+    private final PackageManager.OnPermissionsChangedListener mOnPermissionsChangedListener =
+            uid -> notifyUidChanged(uid);
 
     public AppStateAppOpsBridge(Context context, ApplicationsState appState, Callback callback,
             int appOpsOpCode, String[] permissions) {
@@ -99,6 +103,32 @@ public abstract class AppStateAppOpsBridge extends AppStateBaseBridge {
 
     protected abstract void updateExtraInfo(AppEntry app, String pkg, int uid);
 
+    @Override
+    protected boolean startWatchingChanges() {
+        for (int op : mAppOpsOpCodes) {
+            mAppOpsManager.startWatchingMode(op, null /* packageName */, mOnOpChangedListener);
+        }
+        mContext.getPackageManager().addOnPermissionsChangeListener(
+                mOnPermissionsChangedListener);
+        return true;
+    }
+
+    @Override
+    protected void stopWatchingChanges() {
+        mAppOpsManager.stopWatchingMode(mOnOpChangedListener);
+        mContext.getPackageManager().removeOnPermissionsChangeListener(
+                mOnPermissionsChangedListener);
+    }
+
+    @Override
+    protected void loadChangedExtraInfo(AppEntry app) {
+        // Apps that don't request any of mPermissions have no extra info, and a change to their
+        // app ops or permissions doesn't make them show up.
+        if (app.extraInfo != null) {
+            super.loadChangedExtraInfo(app);
+        }
+    }
+
     private boolean doesAnyPermissionMatch(String permissionToMatch, String[] permissions) {
         for (String permission : permissions) {
             if (permissionToMatch.equals(permission)) {
@@ -18,15 +18,24 @@ package com.android.settings.applications;
 import android.os.Handler;
 import android.os.Looper;
 import android.os.Message;
+import android.util.ArrayMap;
+import android.util.SparseIntArray;
+
+import androidx.annotation.VisibleForTesting;
 
 import com.android.settingslib.applications.ApplicationsState;
 import com.android.settingslib.applications.ApplicationsState.AppEntry;
 import com.android.settingslib.applications.ApplicationsState.Session;
 
 import java.util.ArrayList;
+import java.util.WeakHashMap;
 
 /**
  * Common base class for bridging information to ApplicationsState.
+ *
+ * <p>Subclasses that can observe changes to their state (see {@link #startWatchingChanges()})
+ * only reload the extra info of the packages that changed since the last load, instead of the
+ * extra info of every app each time they are resumed.
  */
 public abstract class AppStateBaseBridge implements ApplicationsState.Callbacks {
 
@@ -36,6 +45,17 @@ public abstract class AppStateBaseBridge implements ApplicationsState.Callbacks
     protected final BackgroundHandler mHandler;
     protected final MainHandler mMainHandler;
 
+    private final Object mChangeLock = new Object();
+    // Versions of the changes reported by the subclass, guarded by mChangeLock.
+    private int mChangeVersion;
+    private int mAllChangedVersion;
+    private final ArrayMap<String, Integer> mPackageChangeVersions = new ArrayMap<>();
+    private final SparseIntArray mUidChangeVersions = new SparseIntArray();
+    // Extra info loaded for each app, only accessed on the background thread.
+    private final WeakHashMap<AppEntry, Snapshot> mSnapshots = new WeakHashMap<>();
+    private int mLoadedVersion = -1;
+    private volatile boolean mWatchingChanges;
+
     public AppStateBaseBridge(ApplicationsState appState, Callback callback) {
         mAppState = appState;
         mAppSession = mAppState != null ? mAppState.newSession(this) : null;
@@ -49,6 +69,9 @@ public abstract class AppStateBaseBridge implements ApplicationsState.Callbacks
     }
 
     public void resume() {
+        if (!mWatchingChanges) {
+            mWatchingChanges = startWatchingChanges();
+        }
         mHandler.sendEmptyMessage(BackgroundHandler.MSG_LOAD_ALL);
         mAppSession.onResume();
     }
@@ -58,6 +81,10 @@ public abstract class AppStateBaseBridge implements ApplicationsState.Callbacks
     }
 
     public void release() {
+        if (mWatchingChanges) {
+            mWatchingChanges = false;
+            stopWatchingChanges();
+        }
         mAppSession.onDestroy();
     }
 
@@ -109,6 +136,100 @@ public abstract class AppStateBaseBridge implements ApplicationsState.Callbacks
 
     protected abstract void updateExtraInfo(AppEntry app, String pkg, int uid);
 
+    /**
+     * Starts observing the state this bridge loads. Changes must be reported through
+     * {@link #notifyPackageChanged}, {@link #notifyUidChanged} or {@link #notifyAllChanged} until
+     * {@link #stopWatchingChanges()} is called.
+     *
+     * @return false if changes can't be observed, in which case the extra info of every app is
+     * reloaded each time the bridge is resumed.
+     */
+    protected boolean startWatchingChanges() {
+        return false;
+    }
+
+    /** Stops observing changes started by {@link #startWatchingChanges()}. */
+    protected void stopWatchingChanges() {
+    }
+
+    /**
+     * Reloads the extra info of an app reported as changed. Only called when the extra info of
+     * every other app is still current.
+     */
+    protected void loadChangedExtraInfo(AppEntry app) {
+        updateExtraInfo(app, app.info.packageName, app.info.uid);
+    }
+
+    protected final void notifyPackageChanged(String pkg) {
+        synchronized (mChangeLock) {
+            mPackageChangeVersions.put(pkg, ++mChangeVersion);
+        }
+    }
+
+    protected final void notifyUidChanged(int uid) {
+        synchronized (mChangeLock) {
+            mUidChangeVersions.put(uid, ++mChangeVersion);
+        }
+    }
+
+    protected final void notifyAllChanged() {
+        synchronized (mChangeLock) {
+            mAllChangedVersion = ++mChangeVersion;
+        }
+    }
+
+    @VisibleForTesting
+    void loadExtraInfo() {
+        final int version;
+        final boolean allChanged;
+        synchronized (mChangeLock) {
+            version = mChangeVersion;
+            allChanged = mAllChangedVersion > mLoadedVersion;
+        }
+        final ArrayList<AppEntry> apps = mAppSession.getAllApps();
+        if (!mWatchingChanges || allChanged || mLoadedVersion < 0 || apps == null
+                || hasUntrackedApps(apps)) {
+            loadAllExtraInfo();
+            mSnapshots.clear();
+            if (apps != null) {
+                for (AppEntry app : apps) {
+                    mSnapshots.put(app, new Snapshot(app));
+                }
+            }
+        } else {
+            for (AppEntry app : apps) {
+                if (hasChangedSince(app, mLoadedVersion)) {
+                    loadChangedExtraInfo(app);
+                    mSnapshots.put(app, new Snapshot(app));
+                }
+            }
+        }
+        mLoadedVersion = version;
+    }
+
+    /**
+     * Whether some apps are new, were updated, or had their extra info replaced by another bridge
+     * since they were loaded; the extra info of those can't be reloaded incrementally.
+     */
+    private boolean hasUntrackedApps(ArrayList<AppEntry> apps) {
+        for (AppEntry app : apps) {
+            final Snapshot snapshot = mSnapshots.get(app);
+            if (snapshot == null || snapshot.mInfo != app.info
+                    || snapshot.mExtraInfo != app.extraInfo) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean hasChangedSince(AppEntry app, int version) {
+        synchronized (mChangeLock) {
+            final Integer packageVersion = mPackageChangeVersions.get(app.info.packageName);
+            return (packageVersion != null && packageVersion > version)
+                    || mUidChangeVersions.get(app.info.uid, -1) > version;
+        }
+    }
+
     private class MainHandler extends Handler {
         private static final int MSG_INFO_UPDATED = 1;
 
@@ -138,7 +259,7 @@ public abstract class AppStateBaseBridge implements ApplicationsState.Callbacks
         public void handleMessage(Message msg) {
             switch (msg.what) {
                 case MSG_LOAD_ALL:
-                    loadAllExtraInfo();
+                    loadExtraInfo();
                     mMainHandler.sendEmptyMessage(MainHandler.MSG_INFO_UPDATED);
                     break;
                 case MSG_FORCE_LOAD_PKG:
@@ -150,6 +271,9 @@ public abstract class AppStateBaseBridge implements ApplicationsState.Callbacks
                         AppEntry app = apps.get(i);
                         if (app.info.uid == uid && pkg.equals(app.info.packageName)) {
                             updateExtraInfo(app, pkg, uid);
+                            if (mSnapshots.containsKey(app)) {
+                                mSnapshots.put(app, new Snapshot(app));
+                            }
                         }
                     }
                     mMainHandler.sendEmptyMessage(MainHandler.MSG_INFO_UPDATED);
@@ -158,6 +282,15 @@ public abstract class AppStateBaseBridge implements ApplicationsState.Callbacks
         }
     }
 
+    private static class Snapshot {
+        private final Object mInfo;
+        private final Object mExtraInfo;
+
+        Snapshot(AppEntry app) {
+            mInfo = app.info;
+            mExtraInfo = app.extraInfo;
+        }
+    }
 
     public interface Callback {
         void onExtraInfoUpdated();
@@ -15,7 +15,11 @@
  */
 package com.android.settings.applications;
 
+import android.content.BroadcastReceiver;
 import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.PowerManager;
 
 import com.android.settingslib.applications.ApplicationsState;
 import com.android.settingslib.applications.ApplicationsState.AppEntry;
@@ -30,13 +34,34 @@ import java.util.ArrayList;
  */
 public class AppStatePowerBridge extends AppStateBaseBridge {
 
+    private final Context mContext;
     private final PowerWhitelistBackend mBackend;
+    private final BroadcastReceiver mWhitelistReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            // The broadcast doesn't say which packages changed.
+            notifyAllChanged();
+        }
+    };
 
     public AppStatePowerBridge(Context context, ApplicationsState appState, Callback callback) {
         super(appState, callback);
+        mContext = context;
         mBackend = PowerWhitelistBackend.getInstance(context);
     }
 
+    @Override
+    protected boolean startWatchingChanges() {
+        mContext.registerReceiver(mWhitelistReceiver,
+                new IntentFilter(PowerManager.ACTION_POWER_SAVE_WHITELIST_CHANGED));
+        return true;
+    }
+
+    @Override
+    protected void stopWatchingChanges() {
+        mContext.unregisterReceiver(mWhitelistReceiver);
+    }
+
     @Override
     protected void loadAllExtraInfo() {
         ArrayList<AppEntry> apps = mAppSession.getAllApps();
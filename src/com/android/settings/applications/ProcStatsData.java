@@ -23,12 +23,15 @@ import android.os.ParcelFileDescriptor;
 import android.os.RemoteException;
 import android.os.ServiceManager;
 import android.os.SystemClock;
+import android.text.format.DateUtils;
 import android.text.format.Formatter;
 import android.util.ArrayMap;
 import android.util.Log;
 import android.util.LongSparseArray;
 import android.util.SparseArray;
 
+import androidx.annotation.VisibleForTesting;
+
 import com.android.internal.app.ProcessMap;
 import com.android.internal.app.procstats.DumpUtils;
 import com.android.internal.app.procstats.IProcessStats;
@@ -55,6 +58,15 @@ public class ProcStatsData {
 
     private static ProcessStats sStatsXfer;
 
+    // Decoded stats are reused for this long when switching between durations.
+    @VisibleForTesting
+    static final long MAX_CACHED_STATS_AGE_MS = DateUtils.MINUTE_IN_MILLIS;
+
+    // Decoded stats per duration, shared by all the instances so that switching durations back
+    // and forth doesn't fetch and decode them again. Guarded by itself. The cached stats are
+    // never modified.
+    private static final LongSparseArray<CachedStats> sStatsCache = new LongSparseArray<>();
+
     private PackageManager mPm;
     private Context mContext;
     private long memTotalTime;
@@ -125,7 +137,9 @@ public class ProcStatsData {
     public void setDuration(long duration) {
         if (duration != mDuration) {
             mDuration = duration;
-            refreshStats(true);
+            // Recent stats of the new duration are reused when available.
+            mStats = null;
+            refreshStats(false);
         }
     }
 
@@ -137,11 +151,23 @@ public class ProcStatsData {
         return pkgEntries;
     }
 
+    /**
+     * Rebuilds the entries.
+     *
+     * @param forceLoad whether fresh stats are fetched even if stats are already loaded
+     */
     public void refreshStats(boolean forceLoad) {
-        if (mStats == null || forceLoad) {
+        if (forceLoad) {
+            load();
+        } else if (mStats == null && !loadCached()) {
             load();
         }
 
+        buildEntries();
+    }
+
+    @VisibleForTesting
+    void buildEntries() {
         pkgEntries = new ArrayList<>();
 
         long now = SystemClock.uptimeMillis();
@@ -194,31 +220,30 @@ public class ProcStatsData {
         // much a process runs for as a sign of the proportion of Z-Ram it is responsible for.
 
         long zramMem = (long) (zramWeight / memTotalTime);
+        final int pkgCount = pkgEntries.size();
+        final long[] pkgRunTimes = new long[pkgCount];
+        final long[] maxRunTimes = new long[pkgCount];
         long totalTime = 0;
-        for (int i = pkgEntries.size() - 1; i >= 0; i--) {
-            ProcStatsPackageEntry entry = pkgEntries.get(i);
-            for (int j = entry.mEntries.size() - 1; j >= 0; j--) {
-                ProcStatsEntry proc = entry.mEntries.get(j);
-                totalTime += proc.mRunDuration;
-            }
-        }
-        for (int i = pkgEntries.size() - 1; i >= 0 && totalTime > 0; i--) {
+        for (int i = pkgCount - 1; i >= 0; i--) {
             ProcStatsPackageEntry entry = pkgEntries.get(i);
-            long pkgRunTime = 0;
-            long maxRunTime = 0;
             for (int j = entry.mEntries.size() - 1; j >= 0; j--) {
-                ProcStatsEntry proc = entry.mEntries.get(j);
-                pkgRunTime += proc.mRunDuration;
-                if (proc.mRunDuration > maxRunTime) {
-                    maxRunTime = proc.mRunDuration;
+                final long runDuration = entry.mEntries.get(j).mRunDuration;
+                pkgRunTimes[i] += runDuration;
+                if (runDuration > maxRunTimes[i]) {
+                    maxRunTimes[i] = runDuration;
                 }
             }
+            totalTime += pkgRunTimes[i];
+        }
+        for (int i = pkgCount - 1; i >= 0 && totalTime > 0; i--) {
+            long pkgRunTime = pkgRunTimes[i];
             long pkgZRam = (zramMem*pkgRunTime)/totalTime;
             if (pkgZRam > 0) {
+                ProcStatsPackageEntry entry = pkgEntries.get(i);
                 zramMem -= pkgZRam;
                 totalTime -= pkgRunTime;
                 ProcStatsEntry procEntry = new ProcStatsEntry(entry.mPackage, 0,
-                        mContext.getString(R.string.process_stats_os_zram), maxRunTime,
+                        mContext.getString(R.string.process_stats_os_zram), maxRunTimes[i],
                         pkgZRam, memTotalTime);
                 procEntry.evaluateTargetPackage(mPm, mStats, null, null, sEntryCompare, mUseUss);
                 entry.addEntry(procEntry);
@@ -341,21 +366,78 @@ public class ProcStatsData {
         return procEntries;
     }
 
+    /** Uses recent stats of the current duration if there are some, returns whether it did. */
+    private boolean loadCached() {
+        final CachedStats cached;
+        synchronized (sStatsCache) {
+            evictExpiredStatsLocked(SystemClock.uptimeMillis());
+            cached = sStatsCache.get(mDuration);
+        }
+        if (cached == null) {
+            return false;
+        }
+        mStats = cached.mStats;
+        return true;
+    }
+
     private void load() {
+        final ProcessStats stats = fetchStats(mDuration);
+        if (stats == null) {
+            return;
+        }
+        mStats = stats;
+        if (mStats.mReadError != null) {
+            Log.w(TAG, "Failure reading process stats: " + mStats.mReadError);
+        } else {
+            final long now = SystemClock.uptimeMillis();
+            synchronized (sStatsCache) {
+                evictExpiredStatsLocked(now);
+                sStatsCache.put(mDuration, new CachedStats(mStats, now));
+            }
+        }
+    }
+
+    @VisibleForTesting
+    ProcessStats fetchStats(long duration) {
         try {
-            ParcelFileDescriptor pfd = mProcessStats.getStatsOverTime(mDuration);
-            mStats = new ProcessStats(false);
+            ParcelFileDescriptor pfd = mProcessStats.getStatsOverTime(duration);
+            final ProcessStats stats = new ProcessStats(false);
             InputStream is = new ParcelFileDescriptor.AutoCloseInputStream(pfd);
-            mStats.read(is);
+            stats.read(is);
             try {
                 is.close();
             } catch (IOException e) {
             }
-            if (mStats.mReadError != null) {
-                Log.w(TAG, "Failure reading process stats: " + mStats.mReadError);
-            }
+            return stats;
         } catch (RemoteException e) {
             Log.e(TAG, "RemoteException:", e);
+            return null;
+        }
+    }
+
+    // Drops the stats too old to be reused, so that the cache doesn't outlive the screen.
+    private static void evictExpiredStatsLocked(long now) {
+        for (int i = sStatsCache.size() - 1; i >= 0; i--) {
+            if (now - sStatsCache.valueAt(i).mLoadTime >= MAX_CACHED_STATS_AGE_MS) {
+                sStatsCache.removeAt(i);
+            }
+        }
+    }
+
+    @VisibleForTesting
+    static void clearCache() {
+        synchronized (sStatsCache) {
+            sStatsCache.clear();
+        }
+    }
+
+    private static final class CachedStats {
+        final ProcessStats mStats;
+        final long mLoadTime;
+
+        CachedStats(ProcessStats stats, long loadTime) {
+            mStats = stats;
+            mLoadTime = loadTime;
         }
     }
 
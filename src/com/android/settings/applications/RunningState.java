@@ -18,6 +18,7 @@ package com.android.settings.applications;
 
 import android.app.ActivityManager;
 import android.app.ActivityThread;
+import android.app.IActivityManager;
 import android.content.BroadcastReceiver;
 import android.content.ComponentName;
 import android.content.Context;
@@ -39,10 +40,13 @@ import android.os.Message;
 import android.os.RemoteException;
 import android.os.UserHandle;
 import android.os.UserManager;
+import android.text.TextUtils;
 import android.text.format.Formatter;
 import android.util.Log;
 import android.util.SparseArray;
 
+import androidx.annotation.VisibleForTesting;
+
 import com.android.settings.R;
 import com.android.settingslib.Utils;
 import com.android.settingslib.applications.InterestingConfigChanges;
@@ -125,7 +129,7 @@ public class RunningState {
     final SparseArray<MergedItem> mOtherUserBackgroundItems = new SparseArray<MergedItem>();
 
     static class AppProcessInfo {
-        final ActivityManager.RunningAppProcessInfo info;
+        ActivityManager.RunningAppProcessInfo info;
         boolean hasServices;
         boolean hasForegroundServices;
 
@@ -136,6 +140,81 @@ public class RunningState {
 
     // Temporary structure used when updating above information.
     final SparseArray<AppProcessInfo> mTmpAppProcesses = new SparseArray<AppProcessInfo>();
+    // Recycled entries of mTmpAppProcesses.
+    final ArrayList<AppProcessInfo> mAppProcessInfoPool = new ArrayList<AppProcessInfo>();
+
+    // The fields of a running process that the process and service graphs are built from.
+    static class ProcessSample {
+        int mUid;
+        String mProcessName;
+        int mImportance;
+        int mImportanceReasonPid;
+        int mImportanceReasonCode;
+        int mFlags;
+        int mSampleSeq;
+
+        boolean update(ActivityManager.RunningAppProcessInfo pi) {
+            final boolean changed = mUid != pi.uid
+                    || !TextUtils.equals(mProcessName, pi.processName)
+                    || mImportance != pi.importance
+                    || mImportanceReasonPid != pi.importanceReasonPid
+                    || mImportanceReasonCode != pi.importanceReasonCode
+                    || mFlags != pi.flags;
+            mUid = pi.uid;
+            mProcessName = pi.processName;
+            mImportance = pi.importance;
+            mImportanceReasonPid = pi.importanceReasonPid;
+            mImportanceReasonCode = pi.importanceReasonCode;
+            mFlags = pi.flags;
+            return changed;
+        }
+    }
+
+    // The fields of a running service that the process and service graphs are built from.
+    static class ServiceSample {
+        ComponentName mService;
+        int mUid;
+        int mPid;
+        String mProcess;
+        boolean mForeground;
+        boolean mStarted;
+        int mRestarting;
+        long mActiveSince;
+        int mClientLabel;
+        String mClientPackage;
+
+        boolean update(ActivityManager.RunningServiceInfo si) {
+            final boolean changed = mUid != si.uid
+                    || mPid != si.pid
+                    || mForeground != si.foreground
+                    || mStarted != si.started
+                    || mRestarting != si.restarting
+                    || mActiveSince != si.activeSince
+                    || mClientLabel != si.clientLabel
+                    || !TextUtils.equals(mClientPackage, si.clientPackage)
+                    || !TextUtils.equals(mProcess, si.process)
+                    || (mService == null ? si.service != null : !mService.equals(si.service));
+            mService = si.service;
+            mUid = si.uid;
+            mPid = si.pid;
+            mProcess = si.process;
+            mForeground = si.foreground;
+            mStarted = si.started;
+            mRestarting = si.restarting;
+            mActiveSince = si.activeSince;
+            mClientLabel = si.clientLabel;
+            mClientPackage = si.clientPackage;
+            return changed;
+        }
+    }
+
+    // Per-pid snapshot of the processes and ordered snapshot of the services seen by the last
+    // update, used to skip rebuilding the graphs when nothing but memory usage has changed.
+    final SparseArray<ProcessSample> mProcessSamples = new SparseArray<ProcessSample>();
+    final ArrayList<ProcessSample> mProcessSamplePool = new ArrayList<ProcessSample>();
+    final ArrayList<ServiceSample> mServiceSamples = new ArrayList<ServiceSample>();
+    int mNumServiceSamples;
+    int mSampleSeq;
 
     int mSequence = 0;
 
@@ -494,6 +573,8 @@ public class RunningState {
 
             boolean changed = false;
             ServiceItem si = mServices.get(service.service);
+            final ActivityManager.RunningServiceInfo lastService =
+                    si != null ? si.mRunningService : null;
             if (si == null) {
                 changed = true;
                 si = new ServiceItem(mUserId);
@@ -528,21 +609,28 @@ public class RunningState {
                     si.mShownAsStarted = false;
                     changed = true;
                 }
-                try {
-                    Resources clientr = pm.getResourcesForApplication(service.clientPackage);
-                    String label = clientr.getString(service.clientLabel);
-                    si.mDescription = context.getResources().getString(
-                            R.string.service_client_name, label);
-                } catch (PackageManager.NameNotFoundException e) {
-                    si.mDescription = null;
+                // Only resolve the client label again if the client changed.
+                if (changed || si.mDescription == null || lastService == null
+                        || lastService.clientLabel != service.clientLabel
+                        || !TextUtils.equals(lastService.clientPackage, service.clientPackage)) {
+                    try {
+                        Resources clientr = pm.getResourcesForApplication(service.clientPackage);
+                        String label = clientr.getString(service.clientLabel);
+                        si.mDescription = context.getResources().getString(
+                                R.string.service_client_name, label);
+                    } catch (PackageManager.NameNotFoundException e) {
+                        si.mDescription = null;
+                    }
                 }
             } else {
                 if (!si.mShownAsStarted) {
                     si.mShownAsStarted = true;
                     changed = true;
                 }
-                si.mDescription = context.getResources().getString(
-                        R.string.service_started_by_app);
+                if (changed || si.mDescription == null) {
+                    si.mDescription = context.getResources().getString(
+                            R.string.service_started_by_app);
+                }
             }
             
             return changed;
@@ -856,6 +944,11 @@ public class RunningState {
     }
 
     private void reset() {
+        for (int i = 0; i < mProcessSamples.size(); i++) {
+            mProcessSamplePool.add(mProcessSamples.valueAt(i));
+        }
+        mProcessSamples.clear();
+        mNumServiceSamples = 0;
         mServiceProcessesByName.clear();
         mServiceProcessesByPid.clear();
         mInterestingProcesses.clear();
@@ -893,11 +986,57 @@ public class RunningState {
         userItem.mChildren.add(newItem);
     }
 
-    private boolean update(Context context, ActivityManager am) {
+    /**
+     * Records the running services and processes, returning whether any of them was added,
+     * removed or changed since the previous sample.
+     */
+    @VisibleForTesting
+    boolean updateSamples(List<ActivityManager.RunningServiceInfo> services, int NS,
+            List<ActivityManager.RunningAppProcessInfo> processes, int NP) {
+        boolean changed = NS != mNumServiceSamples;
+        for (int i = 0; i < NS; i++) {
+            ServiceSample sample;
+            if (i < mServiceSamples.size()) {
+                sample = mServiceSamples.get(i);
+            } else {
+                sample = new ServiceSample();
+                mServiceSamples.add(sample);
+            }
+            changed |= sample.update(services.get(i)) || i >= mNumServiceSamples;
+        }
+        mNumServiceSamples = NS;
+
+        mSampleSeq++;
+        for (int i = 0; i < NP; i++) {
+            final ActivityManager.RunningAppProcessInfo pi = processes.get(i);
+            ProcessSample sample = mProcessSamples.get(pi.pid);
+            if (sample == null) {
+                changed = true;
+                final int poolSize = mProcessSamplePool.size();
+                sample = poolSize > 0 ? mProcessSamplePool.remove(poolSize - 1)
+                        : new ProcessSample();
+                sample.update(pi);
+                mProcessSamples.put(pi.pid, sample);
+            } else {
+                changed |= sample.update(pi);
+            }
+            sample.mSampleSeq = mSampleSeq;
+        }
+        for (int i = mProcessSamples.size() - 1; i >= 0; i--) {
+            final ProcessSample sample = mProcessSamples.valueAt(i);
+            if (sample.mSampleSeq != mSampleSeq) {
+                changed = true;
+                mProcessSamples.removeAt(i);
+                mProcessSamplePool.add(sample);
+            }
+        }
+        return changed;
+    }
+
+    @VisibleForTesting
+    boolean update(Context context, ActivityManager am) {
         final PackageManager pm = context.getPackageManager();
 
-        mSequence++;
-        
         boolean changed = false;
 
         // Retrieve list of services, filtering out anything that definitely
@@ -932,10 +1071,53 @@ public class RunningState {
         List<ActivityManager.RunningAppProcessInfo> processes
                 = am.getRunningAppProcesses();
         final int NP = processes != null ? processes.size() : 0;
+
+        if (!updateSamples(services, NS, processes, NP)) {
+            // Nothing the graphs depend on has changed: keep them and the current sequence,
+            // and only pick up the latest service and process info and memory usage.
+            for (int i=0; i<NS; i++) {
+                ActivityManager.RunningServiceInfo si = services.get(i);
+                HashMap<String, ProcessItem> procs = mServiceProcessesByName.get(si.uid);
+                ProcessItem proc = procs != null ? procs.get(si.process) : null;
+                ServiceItem service = proc != null ? proc.mServices.get(si.service) : null;
+                if (service != null) {
+                    service.mRunningService = si;
+                }
+            }
+            for (int i=0; i<NP; i++) {
+                ActivityManager.RunningAppProcessInfo pi = processes.get(i);
+                ProcessItem proc = mServiceProcessesByPid.get(pi.pid);
+                if (proc == null) {
+                    proc = mRunningProcesses.get(pi.pid);
+                }
+                if (proc != null) {
+                    proc.mRunningProcessInfo = pi;
+                }
+            }
+            return updateSizes(context, false);
+        }
+
+        mSequence++;
+
+        for (int i = 0; i < mTmpAppProcesses.size(); i++) {
+            final AppProcessInfo ainfo = mTmpAppProcesses.valueAt(i);
+            ainfo.info = null;
+            mAppProcessInfoPool.add(ainfo);
+        }
         mTmpAppProcesses.clear();
         for (int i=0; i<NP; i++) {
             ActivityManager.RunningAppProcessInfo pi = processes.get(i);
-            mTmpAppProcesses.put(pi.pid, new AppProcessInfo(pi));
+            final int poolSize = mAppProcessInfoPool.size();
+            AppProcessInfo ainfo;
+            if (poolSize > 0) {
+                ainfo = mAppProcessInfoPool.remove(poolSize - 1);
+                ainfo.info = pi;
+                ainfo.hasServices = false;
+                ainfo.hasForegroundServices = false;
+            } else {
+                ainfo = new AppProcessInfo(pi);
+            }
+            mTmpAppProcesses.put(pi.pid, ainfo);
         }
 
         // Initial iteration through running services to collect per-process
@@ -1276,7 +1458,15 @@ public class RunningState {
                 mMergedItems = newMergedItems;
             }
         }
-        
+
+        return updateSizes(context, changed);
+    }
+
+    /**
+     * Retrieves the memory used by the processes of the current graphs and updates the
+     * background items accordingly.
+     */
+    private boolean updateSizes(Context context, boolean changed) {
         // Count number of interesting other (non-active) processes, and
         // build a list of all processes we will retrieve memory for.
         mAllProcessItems.clear();
@@ -1284,7 +1474,7 @@ public class RunningState {
         int numBackgroundProcesses = 0;
         int numForegroundProcesses = 0;
         int numServiceProcesses = 0;
-        NRP = mRunningProcesses.size();
+        final int NRP = mRunningProcesses.size();
         for (int i=0; i<NRP; i++) {
             ProcessItem proc = mRunningProcesses.valueAt(i);
             if (proc.mCurSeq != mSequence) {
@@ -1319,7 +1509,7 @@ public class RunningState {
             for (int i=0; i<numProc; i++) {
                 pids[i] = mAllProcessItems.get(i).mPid;
             }
-            long[] pss = ActivityManager.getService()
+            long[] pss = getActivityManagerService()
                     .getProcessPss(pids);
             int bgIndex = 0;
             for (int i=0; i<pids.length; i++) {
@@ -1332,8 +1522,7 @@ public class RunningState {
                     backgroundProcessMemory += proc.mSize;
                     MergedItem mergedItem;
                     if (newBackgroundItems != null) {
-                        mergedItem = proc.mMergedItem = new MergedItem(proc.mUserId);
-                        proc.mMergedItem.mProcess = proc;
+                        mergedItem = obtainBackgroundItem(proc);
                         diffUsers |= mergedItem.mUserId != mMyUserId;
                         newBackgroundItems.add(mergedItem);
                     } else {
@@ -1345,8 +1534,7 @@ public class RunningState {
                                 diffUsers |= mergedItem.mUserId != mMyUserId;
                                 newBackgroundItems.add(mergedItem);
                             }
-                            mergedItem = proc.mMergedItem = new MergedItem(proc.mUserId);
-                            proc.mMergedItem.mProcess = proc;
+                            mergedItem = obtainBackgroundItem(proc);
                             diffUsers |= mergedItem.mUserId != mMyUserId;
                             newBackgroundItems.add(mergedItem);
                         } else {
@@ -1436,6 +1624,26 @@ public class RunningState {
         return changed;
     }
     
+    @VisibleForTesting
+    IActivityManager getActivityManagerService() {
+        return ActivityManager.getService();
+    }
+
+    /**
+     * Returns the merged item representing a background process, reusing the one the process
+     * was last shown with when possible.
+     */
+    private MergedItem obtainBackgroundItem(ProcessItem proc) {
+        MergedItem mergedItem = proc.mMergedItem;
+        if (mergedItem == null || mergedItem.mProcess != proc
+                || mergedItem.mServices.size() > 0 || mergedItem.mUserId != proc.mUserId) {
+            mergedItem = new MergedItem(proc.mUserId);
+            mergedItem.mProcess = proc;
+            proc.mMergedItem = mergedItem;
+        }
+        return mergedItem;
+    }
+
     void setWatchingBackgroundItems(boolean watching) {
         synchronized (mLock) {
             mWatchingBackgroundItems = watching;
@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.settings.applications.manageapplications;
+
+import android.icu.text.Transliterator;
+import android.text.TextUtils;
+import android.util.Log;
+
+import androidx.annotation.WorkerThread;
+
+import com.android.settingslib.applications.ApplicationsState.AppEntry;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.WeakHashMap;
+
+/**
+ * Search index over the labels of the app entries shown by {@link ManageApplications}.
+ *
+ * <p>Each label is normalized once (transliterated to latin, diacritics folded and lowercased
+ * for the current locale) and kept until the label of the entry changes, so rebuilding the list
+ * only normalizes entries that are new or renamed. A query that extends the previous one is
+ * matched against the previous results only.
+ */
+class AppSearchIndex {
+
+    private static final String TAG = "AppSearchIndex";
+    private static final String TRANSLITERATOR_ID =
+            "Any-Latin; NFD; [:Nonspacing Mark:] Remove; NFC";
+
+    // Keyed by identity: AppEntry does not override equals(), and entries dropped by
+    // ApplicationsState should not be kept alive by the index.
+    private final WeakHashMap<AppEntry, IndexedLabel> mLabels = new WeakHashMap<>();
+
+    private Transliterator mTransliterator;
+    private boolean mTransliteratorUnavailable;
+    private Locale mLocale;
+
+    private List<AppEntry> mSource;
+    private IndexedLabel mLastQuery;
+    private List<AppEntry> mLastMatches;
+
+    /**
+     * Sets the list of entries that subsequent queries are matched against. Labels of entries
+     * already known to the index are reused.
+     */
+    synchronized void update(List<AppEntry> entries) {
+        if (entries == mSource) {
+            return;
+        }
+        mSource = entries;
+        resetLastQuery();
+    }
+
+    /**
+     * Returns the entries of the current source list whose label matches {@code query}, in the
+     * order of the source list.
+     */
+    @WorkerThread
+    synchronized List<AppEntry> query(CharSequence query) {
+        if (mSource == null) {
+            return new ArrayList<>();
+        }
+        final Locale locale = Locale.getDefault();
+        if (!locale.equals(mLocale)) {
+            mLocale = locale;
+            mLabels.clear();
+            resetLastQuery();
+        }
+        final IndexedLabel normalizedQuery = new IndexedLabel(query.toString());
+        final List<AppEntry> candidates = mLastQuery != null
+                && normalizedQuery.narrows(mLastQuery) ? mLastMatches : mSource;
+
+        final List<AppEntry> matches = new ArrayList<>();
+        for (AppEntry entry : candidates) {
+            if (getLabel(entry).contains(normalizedQuery)) {
+                matches.add(entry);
+            }
+        }
+        mLastQuery = normalizedQuery;
+        mLastMatches = matches;
+        return matches;
+    }
+
+    private void resetLastQuery() {
+        mLastQuery = null;
+        mLastMatches = null;
+    }
+
+    private IndexedLabel getLabel(AppEntry entry) {
+        final String label = entry.label;
+        IndexedLabel indexed = mLabels.get(entry);
+        // ApplicationsState refreshes the label in place when a package is updated.
+        if (indexed == null || !TextUtils.equals(indexed.mLabel, label)) {
+            indexed = new IndexedLabel(label);
+            mLabels.put(entry, indexed);
+        }
+        return indexed;
+    }
+
+    private String normalize(String text) {
+        if (!mTransliteratorUnavailable && mTransliterator == null) {
+            try {
+                mTransliterator = Transliterator.getInstance(TRANSLITERATOR_ID);
+            } catch (IllegalArgumentException e) {
+                Log.w(TAG, "Transliterator unavailable, folding diacritics only", e);
+                mTransliteratorUnavailable = true;
+            }
+        }
+        final String folded;
+        if (mTransliterator != null) {
+            folded = mTransliterator.transliterate(text);
+        } else {
+            folded = Normalizer.normalize(text, Normalizer.Form.NFD)
+                    .replaceAll("\\p{Mn}+", "");
+        }
+        return folded.toLowerCase(mLocale);
+    }
+
+    private final class IndexedLabel {
+        private final String mLabel;
+        private final String mLowerCase;
+        private final String mNormalized;
+
+        IndexedLabel(String label) {
+            mLabel = label;
+            if (label == null) {
+                mLowerCase = "";
+                mNormalized = "";
+            } else {
+                mLowerCase = label.toLowerCase(mLocale);
+                mNormalized = normalize(label);
+            }
+        }
+
+        /**
+         * Matches either form so that queries typed in the script of the label keep working
+         * after transliteration.
+         */
+        boolean contains(IndexedLabel query) {
+            return mNormalized.contains(query.mNormalized)
+                    || mLowerCase.contains(query.mLowerCase);
+        }
+
+        /** Whether every label matching this query also matches {@code previous}. */
+        boolean narrows(IndexedLabel previous) {
+            return mNormalized.contains(previous.mNormalized)
+                    && mLowerCase.contains(previous.mLowerCase);
+        }
+    }
+}
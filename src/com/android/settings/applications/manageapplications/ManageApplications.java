@@ -47,7 +47,9 @@ import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
 import android.os.Environment;
+import android.os.Handler;
 import android.os.IBinder;
+import android.os.Looper;
 import android.os.RemoteException;
 import android.os.ServiceManager;
 import android.os.UserHandle;
@@ -133,6 +135,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -993,6 +996,10 @@ public class ManageApplications extends InstrumentedFragment
         private static final String STATE_LAST_SCROLL_INDEX = "state_last_scroll_index";
         private static final int VIEW_TYPE_APP = 0;
         private static final int VIEW_TYPE_EXTRA_VIEW = 1;
+        // Rebuild requests from callbacks arriving within this window, e.g. a burst of size
+        // callbacks, are coalesced into a single rebuild.
+        @VisibleForTesting
+        static final long REBUILD_DELAY_MS = 100;
 
         private final ApplicationsState mState;
         private final ApplicationsState.Session mSession;
@@ -1013,6 +1020,18 @@ public class ManageApplications extends InstrumentedFragment
         private boolean mHasReceivedBridgeCallback;
         private FileViewHolderController mExtraViewController;
         private SearchFilter mSearchFilter;
+        private final AppSearchIndex mSearchIndex = new AppSearchIndex();
+        private final Handler mHandler = new Handler(Looper.getMainLooper());
+        private final Runnable mRebuildRunnable = this::performScheduledRebuild;
+        private boolean mRebuildPending;
+        private boolean mPendingRebuildSizesOnly;
+        // Bumped for every full rebuild; a full rebuild superseded by a newer one is dropped.
+        private volatile int mFullRebuildGeneration;
+        // Whether a full rebuild has been requested from the session and not delivered yet.
+        private boolean mFullRebuildInFlight;
+        // Whether sizes changed while a full rebuild was in flight.
+        private boolean mResortAfterFullRebuild;
+        private Comparator<AppEntry> mLastRebuildComparator;
         private PowerWhitelistBackend mBackend;
 
         // This is to remember and restore the last scroll position when this
@@ -1151,6 +1170,7 @@ public class ManageApplications extends InstrumentedFragment
         }
 
         public void release() {
+            cancelScheduledRebuild();
             mSession.onDestroy();
             if (mExtraInfoBridge != null) {
                 mExtraInfoBridge.release();
@@ -1186,6 +1206,38 @@ public class ManageApplications extends InstrumentedFragment
         }
 
         public void rebuild() {
+            // This rebuild also does the work of a scheduled one.
+            cancelScheduledRebuild();
+            performRebuild(false /* sizesOnly */);
+        }
+
+        /**
+         * Schedules a rebuild of the list in response to a callback. Requests made before the
+         * scheduled rebuild runs are merged into it; the rebuild only re-sorts the current list if
+         * every merged request was for a size change.
+         */
+        @VisibleForTesting
+        void scheduleRebuild(boolean sizesOnly) {
+            mPendingRebuildSizesOnly = mRebuildPending
+                    ? mPendingRebuildSizesOnly && sizesOnly : sizesOnly;
+            mRebuildPending = true;
+            mHandler.removeCallbacks(mRebuildRunnable);
+            mHandler.postDelayed(mRebuildRunnable, REBUILD_DELAY_MS);
+        }
+
+        private void cancelScheduledRebuild() {
+            mHandler.removeCallbacks(mRebuildRunnable);
+            mRebuildPending = false;
+            mPendingRebuildSizesOnly = false;
+        }
+
+        private void performScheduledRebuild() {
+            final boolean sizesOnly = mPendingRebuildSizesOnly;
+            cancelScheduledRebuild();
+            performRebuild(sizesOnly);
+        }
+
+        private void performRebuild(boolean sizesOnly) {
             if (!mHasReceivedLoadEntries
                     || (mExtraInfoBridge != null && !mHasReceivedBridgeCallback)) {
                 // Don't rebuild the list until all the app entries are loaded.
@@ -1238,13 +1290,53 @@ public class ManageApplications extends InstrumentedFragment
                 comparatorObj = ApplicationsState.ALPHA_COMPARATOR;
             }
 
+            if (sizesOnly && mFullRebuildInFlight) {
+                // The list is sorted again once the full rebuild is delivered.
+                mResortAfterFullRebuild = true;
+                return;
+            }
+            final ArrayList<AppEntry> currentEntries = mOriginalEntries;
+            if (sizesOnly && currentEntries != null && comparatorObj == mLastRebuildComparator) {
+                // Only sizes changed: filter results are unaffected and the list is mostly in
+                // order already, so re-sort it in place of a full session rebuild.
+                ThreadUtils.postOnBackgroundThread(() -> {
+                    final ArrayList<AppEntry> sorted = resortEntries(currentEntries,
+                            comparatorObj);
+                    ThreadUtils.postOnMainThread(() -> {
+                        // Drop the result if the list changed or is about to.
+                        if (!mFullRebuildInFlight && mOriginalEntries == currentEntries) {
+                            showEntries(sorted);
+                        }
+                    });
+                });
+                return;
+            }
+            mLastRebuildComparator = comparatorObj;
+            mFullRebuildInFlight = true;
+            final int generation = ++mFullRebuildGeneration;
             final AppFilter finalFilterObj = new CompoundFilter(filterObj,
                     ApplicationsState.FILTER_NOT_HIDE);
             ThreadUtils.postOnBackgroundThread(() -> {
+                if (generation != mFullRebuildGeneration) {
+                    // A newer full rebuild has been requested since, it covers this one.
+                    return;
+                }
                 mSession.rebuild(finalFilterObj, comparatorObj, false);
             });
         }
 
+        /**
+         * Returns a copy of {@code entries} sorted by {@code comparator}. Entries that compare
+         * equal keep their relative order.
+         */
+        @VisibleForTesting
+        static ArrayList<AppEntry> resortEntries(List<AppEntry> entries,
+                Comparator<AppEntry> comparator) {
+            final ArrayList<AppEntry> sorted = new ArrayList<>(entries);
+            Collections.sort(sorted, comparator);
+            return sorted;
+        }
+
         @VisibleForTesting
         void filterSearch(String query) {
             if (mSearchFilter == null) {
@@ -1293,6 +1385,15 @@ public class ManageApplications extends InstrumentedFragment
             if (DEBUG) {
                 Log.d(TAG, "onRebuildComplete size=" + entries.size());
             }
+            mFullRebuildInFlight = false;
+            showEntries(entries);
+            if (mResortAfterFullRebuild) {
+                mResortAfterFullRebuild = false;
+                scheduleRebuild(true /* sizesOnly */);
+            }
+        }
+
+        private void showEntries(ArrayList<AppEntry> entries) {
             final int filterType = mAppFilter.getFilterType();
             if (filterType == FILTER_APPS_POWER_WHITELIST ||
                     filterType == FILTER_APPS_POWER_WHITELIST_ALL) {
@@ -1300,6 +1401,7 @@ public class ManageApplications extends InstrumentedFragment
             }
             mEntries = entries;
             mOriginalEntries = entries;
+            mSearchIndex.update(entries);
             notifyDataSetChanged();
             if (getItemCount() == 0) {
                 mManageApplications.mRecyclerView.setVisibility(View.GONE);
@@ -1348,8 +1450,13 @@ public class ManageApplications extends InstrumentedFragment
 
         @Override
         public void onExtraInfoUpdated() {
-            mHasReceivedBridgeCallback = true;
-            rebuild();
+            if (!mHasReceivedBridgeCallback) {
+                // The first extra info completes the initial load.
+                mHasReceivedBridgeCallback = true;
+                rebuild();
+            } else {
+                scheduleRebuild(false /* sizesOnly */);
+            }
         }
 
         @Override
@@ -1359,7 +1466,7 @@ public class ManageApplications extends InstrumentedFragment
 
         @Override
         public void onPackageListChanged() {
-            rebuild();
+            scheduleRebuild(false /* sizesOnly */);
         }
 
         @Override
@@ -1392,7 +1499,7 @@ public class ManageApplications extends InstrumentedFragment
                     // user viewed, and are sorting by size...  they may
                     // have cleared data, so we immediately want to resort
                     // the list with the new size to reflect it to the user.
-                    rebuild();
+                    scheduleRebuild(true /* sizesOnly */);
                     return;
                 } else {
                     mOnScrollListener.postNotifyItemChange(i);
@@ -1403,14 +1510,14 @@ public class ManageApplications extends InstrumentedFragment
         @Override
         public void onLauncherInfoChanged() {
             if (!mManageApplications.mShowSystem) {
-                rebuild();
+                scheduleRebuild(false /* sizesOnly */);
             }
         }
 
         @Override
         public void onAllSizesComputed() {
             if (mLastSortMode == R.id.sort_order_size) {
-                rebuild();
+                scheduleRebuild(true /* sizesOnly */);
             }
         }
 
@@ -1577,7 +1684,9 @@ public class ManageApplications extends InstrumentedFragment
 
         /**
          * An array filter that constrains the content of the array adapter with a substring.
-         * Item that does not contains the specified substring will be removed from the list.</p>
+         * Item that does not contains the specified substring will be removed from the list.
+         * Matching is done against {@link AppSearchIndex}, so labels are compared after
+         * transliteration and diacritic folding.</p>
          */
         private class SearchFilter extends Filter {
             @WorkerThread
@@ -1587,12 +1696,8 @@ public class ManageApplications extends InstrumentedFragment
                 if (TextUtils.isEmpty(query)) {
                     matchedEntries = mOriginalEntries;
                 } else {
-                    matchedEntries = new ArrayList<>();
-                    for (ApplicationsState.AppEntry entry : mOriginalEntries) {
-                        if (entry.label.toLowerCase().contains(query.toString().toLowerCase())) {
-                            matchedEntries.add(entry);
-                        }
-                    }
+                    mSearchIndex.update(mOriginalEntries);
+                    matchedEntries = new ArrayList<>(mSearchIndex.query(query));
                 }
                 final FilterResults results = new FilterResults();
                 results.values = matchedEntries;
@@ -36,7 +36,8 @@ import com.android.settingslib.core.lifecycle.events.OnStop;
  * device. It monitor Bluetooth's status(on/off) and decide if need to show summary or not.
  */
 public class AddDevicePreferenceController extends BasePreferenceController
-        implements LifecycleObserver, OnStart, OnStop {
+        implements LifecycleObserver, OnStart, OnStop,
+        BasePreferenceController.AvailabilityCacheable {
 
     private Preference mPreference;
     private final BroadcastReceiver mReceiver = new BroadcastReceiver() {
@@ -37,7 +37,8 @@ import com.android.settingslib.core.lifecycle.events.OnStop;
  * Controller that used to show NFC and payment features
  */
 public class NfcAndPaymentFragmentController extends BasePreferenceController
-        implements LifecycleObserver, OnResume, OnStop {
+        implements LifecycleObserver, OnResume, OnStop,
+        BasePreferenceController.AvailabilityCacheable {
     private final NfcAdapter mNfcAdapter;
     private final PackageManager mPackageManager;
     private final UserManager mUserManager;
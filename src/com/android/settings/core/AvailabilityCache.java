@@ -0,0 +1,258 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.database.ContentObserver;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.UserManager;
+import android.provider.Settings;
+import android.telephony.CarrierConfigManager;
+import android.util.ArrayMap;
+import android.util.ArraySet;
+import android.util.Log;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.android.internal.telephony.TelephonyIntents;
+import com.android.settingslib.utils.ThreadUtils;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Cache of {@link BasePreferenceController#getAvailabilityStatus()} for controllers implementing
+ * {@link BasePreferenceController.AvailabilityCacheable}, shared by all the pages of the app.
+ * <p>
+ * Entries are keyed by controller class and preference key, and are dropped as soon as one of the
+ * triggers declared by the controller fires. A served entry is revalidated once in the background,
+ * so a change the triggers do not cover is picked up by the next visit.
+ */
+public class AvailabilityCache {
+
+    private static final String TAG = "AvailabilityCache";
+
+    /** A package was added, removed or changed. */
+    public static final int TRIGGER_PACKAGE_CHANGED = 1;
+    /** The current user was switched, its profiles or its restrictions changed. */
+    public static final int TRIGGER_USER_CHANGED = 1 << 1;
+    /** A SIM was inserted or removed, or its carrier config changed. */
+    public static final int TRIGGER_SIM_CHANGED = 1 << 2;
+
+    private static AvailabilityCache sInstance;
+
+    private final Context mContext;
+    private final ContentObserver mSettingsObserver;
+
+    // Guarded by this.
+    private final Map<String, Entry> mEntries = new ArrayMap<>();
+    private final Set<String> mObservedSettings = new ArraySet<>();
+    private int mRegisteredTriggers;
+    // Incremented on every invalidation, to drop the results computed before it.
+    private int mGeneration;
+
+    public static synchronized AvailabilityCache getInstance(Context context) {
+        final Context appContext = context.getApplicationContext();
+        if (sInstance == null || sInstance.mContext != appContext) {
+            sInstance = new AvailabilityCache(appContext);
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    AvailabilityCache(Context context) {
+        mContext = context;
+        mSettingsObserver = new ContentObserver(new Handler(Looper.getMainLooper())) {
+            @Override
+            public void onChange(boolean selfChange, Uri uri) {
+                if (uri != null) {
+                    invalidateSetting(uri.getLastPathSegment());
+                }
+            }
+        };
+    }
+
+    /**
+     * @return the cached availability status of the controller, computing it if there is none.
+     */
+    @BasePreferenceController.AvailabilityStatus
+    public int getAvailabilityStatus(BasePreferenceController controller) {
+        final String key = getCacheKey(controller);
+        final int generation;
+        synchronized (this) {
+            final Entry entry = mEntries.get(key);
+            if (entry != null) {
+                final int status = entry.mStatus;
+                if (!entry.mRevalidated) {
+                    entry.mRevalidated = true;
+                    revalidate(controller, key, entry);
+                }
+                return status;
+            }
+            generation = mGeneration;
+        }
+
+        final BasePreferenceController.AvailabilityCacheable cacheable =
+                (BasePreferenceController.AvailabilityCacheable) controller;
+        final int triggers = cacheable.getAvailabilityTriggers();
+        final String[] globalSettings = cacheable.getAvailabilityGlobalSettings();
+        // Listen before computing, so that a change during the computation is not missed.
+        registerTriggers(triggers, globalSettings);
+        final int status = controller.getAvailabilityStatus();
+        synchronized (this) {
+            if (generation == mGeneration) {
+                mEntries.put(key, new Entry(status, triggers, globalSettings));
+            }
+        }
+        return status;
+    }
+
+    /**
+     * Drop all cached entries, e.g. when a feature flag is toggled.
+     */
+    public synchronized void clear() {
+        mGeneration++;
+        mEntries.clear();
+    }
+
+    @VisibleForTesting
+    synchronized void invalidate(int trigger) {
+        mGeneration++;
+        final Iterator<Entry> iterator = mEntries.values().iterator();
+        while (iterator.hasNext()) {
+            if ((iterator.next().mTriggers & trigger) != 0) {
+                iterator.remove();
+            }
+        }
+    }
+
+    @VisibleForTesting
+    synchronized void invalidateSetting(String name) {
+        mGeneration++;
+        final Iterator<Entry> iterator = mEntries.values().iterator();
+        while (iterator.hasNext()) {
+            final String[] globalSettings = iterator.next().mGlobalSettings;
+            if (globalSettings != null && Arrays.asList(globalSettings).contains(name)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private void revalidate(BasePreferenceController controller, String key, Entry entry) {
+        final int generation = mGeneration;
+        ThreadUtils.postOnBackgroundThread(() -> {
+            final int status;
+            try {
+                status = controller.getAvailabilityStatus();
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Failed to revalidate " + key, e);
+                return;
+            }
+            synchronized (this) {
+                if (generation == mGeneration && mEntries.get(key) == entry) {
+                    entry.mStatus = status;
+                }
+            }
+        });
+    }
+
+    private void registerTriggers(int triggers, String[] globalSettings) {
+        final int newTriggers;
+        final Set<String> newSettings = new ArraySet<>();
+        synchronized (this) {
+            newTriggers = triggers & ~mRegisteredTriggers;
+            mRegisteredTriggers |= triggers;
+            if (globalSettings != null) {
+                for (String name : globalSettings) {
+                    if (mObservedSettings.add(name)) {
+                        newSettings.add(name);
+                    }
+                }
+            }
+        }
+
+        if ((newTriggers & TRIGGER_PACKAGE_CHANGED) != 0) {
+            final IntentFilter filter = new IntentFilter();
+            filter.addAction(Intent.ACTION_PACKAGE_ADDED);
+            filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+            filter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+            filter.addDataScheme("package");
+            mContext.registerReceiver(new TriggerReceiver(TRIGGER_PACKAGE_CHANGED), filter);
+        }
+        if ((newTriggers & TRIGGER_USER_CHANGED) != 0) {
+            final IntentFilter filter = new IntentFilter();
+            filter.addAction(Intent.ACTION_USER_SWITCHED);
+            filter.addAction(Intent.ACTION_MANAGED_PROFILE_ADDED);
+            filter.addAction(Intent.ACTION_MANAGED_PROFILE_REMOVED);
+            filter.addAction(UserManager.ACTION_USER_RESTRICTIONS_CHANGED);
+            mContext.registerReceiver(new TriggerReceiver(TRIGGER_USER_CHANGED), filter);
+        }
+        if ((newTriggers & TRIGGER_SIM_CHANGED) != 0) {
+            final IntentFilter filter = new IntentFilter();
+            filter.addAction(TelephonyIntents.ACTION_SIM_STATE_CHANGED);
+            filter.addAction(CarrierConfigManager.ACTION_CARRIER_CONFIG_CHANGED);
+            mContext.registerReceiver(new TriggerReceiver(TRIGGER_SIM_CHANGED), filter);
+        }
+        for (String name : newSettings) {
+            mContext.getContentResolver().registerContentObserver(
+                    Settings.Global.getUriFor(name), false /* notifyForDescendants */,
+                    mSettingsObserver);
+        }
+    }
+
+    private static String getCacheKey(BasePreferenceController controller) {
+        return controller.getClass().getName() + "|" + controller.getPreferenceKey();
+    }
+
+    private class TriggerReceiver extends BroadcastReceiver {
+        private final int mTrigger;
+
+        TriggerReceiver(int trigger) {
+            mTrigger = trigger;
+        }
+
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            // The SIM state is sticky, its current value is not a change.
+            if (isInitialStickyBroadcast()) {
+                return;
+            }
+            invalidate(mTrigger);
+        }
+    }
+
+    private static class Entry {
+        private final int mTriggers;
+        private final String[] mGlobalSettings;
+        // Guarded by the cache.
+        private int mStatus;
+        private boolean mRevalidated;
+
+        Entry(int status, int triggers, String[] globalSettings) {
+            mStatus = status;
+            mTriggers = triggers;
+            mGlobalSettings = globalSettings;
+        }
+    }
+}
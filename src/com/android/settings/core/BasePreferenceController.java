@@ -254,7 +254,7 @@ public abstract class BasePreferenceController extends AbstractPreferenceControl
             return false;
         }
 
-        final int availabilityStatus = getAvailabilityStatus();
+        final int availabilityStatus = getCachedAvailabilityStatus();
         return (availabilityStatus == AVAILABLE
                 || availabilityStatus == AVAILABLE_UNSEARCHABLE
                 || availabilityStatus == DISABLED_DEPENDENT_SETTING);
@@ -268,7 +268,19 @@ public abstract class BasePreferenceController extends AbstractPreferenceControl
      * Note that a return value of {@code true} does not mean that the setting is available.
      */
     public final boolean isSupported() {
-        return getAvailabilityStatus() != UNSUPPORTED_ON_DEVICE;
+        return getCachedAvailabilityStatus() != UNSUPPORTED_ON_DEVICE;
+    }
+
+    /**
+     * @return the {@link AvailabilityStatus} served from {@link AvailabilityCache} when the
+     * controller is {@link AvailabilityCacheable}, otherwise from {@link #getAvailabilityStatus()}.
+     */
+    @AvailabilityStatus
+    private int getCachedAvailabilityStatus() {
+        if (this instanceof AvailabilityCacheable) {
+            return AvailabilityCache.getInstance(mContext).getAvailabilityStatus(this);
+        }
+        return getAvailabilityStatus();
     }
 
     /**
@@ -404,6 +416,30 @@ public abstract class BasePreferenceController extends AbstractPreferenceControl
     public interface UiBlocker {
     }
 
+    /**
+     * Used for {@link BasePreferenceController} whose availability is expensive to compute and
+     * rarely changes. The result of {@link #getAvailabilityStatus()} is kept by
+     * {@link AvailabilityCache} until one of the declared triggers fires.
+     *
+     * This must be used in {@link BasePreferenceController}
+     */
+    public interface AvailabilityCacheable {
+        /**
+         * @return bit mask of AvailabilityCache#TRIGGER_* invalidating the cached availability.
+         */
+        default int getAvailabilityTriggers() {
+            return 0;
+        }
+
+        /**
+         * @return names of {@link android.provider.Settings.Global} settings invalidating the
+         * cached availability when their value changes.
+         */
+        default String[] getAvailabilityGlobalSettings() {
+            return null;
+        }
+    }
+
     /**
      * Set the metrics category of the parent fragment.
      *
@@ -44,6 +44,17 @@ import java.util.TreeSet;
 public class PreferenceControllerListHelper {
 
     private static final String TAG = "PrefCtrlListHelper";
+    private static final int CONTROLLER_METADATA_FLAGS = MetadataFlag.FLAG_NEED_KEY
+            | MetadataFlag.FLAG_NEED_PREF_CONTROLLER | MetadataFlag.FLAG_INCLUDE_PREF_SCREEN
+            | MetadataFlag.FLAG_FOR_WORK;
+
+    /**
+     * Loads the stored controller definitions of the preference xmls into memory, in the
+     * background.
+     */
+    public static void preloadPreferenceControllerMetadata(Context context) {
+        PreferenceMetadataStore.getInstance(context).preload(context, CONTROLLER_METADATA_FLAGS);
+    }
 
     /**
      * Instantiates a list of controller based on xml definition.
@@ -54,9 +65,8 @@ public class PreferenceControllerListHelper {
         final List<BasePreferenceController> controllers = new ArrayList<>();
         List<Bundle> preferenceMetadata;
         try {
-            preferenceMetadata = PreferenceXmlParserUtils.extractMetadata(context, xmlResId,
-                    MetadataFlag.FLAG_NEED_KEY | MetadataFlag.FLAG_NEED_PREF_CONTROLLER
-                            | MetadataFlag.FLAG_INCLUDE_PREF_SCREEN  | MetadataFlag.FLAG_FOR_WORK);
+            preferenceMetadata = PreferenceMetadataStore.getInstance(context).getMetadata(context,
+                    xmlResId, CONTROLLER_METADATA_FLAGS);
         } catch (IOException | XmlPullParserException e) {
             Log.e(TAG, "Failed to parse preference xml for getting controllers", e);
             return controllers;
@@ -0,0 +1,369 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import android.annotation.NonNull;
+import android.annotation.XmlRes;
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.content.res.Configuration;
+import android.os.Build;
+import android.os.Bundle;
+import android.util.AtomicFile;
+import android.util.Log;
+import android.util.LruCache;
+import android.util.Pair;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settingslib.utils.ThreadUtils;
+
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compiled store of the metadata extracted by
+ * {@link PreferenceXmlParserUtils#extractMetadata(Context, int, int)}.
+ * <p>
+ * The metadata of each xml resource and flag set is parsed once per build, package version,
+ * resource overlays, locale and mcc/mnc, and kept as a versioned binary file in the cache
+ * directory. The file is memory mapped on read, and the decoded result is also kept in memory.
+ * Files are only read and written on background threads, the main thread is served from memory
+ * or parses the xml. {@link #preload(Context, int)} fills the memory ahead of time.
+ */
+public class PreferenceMetadataStore {
+
+    private static final String TAG = "PrefMetadataStore";
+    private static final String DIR_NAME = "preference_metadata";
+    private static final int FORMAT_VERSION = 1;
+    private static final int MEMORY_CACHE_SIZE = 64;
+
+    private static final byte TYPE_STRING = 0;
+    private static final byte TYPE_INT = 1;
+    private static final byte TYPE_BOOLEAN = 2;
+
+    private static PreferenceMetadataStore sInstance;
+
+    private final File mRootDir;
+    private final LruCache<String, List<Bundle>> mMemoryCache =
+            new LruCache<>(MEMORY_CACHE_SIZE);
+    // Guards the writes and the cleanup of stale directories. A read racing with a write fails to
+    // decode the partial file, and the metadata is parsed again.
+    private final Object mFileLock = new Object();
+    private String mPackageVersion;
+    // The environment and the name of its directory, computed on the last call.
+    private Pair<String, String> mEnvironmentDir;
+
+    public static synchronized PreferenceMetadataStore getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new PreferenceMetadataStore(
+                    new File(context.getApplicationContext().getCacheDir(), DIR_NAME));
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    PreferenceMetadataStore(File rootDir) {
+        mRootDir = rootDir;
+    }
+
+    /**
+     * Same as {@link PreferenceXmlParserUtils#extractMetadata(Context, int, int)}, served from the
+     * store when possible. The returned list and bundles are copies owned by the caller.
+     */
+    @NonNull
+    public List<Bundle> getMetadata(Context context, @XmlRes int xmlResId, int flags)
+            throws IOException, XmlPullParserException {
+        if (xmlResId <= 0) {
+            return PreferenceXmlParserUtils.extractMetadata(context, xmlResId, flags);
+        }
+        final String environment = getEnvironment(context);
+        final String key = environment + "/" + getFileName(xmlResId, flags);
+        List<Bundle> metadata = mMemoryCache.get(key);
+        if (metadata != null) {
+            return copyOf(metadata);
+        }
+
+        final File file = getMetadataFile(environment, xmlResId, flags);
+        // Don't touch the disk on the main thread.
+        if (!ThreadUtils.isMainThread()) {
+            metadata = readMetadata(file, environment);
+        }
+        if (metadata == null) {
+            metadata = PreferenceXmlParserUtils.extractMetadata(context, xmlResId, flags);
+            final List<Bundle> parsedMetadata = copyOf(metadata);
+            ThreadUtils.postOnBackgroundThread(
+                    () -> writeMetadata(file, environment, parsedMetadata));
+        }
+        mMemoryCache.put(key, copyOf(metadata));
+        return metadata;
+    }
+
+    /**
+     * Load the stored metadata extracted with the flags into memory, in the background.
+     */
+    public void preload(Context context, int flags) {
+        final Context appContext = context.getApplicationContext();
+        ThreadUtils.postOnBackgroundThread(() -> {
+            final String environment = getEnvironment(appContext);
+            final String suffix = "_" + flags;
+            final File[] files = new File(mRootDir, getEnvironmentDir(environment)).listFiles(
+                    (dir, name) -> name.endsWith(suffix));
+            if (files == null) {
+                return;
+            }
+            for (int i = 0; i < files.length && i < MEMORY_CACHE_SIZE; i++) {
+                final String key = environment + "/" + files[i].getName();
+                if (mMemoryCache.get(key) != null) {
+                    continue;
+                }
+                final List<Bundle> metadata = readMetadata(files[i], environment);
+                if (metadata != null) {
+                    mMemoryCache.put(key, metadata);
+                }
+            }
+        });
+    }
+
+    @VisibleForTesting
+    File getMetadataFile(String environment, @XmlRes int xmlResId, int flags) {
+        return new File(new File(mRootDir, getEnvironmentDir(environment)),
+                getFileName(xmlResId, flags));
+    }
+
+    // Everything the metadata depends on, besides the xml resource and the flags.
+    @VisibleForTesting
+    String getEnvironment(Context context) {
+        final Configuration config = context.getResources().getConfiguration();
+        return Build.FINGERPRINT + "|" + getPackageVersion(context) + "|"
+                + Arrays.toString(context.getApplicationInfo().resourceDirs) + "|"
+                + config.getLocales().toLanguageTags() + "|" + config.mcc + "|" + config.mnc;
+    }
+
+    // Name of the directory holding the metadata of the environment. The environment itself is
+    // also written in each file, and checked on read.
+    private synchronized String getEnvironmentDir(String environment) {
+        if (mEnvironmentDir == null || !mEnvironmentDir.first.equals(environment)) {
+            mEnvironmentDir = Pair.create(environment, sha256(environment));
+        }
+        return mEnvironmentDir.second;
+    }
+
+    // The package can be updated without a new build, and it doesn't change while it runs.
+    private synchronized String getPackageVersion(Context context) {
+        if (mPackageVersion == null) {
+            try {
+                final PackageInfo info = context.getPackageManager().getPackageInfo(
+                        context.getPackageName(), 0 /* flags */);
+                mPackageVersion = info.getLongVersionCode() + "|" + info.lastUpdateTime;
+            } catch (PackageManager.NameNotFoundException e) {
+                Log.w(TAG, "Can't find own package", e);
+                mPackageVersion = "";
+            }
+        }
+        return mPackageVersion;
+    }
+
+    private List<Bundle> readMetadata(File file, String environment) {
+        if (!file.exists()) {
+            return null;
+        }
+        try (FileInputStream in = new FileInputStream(file);
+             FileChannel channel = in.getChannel()) {
+            final MappedByteBuffer buffer =
+                    channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return decode(buffer, environment);
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            // The metadata is parsed again and the file rewritten.
+            Log.w(TAG, "Discarding unreadable metadata " + file, e);
+            return null;
+        }
+    }
+
+    private void writeMetadata(File file, String environment, List<Bundle> metadata) {
+        final byte[] data;
+        try {
+            data = encode(metadata, environment);
+        } catch (IllegalArgumentException e) {
+            Log.w(TAG, "Metadata can't be stored", e);
+            return;
+        }
+        synchronized (mFileLock) {
+            final File dir = file.getParentFile();
+            if (!dir.exists()) {
+                // A new build or configuration, the other directories are stale.
+                deleteRecursively(mRootDir);
+                if (!dir.mkdirs()) {
+                    Log.w(TAG, "Failed to create " + dir);
+                    return;
+                }
+            }
+            final AtomicFile atomicFile = new AtomicFile(file);
+            FileOutputStream out = null;
+            try {
+                out = atomicFile.startWrite();
+                out.write(data);
+                atomicFile.finishWrite(out);
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to write metadata " + file, e);
+                atomicFile.failWrite(out);
+            }
+        }
+    }
+
+    @VisibleForTesting
+    static byte[] encode(List<Bundle> metadata, String environment) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(FORMAT_VERSION);
+            writeString(out, environment);
+            out.writeInt(metadata.size());
+            for (Bundle bundle : metadata) {
+                out.writeInt(bundle.size());
+                for (String name : bundle.keySet()) {
+                    writeString(out, name);
+                    final Object value = bundle.get(name);
+                    if (value == null || value instanceof String) {
+                        out.writeByte(TYPE_STRING);
+                        writeString(out, (String) value);
+                    } else if (value instanceof Integer) {
+                        out.writeByte(TYPE_INT);
+                        out.writeInt((Integer) value);
+                    } else if (value instanceof Boolean) {
+                        out.writeByte(TYPE_BOOLEAN);
+                        out.writeBoolean((Boolean) value);
+                    } else {
+                        throw new IllegalArgumentException("Unsupported metadata " + name);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // Not expected when writing to memory.
+            throw new IllegalArgumentException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    @VisibleForTesting
+    static List<Bundle> decode(ByteBuffer buffer, String environment) {
+        if (buffer.getInt() != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unknown format version");
+        }
+        if (!environment.equals(readString(buffer))) {
+            throw new IllegalArgumentException("Metadata of another environment");
+        }
+        final int count = buffer.getInt();
+        final List<Bundle> metadata = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final int size = buffer.getInt();
+            final Bundle bundle = new Bundle(size);
+            for (int j = 0; j < size; j++) {
+                final String name = readString(buffer);
+                final byte type = buffer.get();
+                switch (type) {
+                    case TYPE_STRING:
+                        bundle.putString(name, readString(buffer));
+                        break;
+                    case TYPE_INT:
+                        bundle.putInt(name, buffer.getInt());
+                        break;
+                    case TYPE_BOOLEAN:
+                        bundle.putBoolean(name, buffer.get() != 0);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown metadata type " + type);
+                }
+            }
+            metadata.add(bundle);
+        }
+        return metadata;
+    }
+
+    private static List<Bundle> copyOf(List<Bundle> metadata) {
+        final List<Bundle> copy = new ArrayList<>(metadata.size());
+        for (Bundle bundle : metadata) {
+            copy.add(new Bundle(bundle));
+        }
+        return copy;
+    }
+
+    private static String getFileName(@XmlRes int xmlResId, int flags) {
+        return xmlResId + "_" + flags;
+    }
+
+    private static String sha256(String value) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(value.getBytes(StandardCharsets.UTF_8));
+            final StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 is always available.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        final int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void deleteRecursively(File file) {
+        final File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}
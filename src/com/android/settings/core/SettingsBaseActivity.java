@@ -25,6 +25,7 @@ import android.content.Intent;
 import android.content.IntentFilter;
 import android.content.pm.PackageManager;
 import android.content.res.TypedArray;
+import android.net.Uri;
 import android.os.AsyncTask;
 import android.os.Bundle;
 import android.text.TextUtils;
@@ -62,6 +63,8 @@ public class SettingsBaseActivity extends FragmentActivity {
 
     @Override
     protected void onCreate(@Nullable Bundle savedInstanceState) {
+        // Start scanning the injected tiles before the fragments need them.
+        CategoryManager.get(this).warmUp(this);
         super.onCreate(savedInstanceState);
         if (isLockTaskModePinned() && !isSettingsRunOnTop() && !isLaunchableInTaskModePinned()) {
             Log.w(TAG, "Devices lock task mode pinned.");
@@ -232,6 +235,11 @@ public class SettingsBaseActivity extends FragmentActivity {
     private class PackageReceiver extends BroadcastReceiver {
         @Override
         public void onReceive(Context context, Intent intent) {
+            final Uri data = intent.getData();
+            if (data != null) {
+                // Only the tiles of the changed package need to be loaded again.
+                CategoryManager.get(context).invalidatePackage(data.getSchemeSpecificPart());
+            }
             updateCategories();
         }
     }
@@ -30,14 +30,23 @@ import com.android.settingslib.drawer.DashboardCategory;
 import com.android.settingslib.drawer.ProviderTile;
 import com.android.settingslib.drawer.Tile;
 import com.android.settingslib.drawer.TileUtils;
+import com.android.settingslib.utils.ThreadUtils;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 
+/**
+ * Loads and caches the categories of the tiles injected in Settings.
+ *
+ * <p>Categories are published as an immutable snapshot, so reads don't wait for a reload in
+ * progress. Only the first read of the process waits for the categories to be built, which
+ * {@link #warmUp(Context)} starts early on a background thread.
+ */
 public class CategoryManager {
 
     private static final String TAG = "CategoryManager";
@@ -46,14 +55,13 @@ public class CategoryManager {
     private final InterestingConfigChanges mInterestingConfigChanges;
 
     // Tile cache (key: <packageName, activityName>, value: tile)
-    private final Map<Pair<String, String>, Tile> mTileByComponentCache;
-
-    // Tile cache (key: category key, value: category)
-    private final Map<String, DashboardCategory> mCategoryByKeyMap;
+    @VisibleForTesting
+    final Map<Pair<String, String>, Tile> mTileByComponentCache;
 
-    private List<DashboardCategory> mCategories;
+    // Latest categories, replaced as a whole and never modified once published.
+    private volatile Snapshot mSnapshot;
 
-    public static CategoryManager get(Context context) {
+    public static synchronized CategoryManager get(Context context) {
         if (sInstance == null) {
             sInstance = new CategoryManager(context);
         }
@@ -62,64 +70,105 @@ public class CategoryManager {
 
     CategoryManager(Context context) {
         mTileByComponentCache = new ArrayMap<>();
-        mCategoryByKeyMap = new ArrayMap<>();
         mInterestingConfigChanges = new InterestingConfigChanges();
         mInterestingConfigChanges.applyNewConfig(context.getResources());
     }
 
-    public synchronized DashboardCategory getTilesByCategory(Context context, String categoryKey) {
-        tryInitCategories(context);
+    public DashboardCategory getTilesByCategory(Context context, String categoryKey) {
+        return getSnapshot(context).mCategoryByKeyMap.get(categoryKey);
+    }
 
-        return mCategoryByKeyMap.get(categoryKey);
+    public List<DashboardCategory> getCategories(Context context) {
+        return getSnapshot(context).mCategories;
     }
 
-    public synchronized List<DashboardCategory> getCategories(Context context) {
-        tryInitCategories(context);
-        return mCategories;
+    /**
+     * Starts building the categories on a background thread if they haven't been built yet, so
+     * that the first page of the process doesn't have to scan the injected tiles itself.
+     */
+    public void warmUp(Context context) {
+        if (mSnapshot != null) {
+            return;
+        }
+        final Context appContext = context.getApplicationContext();
+        ThreadUtils.postOnBackgroundThread(() -> getSnapshot(appContext));
     }
 
+    /**
+     * Builds the categories again. Readers keep getting the previous categories until the new
+     * ones are ready.
+     */
     public synchronized void reloadAllCategories(Context context) {
         final boolean forceClearCache = mInterestingConfigChanges.applyNewConfig(
                 context.getResources());
-        mCategories = null;
-        tryInitCategories(context, forceClearCache);
+        mSnapshot = buildSnapshot(context, forceClearCache);
+    }
+
+    /**
+     * Drops the cached tiles of {@code packageName}, so that they are loaded from the package
+     * again with the next {@link #reloadAllCategories(Context)}. Tiles of other packages are
+     * kept.
+     */
+    public synchronized void invalidatePackage(String packageName) {
+        mTileByComponentCache.keySet().removeIf(key -> packageName.equals(key.first));
     }
 
     public synchronized void updateCategoryFromBlacklist(Set<ComponentName> tileBlacklist) {
-        if (mCategories == null) {
+        final Snapshot snapshot = mSnapshot;
+        if (snapshot == null) {
             Log.w(TAG, "Category is null, skipping blacklist update");
+            return;
         }
-        for (int i = 0; i < mCategories.size(); i++) {
-            DashboardCategory category = mCategories.get(i);
+        // Published categories may be in use, filter copies of them.
+        final Map<String, DashboardCategory> categoryByKeyMap =
+                new ArrayMap<>(snapshot.mCategoryByKeyMap.size());
+        for (Entry<String, DashboardCategory> entry : snapshot.mCategoryByKeyMap.entrySet()) {
+            final DashboardCategory category = entry.getValue();
+            final DashboardCategory filtered = new DashboardCategory(category.key);
             for (int j = 0; j < category.getTilesCount(); j++) {
-                Tile tile = category.getTile(j);
-                if (tileBlacklist.contains(tile.getIntent().getComponent())) {
-                    category.removeTile(j--);
+                final Tile tile = category.getTile(j);
+                if (!tileBlacklist.contains(tile.getIntent().getComponent())) {
+                    filtered.addTile(tile);
                 }
             }
+            categoryByKeyMap.put(entry.getKey(), filtered);
+        }
+        final List<DashboardCategory> categories = new ArrayList<>(snapshot.mCategories.size());
+        for (DashboardCategory category : snapshot.mCategories) {
+            categories.add(categoryByKeyMap.get(category.key));
         }
+        mSnapshot = new Snapshot(categories, categoryByKeyMap);
     }
 
-    private synchronized void tryInitCategories(Context context) {
-        // Keep cached tiles by default. The cache is only invalidated when InterestingConfigChange
-        // happens.
-        tryInitCategories(context, false /* forceClearCache */);
+    private Snapshot getSnapshot(Context context) {
+        final Snapshot snapshot = mSnapshot;
+        if (snapshot != null) {
+            return snapshot;
+        }
+        synchronized (this) {
+            // Keep cached tiles by default. The cache is only invalidated when
+            // InterestingConfigChange happens.
+            if (mSnapshot == null) {
+                mSnapshot = buildSnapshot(context, false /* forceClearCache */);
+            }
+            return mSnapshot;
+        }
     }
 
-    private synchronized void tryInitCategories(Context context, boolean forceClearCache) {
-        if (mCategories == null) {
-            if (forceClearCache) {
-                mTileByComponentCache.clear();
-            }
-            mCategoryByKeyMap.clear();
-            mCategories = TileUtils.getCategories(context, mTileByComponentCache);
-            for (DashboardCategory category : mCategories) {
-                mCategoryByKeyMap.put(category.key, category);
-            }
-            backwardCompatCleanupForCategory(mTileByComponentCache, mCategoryByKeyMap);
-            sortCategories(context, mCategoryByKeyMap);
-            filterDuplicateTiles(mCategoryByKeyMap);
+    private synchronized Snapshot buildSnapshot(Context context, boolean forceClearCache) {
+        if (forceClearCache) {
+            mTileByComponentCache.clear();
+        }
+        final Map<String, DashboardCategory> categoryByKeyMap = new ArrayMap<>();
+        final List<DashboardCategory> categories =
+                TileUtils.getCategories(context, mTileByComponentCache);
+        for (DashboardCategory category : categories) {
+            categoryByKeyMap.put(category.key, category);
         }
+        backwardCompatCleanupForCategory(mTileByComponentCache, categoryByKeyMap);
+        sortCategories(context, categoryByKeyMap);
+        filterDuplicateTiles(categoryByKeyMap);
+        return new Snapshot(categories, categoryByKeyMap);
     }
 
     @VisibleForTesting
@@ -219,4 +268,17 @@ public class CategoryManager {
             }
         }
     }
+
+    private static final class Snapshot {
+        // Categories of the injected tiles, and categories by key, which also includes the
+        // categories only reached through their old keys.
+        final List<DashboardCategory> mCategories;
+        final Map<String, DashboardCategory> mCategoryByKeyMap;
+
+        Snapshot(List<DashboardCategory> categories,
+                Map<String, DashboardCategory> categoryByKeyMap) {
+            mCategories = Collections.unmodifiableList(categories);
+            mCategoryByKeyMap = categoryByKeyMap;
+        }
+    }
 }
@@ -21,16 +21,39 @@ import java.util.concurrent.FutureTask;
 
 /**
  *  {@link FutureTask} of the Controller.
+ *
+ *  Tasks are ordered by priority when queued in {@link ControllerTaskExecutor}, a lower value
+ *  runs first.
  */
-public class ControllerFutureTask extends FutureTask<Void> {
-    private final AbstractPreferenceController mController;
+public class ControllerFutureTask extends FutureTask<Void>
+        implements Comparable<ControllerFutureTask> {
+    private final ControllerTask mTask;
+    private final int mPriority;
 
     public ControllerFutureTask(ControllerTask task, Void result) {
+        this(task, result, Integer.MAX_VALUE);
+    }
+
+    public ControllerFutureTask(ControllerTask task, Void result, int priority) {
         super(task, result);
-        mController = task.getController();
+        mTask = task;
+        mPriority = priority;
+    }
+
+    @Override
+    public int compareTo(ControllerFutureTask other) {
+        return Integer.compare(mPriority, other.mPriority);
     }
 
     AbstractPreferenceController getController() {
-        return mController;
+        return mTask.getController();
+    }
+
+    ControllerTask getControllerTask() {
+        return mTask;
+    }
+
+    int getPriority() {
+        return mPriority;
     }
 }
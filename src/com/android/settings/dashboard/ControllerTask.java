@@ -31,6 +31,12 @@ import com.android.settingslib.utils.ThreadUtils;
 /**
  * A {@link Runnable} controller task. This task handle the visibility of the controller in the
  * background. Also handle the state updating in the main thread.
+ *
+ * When the task is deferred, the state updating is not posted to the main thread. The caller is
+ * responsible for calling {@link #applyPendingUpdate()} on the main thread instead, so that the
+ * updates of many tasks can be applied in a single pass. A caller that stops waiting for the task
+ * calls {@link #postPendingUpdate()}, and the updating is posted once the task is over. A
+ * cancelled task drops its state updating, even if it is already posted.
  */
 public class ControllerTask implements Runnable {
     private static final String TAG = "ControllerTask";
@@ -40,13 +46,25 @@ public class ControllerTask implements Runnable {
     private final PreferenceScreen mScreen;
     private final int mMetricsCategory;
     private final MetricsFeatureProvider mMetricsFeature;
+    private final boolean mDeferred;
+
+    // Guarded by this.
+    private Preference mPendingPreference;
+    private boolean mPostUpdate;
+    private boolean mCancelled;
 
     public ControllerTask(AbstractPreferenceController controller, PreferenceScreen screen,
             MetricsFeatureProvider metricsFeature, int metricsCategory) {
+        this(controller, screen, metricsFeature, metricsCategory, false /* deferred */);
+    }
+
+    public ControllerTask(AbstractPreferenceController controller, PreferenceScreen screen,
+            MetricsFeatureProvider metricsFeature, int metricsCategory, boolean deferred) {
         mController = controller;
         mScreen = screen;
         mMetricsFeature = metricsFeature;
         mMetricsCategory = metricsCategory;
+        mDeferred = deferred;
     }
 
     @Override
@@ -68,22 +86,83 @@ public class ControllerTask implements Runnable {
                     key, mController.getClass().getSimpleName()));
             return;
         }
-        ThreadUtils.postOnMainThread(() -> {
-            final long t = SystemClock.elapsedRealtime();
-            mController.updateState(preference);
-            final int elapsedTime = (int) (SystemClock.elapsedRealtime() - t);
-            if (elapsedTime > CONTROLLER_UPDATESTATE_TIME_THRESHOLD) {
-                Log.w(TAG, "The updateState took " + elapsedTime + " ms in Controller "
-                        + mController.getClass().getSimpleName());
-                if (mMetricsFeature != null) {
-                    mMetricsFeature.action(SettingsEnums.PAGE_UNKNOWN,
-                            SettingsEnums.ACTION_CONTROLLER_UPDATE_STATE, mMetricsCategory,
-                            mController.getClass().getSimpleName(), elapsedTime);
+        if (mDeferred) {
+            synchronized (this) {
+                if (mCancelled) {
+                    return;
+                }
+                if (!mPostUpdate) {
+                    mPendingPreference = preference;
+                    return;
                 }
             }
+        }
+        ThreadUtils.postOnMainThread(() -> {
+            if (!isCancelled()) {
+                updateState(preference);
+            }
         });
     }
 
+    /**
+     * Apply the state updating computed by a deferred run. Must be called on the main thread.
+     *
+     * @return {@code true} if the controller updated its preference.
+     */
+    boolean applyPendingUpdate() {
+        final Preference preference;
+        synchronized (this) {
+            preference = mPendingPreference;
+            mPendingPreference = null;
+        }
+        if (preference == null) {
+            return false;
+        }
+        updateState(preference);
+        return true;
+    }
+
+    /**
+     * Apply the state updating of a deferred task now if its run is over, or post it to the main
+     * thread once the run is over otherwise. Must be called on the main thread.
+     */
+    void postPendingUpdate() {
+        synchronized (this) {
+            mPostUpdate = true;
+        }
+        applyPendingUpdate();
+    }
+
+    /**
+     * Drop the state updating of the task, whether it is pending or already posted. Must be
+     * called on the main thread.
+     */
+    void cancel() {
+        synchronized (this) {
+            mCancelled = true;
+            mPendingPreference = null;
+        }
+    }
+
+    private synchronized boolean isCancelled() {
+        return mCancelled;
+    }
+
+    private void updateState(Preference preference) {
+        final long t = SystemClock.elapsedRealtime();
+        mController.updateState(preference);
+        final int elapsedTime = (int) (SystemClock.elapsedRealtime() - t);
+        if (elapsedTime > CONTROLLER_UPDATESTATE_TIME_THRESHOLD) {
+            Log.w(TAG, "The updateState took " + elapsedTime + " ms in Controller "
+                    + mController.getClass().getSimpleName());
+            if (mMetricsFeature != null) {
+                mMetricsFeature.action(SettingsEnums.PAGE_UNKNOWN,
+                        SettingsEnums.ACTION_CONTROLLER_UPDATE_STATE, mMetricsCategory,
+                        mController.getClass().getSimpleName(), elapsedTime);
+            }
+        }
+    }
+
     AbstractPreferenceController getController() {
         return mController;
     }
@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.settings.dashboard;
+
+import com.android.settings.utils.LazyThreadPool;
+
+import java.util.concurrent.PriorityBlockingQueue;
+
+/**
+ * A bounded executor dedicated to {@link ControllerFutureTask}s. Queued tasks are ordered by
+ * their priority, so controllers near the top of the screen are evaluated first.
+ */
+public class ControllerTaskExecutor {
+    private static final int MAX_THREADS = 4;
+    private static final long KEEP_ALIVE_SECONDS = 30L;
+
+    private static final LazyThreadPool sPool = new LazyThreadPool("DashboardController",
+            Math.max(1, Math.min(MAX_THREADS, Runtime.getRuntime().availableProcessors())),
+            KEEP_ALIVE_SECONDS, new PriorityBlockingQueue<>());
+
+    private ControllerTaskExecutor() {
+    }
+
+    /**
+     * Queue the task for execution on a dashboard worker thread.
+     */
+    public static void execute(ControllerFutureTask task) {
+        sPool.get().execute(task);
+    }
+
+    /**
+     * Cancel the task and drop its state updating, removing it from the queue if it has not
+     * started yet. Must be called on the main thread.
+     */
+    public static void cancel(ControllerFutureTask task) {
+        task.getControllerTask().cancel();
+        sPool.get().remove(task);
+        task.cancel(false /* mayInterruptIfRunning */);
+    }
+}
@@ -73,6 +73,7 @@ import com.android.settingslib.widget.AdaptiveIcon;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.WeakHashMap;
 
 /**
  * Impl for {@code DashboardFeatureProvider}.
@@ -88,6 +89,8 @@ public class DashboardFeatureProviderImpl implements DashboardFeatureProvider {
     private final MetricsFeatureProvider mMetricsFeatureProvider;
     private final CategoryManager mCategoryManager;
     private final PackageManager mPackageManager;
+    // Dynamic data of the tiles of each page, fetched in batches. Guarded by itself.
+    private final Map<FragmentActivity, TileDataFetcher> mTileDataFetchers = new WeakHashMap<>();
 
     public DashboardFeatureProviderImpl(Context context) {
         mContext = context.getApplicationContext();
@@ -136,16 +139,17 @@ public class DashboardFeatureProviderImpl implements DashboardFeatureProvider {
         } else {
             pref.setKey(getDashboardKeyForTile(tile));
         }
+        final TileDataFetcher fetcher = getTileDataFetcher(activity);
         final List<DynamicDataObserver> outObservers = new ArrayList<>();
-        DynamicDataObserver observer = bindTitleAndGetObserver(pref, tile);
+        DynamicDataObserver observer = bindTitleAndGetObserver(fetcher, pref, tile);
         if (observer != null) {
             outObservers.add(observer);
         }
-        observer = bindSummaryAndGetObserver(pref, tile);
+        observer = bindSummaryAndGetObserver(fetcher, pref, tile);
         if (observer != null) {
             outObservers.add(observer);
         }
-        observer = bindSwitchAndGetObserver(pref, tile);
+        observer = bindSwitchAndGetObserver(fetcher, pref, tile);
         if (observer != null) {
             outObservers.add(observer);
         }
@@ -204,7 +208,19 @@ public class DashboardFeatureProviderImpl implements DashboardFeatureProvider {
         launchIntentOrSelectProfile(activity, tile, intent, SettingsEnums.DASHBOARD_SUMMARY);
     }
 
-    private DynamicDataObserver createDynamicDataObserver(String method, Uri uri, Preference pref) {
+    private TileDataFetcher getTileDataFetcher(FragmentActivity activity) {
+        synchronized (mTileDataFetchers) {
+            TileDataFetcher fetcher = mTileDataFetchers.get(activity);
+            if (fetcher == null) {
+                fetcher = new TileDataFetcher();
+                mTileDataFetchers.put(activity, fetcher);
+            }
+            return fetcher;
+        }
+    }
+
+    private DynamicDataObserver createDynamicDataObserver(TileDataFetcher fetcher, String method,
+            Uri uri, Preference pref) {
         return new DynamicDataObserver() {
             @Override
             public Uri getUri() {
@@ -215,20 +231,21 @@ public class DashboardFeatureProviderImpl implements DashboardFeatureProvider {
             public void onDataChanged() {
                 switch (method) {
                     case METHOD_GET_DYNAMIC_TITLE:
-                        refreshTitle(uri, pref);
+                        refreshTitle(fetcher, uri, pref);
                         break;
                     case METHOD_GET_DYNAMIC_SUMMARY:
-                        refreshSummary(uri, pref);
+                        refreshSummary(fetcher, uri, pref);
                         break;
                     case METHOD_IS_CHECKED:
-                        refreshSwitch(uri, pref);
+                        refreshSwitch(fetcher, uri, pref);
                         break;
                 }
             }
         };
     }
 
-    private DynamicDataObserver bindTitleAndGetObserver(Preference preference, Tile tile) {
+    private DynamicDataObserver bindTitleAndGetObserver(TileDataFetcher fetcher,
+            Preference preference, Tile tile) {
         final CharSequence title = tile.getTitle(mContext.getApplicationContext());
         if (title != null) {
             preference.setTitle(title);
@@ -242,24 +259,25 @@ public class DashboardFeatureProviderImpl implements DashboardFeatureProvider {
 
             final Uri uri = TileUtils.getCompleteUri(tile, META_DATA_PREFERENCE_TITLE_URI,
                     METHOD_GET_DYNAMIC_TITLE);
-            refreshTitle(uri, preference);
-            return createDynamicDataObserver(METHOD_GET_DYNAMIC_TITLE, uri, preference);
+            refreshTitle(fetcher, uri, preference);
+            return createDynamicDataObserver(fetcher, METHOD_GET_DYNAMIC_TITLE, uri, preference);
         }
         return null;
     }
 
-    private void refreshTitle(Uri uri, Preference preference) {
-        ThreadUtils.postOnBackgroundThread(() -> {
-            final Map<String, IContentProvider> providerMap = new ArrayMap<>();
-            final String titleFromUri = TileUtils.getTextFromUri(
-                    mContext, uri, providerMap, META_DATA_PREFERENCE_TITLE);
-            if (!TextUtils.equals(titleFromUri, preference.getTitle())) {
-                ThreadUtils.postOnMainThread(() -> preference.setTitle(titleFromUri));
-            }
-        });
+    private void refreshTitle(TileDataFetcher fetcher, Uri uri, Preference preference) {
+        fetcher.fetch(uri,
+                providerMap -> TileUtils.getTextFromUri(
+                        mContext, uri, providerMap, META_DATA_PREFERENCE_TITLE),
+                titleFromUri -> {
+                    if (!TextUtils.equals(titleFromUri, preference.getTitle())) {
+                        preference.setTitle(titleFromUri);
+                    }
+                });
     }
 
-    private DynamicDataObserver bindSummaryAndGetObserver(Preference preference, Tile tile) {
+    private DynamicDataObserver bindSummaryAndGetObserver(TileDataFetcher fetcher,
+            Preference preference, Tile tile) {
         final CharSequence summary = tile.getSummary(mContext);
         if (summary != null) {
             preference.setSummary(summary);
@@ -271,26 +289,28 @@ public class DashboardFeatureProviderImpl implements DashboardFeatureProvider {
 
             final Uri uri = TileUtils.getCompleteUri(tile, META_DATA_PREFERENCE_SUMMARY_URI,
                     METHOD_GET_DYNAMIC_SUMMARY);
-            refreshSummary(uri, preference);
-            return createDynamicDataObserver(METHOD_GET_DYNAMIC_SUMMARY, uri, preference);
+            refreshSummary(fetcher, uri, preference);
+            return createDynamicDataObserver(fetcher, METHOD_GET_DYNAMIC_SUMMARY, uri,
+                    preference);
         } else {
             preference.setSummary(R.string.summary_placeholder);
         }
         return null;
     }
 
-    private void refreshSummary(Uri uri, Preference preference) {
-        ThreadUtils.postOnBackgroundThread(() -> {
-            final Map<String, IContentProvider> providerMap = new ArrayMap<>();
-            final String summaryFromUri = TileUtils.getTextFromUri(
-                    mContext, uri, providerMap, META_DATA_PREFERENCE_SUMMARY);
-            if (!TextUtils.equals(summaryFromUri, preference.getSummary())) {
-                ThreadUtils.postOnMainThread(() -> preference.setSummary(summaryFromUri));
-            }
-        });
+    private void refreshSummary(TileDataFetcher fetcher, Uri uri, Preference preference) {
+        fetcher.fetch(uri,
+                providerMap -> TileUtils.getTextFromUri(
+                        mContext, uri, providerMap, META_DATA_PREFERENCE_SUMMARY),
+                summaryFromUri -> {
+                    if (!TextUtils.equals(summaryFromUri, preference.getSummary())) {
+                        preference.setSummary(summaryFromUri);
+                    }
+                });
     }
 
-    private DynamicDataObserver bindSwitchAndGetObserver(Preference preference, Tile tile) {
+    private DynamicDataObserver bindSwitchAndGetObserver(TileDataFetcher fetcher,
+            Preference preference, Tile tile) {
         if (!tile.hasSwitch()) {
             return null;
         }
@@ -298,50 +318,52 @@ public class DashboardFeatureProviderImpl implements DashboardFeatureProvider {
         final Uri onCheckedChangedUri = TileUtils.getCompleteUri(tile,
                 META_DATA_PREFERENCE_SWITCH_URI, METHOD_ON_CHECKED_CHANGED);
         preference.setOnPreferenceChangeListener((pref, newValue) -> {
-            onCheckedChanged(onCheckedChangedUri, pref, (boolean) newValue);
+            onCheckedChanged(fetcher, onCheckedChangedUri, pref, (boolean) newValue);
             return true;
         });
 
         final Uri isCheckedUri = TileUtils.getCompleteUri(tile, META_DATA_PREFERENCE_SWITCH_URI,
                 METHOD_IS_CHECKED);
         setSwitchEnabled(preference, false);
-        refreshSwitch(isCheckedUri, preference);
-        return createDynamicDataObserver(METHOD_IS_CHECKED, isCheckedUri, preference);
+        refreshSwitch(fetcher, isCheckedUri, preference);
+        return createDynamicDataObserver(fetcher, METHOD_IS_CHECKED, isCheckedUri, preference);
     }
 
-    private void onCheckedChanged(Uri uri, Preference pref, boolean checked) {
+    private void onCheckedChanged(TileDataFetcher fetcher, Uri uri, Preference pref,
+            boolean checked) {
         setSwitchEnabled(pref, false);
-        ThreadUtils.postOnBackgroundThread(() -> {
-            final Map<String, IContentProvider> providerMap = new ArrayMap<>();
-            final Bundle result = TileUtils.putBooleanToUriAndGetResult(mContext, uri, providerMap,
-                    EXTRA_SWITCH_CHECKED_STATE, checked);
-
-            ThreadUtils.postOnMainThread(() -> {
-                setSwitchEnabled(pref, true);
-                final boolean error = result.getBoolean(EXTRA_SWITCH_SET_CHECKED_ERROR);
-                if (!error) {
-                    return;
-                }
-
-                setSwitchChecked(pref, !checked);
-                final String errorMsg = result.getString(EXTRA_SWITCH_SET_CHECKED_ERROR_MESSAGE);
-                if (!TextUtils.isEmpty(errorMsg)) {
-                    Toast.makeText(mContext, errorMsg, Toast.LENGTH_SHORT).show();
-                }
-            });
-        });
+        fetcher.fetch(uri,
+                providerMap -> TileUtils.putBooleanToUriAndGetResult(mContext, uri, providerMap,
+                        EXTRA_SWITCH_CHECKED_STATE, checked),
+                result -> {
+                    setSwitchEnabled(pref, true);
+                    final boolean error = result.getBoolean(EXTRA_SWITCH_SET_CHECKED_ERROR);
+                    if (!error) {
+                        return;
+                    }
+
+                    setSwitchChecked(pref, !checked);
+                    final String errorMsg =
+                            result.getString(EXTRA_SWITCH_SET_CHECKED_ERROR_MESSAGE);
+                    if (!TextUtils.isEmpty(errorMsg)) {
+                        Toast.makeText(mContext, errorMsg, Toast.LENGTH_SHORT).show();
+                    }
+                },
+                () -> {
+                    // The provider couldn't be reached, the state is unchanged.
+                    setSwitchEnabled(pref, true);
+                    setSwitchChecked(pref, !checked);
+                });
     }
 
-    private void refreshSwitch(Uri uri, Preference preference) {
-        ThreadUtils.postOnBackgroundThread(() -> {
-            final Map<String, IContentProvider> providerMap = new ArrayMap<>();
-            final boolean checked = TileUtils.getBooleanFromUri(mContext, uri, providerMap,
-                    EXTRA_SWITCH_CHECKED_STATE);
-            ThreadUtils.postOnMainThread(() -> {
-                setSwitchChecked(preference, checked);
-                setSwitchEnabled(preference, true);
-            });
-        });
+    private void refreshSwitch(TileDataFetcher fetcher, Uri uri, Preference preference) {
+        fetcher.fetch(uri,
+                providerMap -> TileUtils.getBooleanFromUri(mContext, uri, providerMap,
+                        EXTRA_SWITCH_CHECKED_STATE),
+                checked -> {
+                    setSwitchChecked(preference, checked);
+                    setSwitchEnabled(preference, true);
+                });
     }
 
     private void setSwitchChecked(Preference pref, boolean checked) {
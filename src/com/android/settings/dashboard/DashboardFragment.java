@@ -20,6 +20,7 @@ import android.app.settings.SettingsEnums;
 import android.content.ContentResolver;
 import android.content.Context;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.text.TextUtils;
 import android.util.ArrayMap;
 import android.util.FeatureFlagUtils;
@@ -48,7 +49,6 @@ import com.android.settingslib.drawer.DashboardCategory;
 import com.android.settingslib.drawer.ProviderTile;
 import com.android.settingslib.drawer.Tile;
 import com.android.settingslib.search.Indexable;
-import com.android.settingslib.utils.ThreadUtils;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -57,6 +57,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Base fragment for dashboard style UI containing a list of static and dynamic setting items.
@@ -67,6 +69,8 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
         BasePreferenceController.UiBlockListener {
     public static final String CATEGORY = "category";
     private static final String TAG = "DashboardFragment";
+    // Maximum time to wait for the controllers in updatePreferenceStatesInParallel.
+    private static final long CONTROLLER_DEADLINE_MS = 500L;
 
     @VisibleForTesting
     final ArrayMap<String, List<DynamicDataObserver>> mDashboardTilePrefKeys = new ArrayMap<>();
@@ -74,6 +78,8 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
             new ArrayMap<>();
     private final List<DynamicDataObserver> mRegisteredObservers = new ArrayList<>();
     private final List<AbstractPreferenceController> mControllers = new ArrayList<>();
+    // Controllers that missed the deadline of the last parallel update.
+    private final List<ControllerFutureTask> mLateControllerTasks = new ArrayList<>();
     @VisibleForTesting
     UiBlockerController mBlockerController;
     private DashboardFeatureProvider mDashboardFeatureProvider;
@@ -233,6 +239,7 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
     @Override
     public void onStop() {
         super.onStop();
+        cancelLateControllerTasks();
         unregisterDynamicDataObservers(new ArrayList<>(mRegisteredObservers));
         if (mListeningToCategoryChange) {
             final Activity activity = getActivity();
@@ -385,30 +392,93 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
 
     /**
      * Use parallel method to update state of each preference managed by PreferenceController.
+     *
+     * Controllers are prioritized by the position of their preference on the screen, and every
+     * resulting {@link AbstractPreferenceController#updateState(Preference)} is applied in a
+     * single main thread pass once the availability checks are done. The controllers still
+     * running after {@link #CONTROLLER_DEADLINE_MS} update their preference when they are done.
      */
     @VisibleForTesting
     void updatePreferenceStatesInParallel() {
+        // This pass updates every controller again.
+        cancelLateControllerTasks();
         final PreferenceScreen screen = getPreferenceScreen();
+        final Map<String, Integer> positions = getPreferencePositions(screen);
         final Collection<List<AbstractPreferenceController>> controllerLists =
                 mPreferenceControllers.values();
         final List<ControllerFutureTask> taskList = new ArrayList<>();
         for (List<AbstractPreferenceController> controllerList : controllerLists) {
             for (AbstractPreferenceController controller : controllerList) {
+                final Integer position = positions.get(controller.getPreferenceKey());
                 final ControllerFutureTask task = new ControllerFutureTask(
                         new ControllerTask(controller, screen, mMetricsFeatureProvider,
-                                getMetricsCategory()), null /* result */);
+                                getMetricsCategory(), true /* deferred */), null /* result */,
+                        position != null ? position : Integer.MAX_VALUE);
                 taskList.add(task);
-                ThreadUtils.postOnBackgroundThread(task);
             }
         }
+        // Apply the updates in the on-screen order.
+        taskList.sort(null);
+        for (ControllerFutureTask task : taskList) {
+            ControllerTaskExecutor.execute(task);
+        }
 
+        final long deadline = SystemClock.uptimeMillis() + CONTROLLER_DEADLINE_MS;
         for (ControllerFutureTask task : taskList) {
             try {
-                task.get();
+                task.get(Math.max(0, deadline - SystemClock.uptimeMillis()),
+                        TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                Log.w(TAG, task.getController().getPreferenceKey() + " missed the deadline of "
+                        + CONTROLLER_DEADLINE_MS + " ms");
             } catch (InterruptedException | ExecutionException e) {
                 Log.w(TAG, task.getController().getPreferenceKey() + " " + e.getMessage());
             }
         }
+
+        for (ControllerFutureTask task : taskList) {
+            if (task.isDone()) {
+                task.getControllerTask().applyPendingUpdate();
+            } else {
+                // Late controllers update their preference when they are done, unless the
+                // fragment is stopped first.
+                task.getControllerTask().postPendingUpdate();
+                mLateControllerTasks.add(task);
+            }
+        }
+    }
+
+    private void cancelLateControllerTasks() {
+        for (ControllerFutureTask task : mLateControllerTasks) {
+            ControllerTaskExecutor.cancel(task);
+        }
+        mLateControllerTasks.clear();
+    }
+
+    /**
+     * Returns the position of each preference in the screen, in a depth-first traversal.
+     */
+    private static Map<String, Integer> getPreferencePositions(PreferenceScreen screen) {
+        final Map<String, Integer> positions = new ArrayMap<>();
+        if (screen != null) {
+            collectPreferencePositions(screen, positions);
+        }
+        return positions;
+    }
+
+    private static void collectPreferencePositions(PreferenceGroup group,
+            Map<String, Integer> positions) {
+        final int count = group.getPreferenceCount();
+        for (int i = 0; i < count; i++) {
+            final Preference preference = group.getPreference(i);
+            final String key = preference.getKey();
+            if (!TextUtils.isEmpty(key) && !positions.containsKey(key)) {
+                positions.put(key, positions.size());
+            }
+            if (preference instanceof PreferenceGroup) {
+                collectPreferencePositions((PreferenceGroup) preference, positions);
+            }
+        }
     }
 
     /**
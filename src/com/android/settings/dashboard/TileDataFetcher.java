@@ -0,0 +1,239 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.dashboard;
+
+import android.content.IContentProvider;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.ArrayMap;
+import android.util.Log;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settings.utils.LazyThreadPool;
+import com.android.settingslib.utils.ThreadUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Fetches the dynamic data of the tiles injected in a page, in batches.
+ *
+ * <p>Requests made during the same main thread turn are grouped by authority. The authorities of a
+ * batch are queried concurrently, and one content provider client is kept per authority for the
+ * lifetime of the page. Results of the authorities that answer within
+ * {@link #AUTHORITY_DEADLINE_MS} are applied together in one main thread pass, once they all
+ * answered or when the deadline is over. Slower ones are applied when they answer. No thread
+ * waits for the authorities of a batch.
+ */
+class TileDataFetcher {
+    private static final String TAG = "TileDataFetcher";
+
+    @VisibleForTesting
+    static final long AUTHORITY_DEADLINE_MS = 300;
+    private static final int FETCH_THREADS = 4;
+    private static final long FETCH_KEEP_ALIVE_SECONDS = 10;
+
+    private static final LazyThreadPool sFetchPool = new LazyThreadPool("TileDataFetcher",
+            FETCH_THREADS, FETCH_KEEP_ALIVE_SECONDS);
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    // Keyed by authority, as expected by TileUtils. The provider of an authority may be missing.
+    private final Map<String, IContentProvider> mProviderMap =
+            Collections.synchronizedMap(new ArrayMap<>());
+    // Guarded by itself.
+    private final List<Request<?>> mPendingRequests = new ArrayList<>();
+    private boolean mDispatchScheduled;
+
+    /**
+     * Runs {@code query} for {@code uri} with the next batch, and passes its result to
+     * {@code onResult} on the main thread. Results of a query that throws are dropped.
+     *
+     * @param query reads {@code uri}, using the given provider map
+     */
+    <T> void fetch(Uri uri, Function<Map<String, IContentProvider>, T> query,
+            Consumer<T> onResult) {
+        fetch(uri, query, onResult, null /* onFailure */);
+    }
+
+    /**
+     * Same as {@link #fetch(Uri, Function, Consumer)}, but runs {@code onFailure} on the main
+     * thread instead when {@code query} throws.
+     */
+    <T> void fetch(Uri uri, Function<Map<String, IContentProvider>, T> query,
+            Consumer<T> onResult, Runnable onFailure) {
+        synchronized (mPendingRequests) {
+            mPendingRequests.add(new Request<>(uri, query, onResult, onFailure));
+            if (mDispatchScheduled) {
+                return;
+            }
+            mDispatchScheduled = true;
+        }
+        mMainHandler.post(this::dispatch);
+    }
+
+    private void dispatch() {
+        final List<Request<?>> requests;
+        synchronized (mPendingRequests) {
+            requests = new ArrayList<>(mPendingRequests);
+            mPendingRequests.clear();
+            mDispatchScheduled = false;
+        }
+
+        final ArrayMap<String, List<Request<?>>> groups = new ArrayMap<>();
+        for (Request<?> request : requests) {
+            final String authority = request.mUri.getAuthority();
+            List<Request<?>> group = groups.get(authority);
+            if (group == null) {
+                group = new ArrayList<>();
+                groups.put(authority, group);
+            }
+            group.add(request);
+        }
+        if (groups.size() == 1) {
+            // Nothing to run concurrently.
+            ThreadUtils.postOnBackgroundThread(() -> {
+                runGroup(groups.keyAt(0), requests);
+                deliver(requests);
+            });
+            return;
+        }
+
+        final Batch batch = new Batch(mMainHandler, groups.size());
+        mMainHandler.postDelayed(batch, AUTHORITY_DEADLINE_MS);
+        for (int i = 0; i < groups.size(); i++) {
+            final String authority = groups.keyAt(i);
+            final List<Request<?>> group = groups.valueAt(i);
+            sFetchPool.get().execute(() -> {
+                runGroup(authority, group);
+                batch.onGroupDone(group);
+            });
+        }
+    }
+
+    private void runGroup(String authority, List<Request<?>> group) {
+        final IContentProvider provider = mProviderMap.get(authority);
+        if (provider != null && !provider.asBinder().isBinderAlive()) {
+            // The provider process died, acquire a new client.
+            mProviderMap.remove(authority);
+        }
+        for (Request<?> request : group) {
+            request.run(mProviderMap);
+        }
+    }
+
+    private static void deliver(List<Request<?>> requests) {
+        if (requests.isEmpty()) {
+            return;
+        }
+        ThreadUtils.postOnMainThread(() -> {
+            for (Request<?> request : requests) {
+                request.deliver();
+            }
+        });
+    }
+
+    /**
+     * Groups of a batch that are done, delivered together once all the groups are done, or when
+     * the batch runs on the main thread at the deadline. Groups done later are delivered alone.
+     */
+    private static final class Batch implements Runnable {
+        private final Handler mMainHandler;
+        private final List<Request<?>> mDoneRequests = new ArrayList<>();
+        private int mPendingGroups;
+        private boolean mDelivered;
+
+        Batch(Handler mainHandler, int groupCount) {
+            mMainHandler = mainHandler;
+            mPendingGroups = groupCount;
+        }
+
+        void onGroupDone(List<Request<?>> group) {
+            final List<Request<?>> requests;
+            synchronized (this) {
+                mPendingGroups--;
+                if (mDelivered) {
+                    requests = group;
+                } else {
+                    mDoneRequests.addAll(group);
+                    if (mPendingGroups > 0) {
+                        return;
+                    }
+                    mDelivered = true;
+                    requests = mDoneRequests;
+                }
+            }
+            mMainHandler.removeCallbacks(this);
+            deliver(requests);
+        }
+
+        @Override
+        public void run() {
+            final List<Request<?>> requests;
+            synchronized (this) {
+                if (mDelivered) {
+                    return;
+                }
+                mDelivered = true;
+                requests = mDoneRequests;
+                Log.w(TAG, "Authorities missing the deadline: " + mPendingGroups);
+            }
+            for (Request<?> request : requests) {
+                request.deliver();
+            }
+        }
+    }
+
+    private static final class Request<T> {
+        final Uri mUri;
+        final Function<Map<String, IContentProvider>, T> mQuery;
+        final Consumer<T> mOnResult;
+        final Runnable mOnFailure;
+        T mResult;
+        boolean mFailed;
+
+        Request(Uri uri, Function<Map<String, IContentProvider>, T> query,
+                Consumer<T> onResult, Runnable onFailure) {
+            mUri = uri;
+            mQuery = query;
+            mOnResult = onResult;
+            mOnFailure = onFailure;
+        }
+
+        void run(Map<String, IContentProvider> providerMap) {
+            try {
+                mResult = mQuery.apply(providerMap);
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Failed to fetch " + mUri, e);
+                mFailed = true;
+            }
+        }
+
+        void deliver() {
+            if (!mFailed) {
+                mOnResult.accept(mResult);
+            } else if (mOnFailure != null) {
+                mOnFailure.run();
+            }
+        }
+    }
+}
@@ -24,6 +24,21 @@ public class AppStateDataUsageBridge extends AppStateBaseBridge {
     private static final String TAG = "AppStateDataUsageBridge";
 
     private final DataSaverBackend mDataSaverBackend;
+    private final DataSaverBackend.Listener mDataSaverListener = new DataSaverBackend.Listener() {
+        @Override
+        public void onDataSaverChanged(boolean isDataSaving) {
+        }
+
+        @Override
+        public void onWhitelistStatusChanged(int uid, boolean isWhitelisted) {
+            notifyUidChanged(uid);
+        }
+
+        @Override
+        public void onBlacklistStatusChanged(int uid, boolean isBlacklisted) {
+            notifyUidChanged(uid);
+        }
+    };
 
     public AppStateDataUsageBridge(ApplicationsState appState, Callback callback,
             DataSaverBackend backend) {
@@ -31,6 +46,17 @@ public class AppStateDataUsageBridge extends AppStateBaseBridge {
         mDataSaverBackend = backend;
     }
 
+    @Override
+    protected boolean startWatchingChanges() {
+        mDataSaverBackend.addListener(mDataSaverListener);
+        return true;
+    }
+
+    @Override
+    protected void stopWatchingChanges() {
+        mDataSaverBackend.remListener(mDataSaverListener);
+    }
+
     @Override
     protected void loadAllExtraInfo() {
         ArrayList<AppEntry> apps = mAppSession.getAllApps();
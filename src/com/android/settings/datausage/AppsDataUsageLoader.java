@@ -0,0 +1,347 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.datausage;
+
+import static android.net.NetworkPolicyManager.POLICY_REJECT_METERED_BACKGROUND;
+import static android.net.TrafficStats.UID_REMOVED;
+import static android.net.TrafficStats.UID_TETHERING;
+
+import android.app.ActivityManager;
+import android.app.usage.NetworkStats;
+import android.app.usage.NetworkStats.Bucket;
+import android.app.usage.NetworkStatsManager;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.NetworkPolicyManager;
+import android.net.NetworkTemplate;
+import android.os.Process;
+import android.os.UserHandle;
+import android.os.UserManager;
+import android.text.format.DateUtils;
+import android.util.Log;
+import android.util.LruCache;
+import android.util.SparseArray;
+import android.util.SparseIntArray;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settingslib.AppItem;
+import com.android.settingslib.net.UidDetailProvider;
+import com.android.settingslib.utils.AsyncLoaderCompat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Loads the data usage of a network template over a time range, collapsed into the sorted
+ * {@link AppItem}s shown by {@link DataUsageList}.
+ *
+ * <p>Usage of a billing cycle doesn't change once the cycle is over, so the usage of closed
+ * cycles is kept in a process-wide LRU cache and only the open cycle is queried again. Cycles
+ * using an app are dropped when the app is uninstalled, as its usage moves to
+ * {@link android.net.TrafficStats#UID_REMOVED}.
+ */
+public class AppsDataUsageLoader extends AsyncLoaderCompat<List<AppItem>> {
+    private static final String TAG = "AppsDataUsageLoader";
+
+    // How the apps of a user are collapsed, resolved once per user.
+    private static final int USER_PROFILE = 1;
+    private static final int USER_OTHER = 2;
+    private static final int USER_REMOVED = 3;
+
+    @VisibleForTesting
+    static final int MAX_CACHED_CYCLES = 16;
+    // Stats are persisted in batches, so a cycle is only considered closed some time after its
+    // end.
+    @VisibleForTesting
+    static final long CLOSED_CYCLE_DELAY_MS = DateUtils.DAY_IN_MILLIS;
+
+    // Usage of closed cycles, before restricted uids are spliced in. Items must not be modified.
+    // Apps are collapsed by user, so the usage also depends on the current user and its profiles.
+    private static final LruCache<CacheKey, List<AppItem>> sClosedCycles =
+            new LruCache<>(MAX_CACHED_CYCLES);
+    private static Context sReceiverContext;
+
+    private final NetworkStatsManager mNetworkStatsManager;
+    private final NetworkPolicyManager mPolicyManager;
+    private final UserManager mUserManager;
+    private final NetworkTemplate mTemplate;
+    private final long mStart;
+    private final long mEnd;
+
+    public AppsDataUsageLoader(Context context, NetworkPolicyManager policyManager,
+            NetworkTemplate template, long start, long end) {
+        super(context);
+        mNetworkStatsManager = context.getSystemService(NetworkStatsManager.class);
+        mPolicyManager = policyManager;
+        mUserManager = UserManager.get(context);
+        mTemplate = template;
+        mStart = start;
+        mEnd = end;
+        registerPackageRemovedReceiver(context.getApplicationContext());
+    }
+
+    @Override
+    public List<AppItem> loadInBackground() {
+        final CacheKey key = new CacheKey(mTemplate, mStart, mEnd,
+                ActivityManager.getCurrentUser(), getProfileIds());
+        List<AppItem> usage = sClosedCycles.get(key);
+        if (usage == null) {
+            usage = queryUsage();
+            if (usage == null) {
+                return null;
+            }
+            if (mEnd + CLOSED_CYCLE_DELAY_MS <= System.currentTimeMillis()) {
+                sClosedCycles.put(key, usage);
+            }
+        }
+        final int[] restrictedUids = mPolicyManager.getUidsWithPolicy(
+                POLICY_REJECT_METERED_BACKGROUND);
+        return addRestrictedUids(copy(usage), restrictedUids);
+    }
+
+    @Override
+    protected void onDiscardResult(List<AppItem> result) {
+    }
+
+    @VisibleForTesting
+    static void clearCache() {
+        sClosedCycles.evictAll();
+    }
+
+    /** Drops the cached cycles in which {@code uid} used data. */
+    @VisibleForTesting
+    static void onUidRemoved(int uid) {
+        for (Map.Entry<CacheKey, List<AppItem>> entry : sClosedCycles.snapshot().entrySet()) {
+            for (AppItem item : entry.getValue()) {
+                if (item.uids.get(uid)) {
+                    sClosedCycles.remove(entry.getKey());
+                    break;
+                }
+            }
+        }
+    }
+
+    private static synchronized void registerPackageRemovedReceiver(Context context) {
+        if (sReceiverContext == context) {
+            return;
+        }
+        sReceiverContext = context;
+        final IntentFilter filter = new IntentFilter(Intent.ACTION_PACKAGE_REMOVED);
+        filter.addDataScheme("package");
+        context.registerReceiver(new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                // An updated app keeps its uid.
+                if (intent.getBooleanExtra(Intent.EXTRA_REPLACING, false)) {
+                    return;
+                }
+                final int uid = intent.getIntExtra(Intent.EXTRA_UID, -1);
+                if (uid != -1) {
+                    onUidRemoved(uid);
+                }
+            }
+        }, filter);
+    }
+
+    /** Queries the usage of the time range, or returns {@code null} if it is unavailable. */
+    @VisibleForTesting
+    List<AppItem> queryUsage() {
+        final NetworkStats stats;
+        try {
+            stats = mNetworkStatsManager.querySummary(mTemplate, mStart, mEnd);
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Exception querying network detail.", e);
+            return null;
+        }
+        return stats != null ? collapse(stats) : null;
+    }
+
+    /**
+     * Collapses the buckets of {@code stats} into one item per app, user or special uid, and
+     * closes it.
+     */
+    private List<AppItem> collapse(NetworkStats stats) {
+        final ArrayList<AppItem> items = new ArrayList<>();
+        final SparseArray<AppItem> knownItems = new SparseArray<>();
+        final int currentUserId = ActivityManager.getCurrentUser();
+        final SparseIntArray userTypes = getProfileUserTypes();
+
+        final Bucket bucket = new Bucket();
+        while (stats.hasNextBucket() && stats.getNextBucket(bucket)) {
+            // Decide how to collapse items together
+            final int uid = bucket.getUid();
+            final long bytes = bucket.getRxBytes() + bucket.getTxBytes();
+            final int userId = UserHandle.getUserId(uid);
+            if (UserHandle.isApp(uid)) {
+                final int userType = getUserType(userTypes, userId);
+                if (userType == USER_PROFILE) {
+                    if (userId != currentUserId) {
+                        // Add to a managed user item.
+                        accumulate(UidDetailProvider.buildKeyForUser(userId), uid, bytes,
+                                AppItem.CATEGORY_USER, knownItems, items);
+                    }
+                    // Add to app item.
+                    accumulate(uid, uid, bytes, AppItem.CATEGORY_APP, knownItems, items);
+                } else if (userType == USER_REMOVED) {
+                    // If it is a removed user add it to the removed users' key
+                    accumulate(UID_REMOVED, uid, bytes, AppItem.CATEGORY_APP, knownItems, items);
+                } else {
+                    // Add to other user item.
+                    accumulate(UidDetailProvider.buildKeyForUser(userId), uid, bytes,
+                            AppItem.CATEGORY_USER, knownItems, items);
+                }
+            } else if (uid == UID_REMOVED || uid == UID_TETHERING
+                    || uid == Process.OTA_UPDATE_UID) {
+                accumulate(uid, uid, bytes, AppItem.CATEGORY_APP, knownItems, items);
+            } else {
+                accumulate(Process.SYSTEM_UID, uid, bytes, AppItem.CATEGORY_APP, knownItems,
+                        items);
+            }
+        }
+        stats.close();
+        return items;
+    }
+
+    /** Marks {@code restrictedUids} in {@code items} and returns them sorted for display. */
+    private List<AppItem> addRestrictedUids(List<AppItem> items, int[] restrictedUids) {
+        final SparseArray<AppItem> knownItems = new SparseArray<>(items.size());
+        for (AppItem item : items) {
+            knownItems.put(item.key, item);
+        }
+        final SparseIntArray userTypes = getProfileUserTypes();
+        for (int uid : restrictedUids) {
+            // Only splice in restricted state for current user or managed users
+            if (userTypes.get(UserHandle.getUserId(uid)) != USER_PROFILE) {
+                continue;
+            }
+
+            AppItem item = knownItems.get(uid);
+            if (item == null) {
+                item = new AppItem(uid);
+                item.total = -1;
+                items.add(item);
+                knownItems.put(item.key, item);
+            }
+            item.restricted = true;
+        }
+
+        Collections.sort(items);
+        return items;
+    }
+
+    private SparseIntArray getProfileUserTypes() {
+        final SparseIntArray userTypes = new SparseIntArray();
+        for (int profileId : getProfileIds()) {
+            userTypes.put(profileId, USER_PROFILE);
+        }
+        return userTypes;
+    }
+
+    /** Returns the ids of the profiles of the current user, sorted. */
+    @VisibleForTesting
+    int[] getProfileIds() {
+        final List<UserHandle> profiles = mUserManager.getUserProfiles();
+        final int[] profileIds = new int[profiles.size()];
+        for (int i = 0; i < profileIds.length; i++) {
+            profileIds[i] = profiles.get(i).getIdentifier();
+        }
+        Arrays.sort(profileIds);
+        return profileIds;
+    }
+
+    private int getUserType(SparseIntArray userTypes, int userId) {
+        int userType = userTypes.get(userId);
+        if (userType == 0) {
+            userType = mUserManager.getUserInfo(userId) == null ? USER_REMOVED : USER_OTHER;
+            userTypes.put(userId, userType);
+        }
+        return userType;
+    }
+
+    /**
+     * Accumulate data usage of a network stats entry for the item mapped by the collapse key.
+     * Creates the item if needed.
+     */
+    private static void accumulate(int collapseKey, int uid, long bytes, int itemCategory,
+            SparseArray<AppItem> knownItems, List<AppItem> items) {
+        AppItem item = knownItems.get(collapseKey);
+        if (item == null) {
+            item = new AppItem(collapseKey);
+            item.category = itemCategory;
+            items.add(item);
+            knownItems.put(item.key, item);
+        }
+        item.addUid(uid);
+        item.total += bytes;
+    }
+
+    private static List<AppItem> copy(List<AppItem> items) {
+        final List<AppItem> copies = new ArrayList<>(items.size());
+        for (AppItem item : items) {
+            final AppItem copy = new AppItem(item.key);
+            copy.category = item.category;
+            for (int i = 0; i < item.uids.size(); i++) {
+                copy.addUid(item.uids.keyAt(i));
+            }
+            copy.total = item.total;
+            copies.add(copy);
+        }
+        return copies;
+    }
+
+    private static final class CacheKey {
+        private final NetworkTemplate mTemplate;
+        private final long mStart;
+        private final long mEnd;
+        private final int mCurrentUserId;
+        private final int[] mProfileIds;
+
+        CacheKey(NetworkTemplate template, long start, long end, int currentUserId,
+                int[] profileIds) {
+            mTemplate = template;
+            mStart = start;
+            mEnd = end;
+            mCurrentUserId = currentUserId;
+            mProfileIds = profileIds;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof CacheKey)) {
+                return false;
+            }
+            final CacheKey other = (CacheKey) o;
+            return mStart == other.mStart && mEnd == other.mEnd
+                    && mCurrentUserId == other.mCurrentUserId
+                    && Objects.equals(mTemplate, other.mTemplate)
+                    && Arrays.equals(mProfileIds, other.mProfileIds);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Objects.hash(mTemplate, mStart, mEnd, mCurrentUserId)
+                    + Arrays.hashCode(mProfileIds);
+        }
+    }
+}
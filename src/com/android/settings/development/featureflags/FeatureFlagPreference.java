@@ -21,6 +21,8 @@ import android.util.FeatureFlagUtils;
 
 import androidx.preference.SwitchPreference;
 
+import com.android.settings.core.AvailabilityCache;
+
 public class FeatureFlagPreference extends SwitchPreference {
 
     private final String mKey;
@@ -49,6 +51,8 @@ public class FeatureFlagPreference extends SwitchPreference {
         } else {
             FeatureFlagUtils.setEnabled(getContext(), mKey, isChecked);
         }
+        // Controllers may be available or not depending on the flag.
+        AvailabilityCache.getInstance(getContext()).clear();
     }
 
     private void setCheckedInternal(boolean isChecked) {
@@ -20,6 +20,7 @@ import android.app.Activity;
 import android.app.settings.SettingsEnums;
 import android.app.usage.StorageStatsManager;
 import android.content.Context;
+import android.content.pm.UserInfo;
 import android.graphics.drawable.Drawable;
 import android.os.Bundle;
 import android.os.UserHandle;
@@ -40,9 +41,9 @@ import com.android.settings.Utils;
 import com.android.settings.dashboard.DashboardFragment;
 import com.android.settings.dashboard.profileselector.ProfileSelectFragment;
 import com.android.settings.deviceinfo.storage.AutomaticStorageManagementSwitchPreferenceController;
-import com.android.settings.deviceinfo.storage.CachedStorageValuesHelper;
 import com.android.settings.deviceinfo.storage.SecondaryUserController;
 import com.android.settings.deviceinfo.storage.StorageAsyncLoader;
+import com.android.settings.deviceinfo.storage.StorageCache;
 import com.android.settings.deviceinfo.storage.StorageItemPreferenceController;
 import com.android.settings.deviceinfo.storage.UserIconLoader;
 import com.android.settings.deviceinfo.storage.VolumeSizesLoader;
@@ -71,7 +72,7 @@ public class StorageDashboardFragment extends DashboardFragment
     private VolumeInfo mVolume;
     private PrivateStorageInfo mStorageInfo;
     private SparseArray<StorageAsyncLoader.AppsStorageResult> mAppsResult;
-    private CachedStorageValuesHelper mCachedStorageValuesHelper;
+    private StorageCache mStorageCache;
 
     private StorageItemPreferenceController mPreferenceController;
     private PrivateVolumeOptionMenuController mOptionMenuController;
@@ -133,6 +134,8 @@ public class StorageDashboardFragment extends DashboardFragment
     @Override
     public void onResume() {
         super.onResume();
+        // The cached sizes are already shown. Load them again anyway, as apps or media may have
+        // changed since they were cached.
         getLoaderManager().restartLoader(STORAGE_JOB_ID, Bundle.EMPTY, this);
         getLoaderManager()
                 .restartLoader(VOLUME_SIZE_JOB_ID, Bundle.EMPTY, new VolumeSizeCallbacks());
@@ -269,7 +272,7 @@ public class StorageDashboardFragment extends DashboardFragment
     public void onLoadFinished(Loader<SparseArray<StorageAsyncLoader.AppsStorageResult>> loader,
             SparseArray<StorageAsyncLoader.AppsStorageResult> data) {
         mAppsResult = data;
-        maybeCacheFreshValues();
+        mStorageCache.putAppsStorageResult(data);
         onReceivedSizes();
     }
 
@@ -278,8 +281,8 @@ public class StorageDashboardFragment extends DashboardFragment
     }
 
     @VisibleForTesting
-    public void setCachedStorageValuesHelper(CachedStorageValuesHelper helper) {
-        mCachedStorageValuesHelper = helper;
+    public void setStorageCache(StorageCache cache) {
+        mStorageCache = cache;
     }
 
     @VisibleForTesting
@@ -303,16 +306,16 @@ public class StorageDashboardFragment extends DashboardFragment
     }
 
     @VisibleForTesting
-    public void initializeCachedValues() {
-        PrivateStorageInfo info = mCachedStorageValuesHelper.getCachedPrivateStorageInfo();
-        SparseArray<StorageAsyncLoader.AppsStorageResult> loaderResult =
-                mCachedStorageValuesHelper.getCachedAppsStorageResult();
-        if (info == null || loaderResult == null) {
-            return;
+    public void initializeCachedValues(int[] userIds) {
+        final PrivateStorageInfo info = mStorageCache.getPrivateStorageInfo();
+        if (info != null) {
+            mStorageInfo = info;
+        }
+        final SparseArray<StorageAsyncLoader.AppsStorageResult> loaderResult =
+                mStorageCache.getAppsStorageResult(userIds);
+        if (loaderResult != null) {
+            mAppsResult = loaderResult;
         }
-
-        mStorageInfo = info;
-        mAppsResult = loaderResult;
     }
 
     @VisibleForTesting
@@ -326,17 +329,14 @@ public class StorageDashboardFragment extends DashboardFragment
     }
 
     private void initializeCacheProvider() {
-        mCachedStorageValuesHelper =
-                new CachedStorageValuesHelper(getContext(), UserHandle.myUserId());
-        initializeCachedValues();
-        onReceivedSizes();
-    }
-
-    private void maybeCacheFreshValues() {
-        if (mStorageInfo != null && mAppsResult != null) {
-            mCachedStorageValuesHelper.cacheResult(
-                    mStorageInfo, mAppsResult.get(UserHandle.myUserId()));
+        mStorageCache = new StorageCache(getContext(), mVolume.fsUuid);
+        final List<UserInfo> users = getContext().getSystemService(UserManager.class).getUsers();
+        final int[] userIds = new int[users.size()];
+        for (int i = 0; i < userIds.length; i++) {
+            userIds[i] = users.get(i).id;
         }
+        initializeCachedValues(userIds);
+        onReceivedSizes();
     }
 
     private boolean isQuotaSupported() {
@@ -398,7 +398,7 @@ public class StorageDashboardFragment extends DashboardFragment
             }
 
             mStorageInfo = privateStorageInfo;
-            maybeCacheFreshValues();
+            mStorageCache.putPrivateStorageInfo(privateStorageInfo);
             onReceivedSizes();
         }
     }
@@ -21,38 +21,76 @@ import static android.content.pm.ApplicationInfo.CATEGORY_GAME;
 import static android.content.pm.ApplicationInfo.CATEGORY_IMAGE;
 import static android.content.pm.ApplicationInfo.CATEGORY_VIDEO;
 
+import android.content.BroadcastReceiver;
 import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
 import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageManager;
 import android.content.pm.PackageManager.NameNotFoundException;
 import android.content.pm.UserInfo;
+import android.net.Uri;
 import android.os.UserHandle;
 import android.os.UserManager;
+import android.util.ArrayMap;
 import android.util.ArraySet;
 import android.util.Log;
 import android.util.SparseArray;
 
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settings.utils.LazyThreadPool;
 import com.android.settingslib.applications.StorageStatsSource;
 import com.android.settingslib.utils.AsyncLoaderCompat;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * StorageAsyncLoader is a Loader which loads categorized app information and external stats for all
  * users
+ *
+ * <p>The stats of the packages are queried in parallel, in chunks of packages of each user. While
+ * the loader is started, a package change reloads the stats of the changed package only.
  */
 public class StorageAsyncLoader
         extends AsyncLoaderCompat<SparseArray<StorageAsyncLoader.AppsStorageResult>> {
     private UserManager mUserManager;
     private static final String TAG = "StorageAsyncLoader";
+    private static final int PACKAGES_PER_TASK = 16;
+    private static final int STATS_THREADS = 4;
+    private static final long STATS_KEEP_ALIVE_SECONDS = 10;
+
+    private static final LazyThreadPool sStatsPool = new LazyThreadPool("StorageStats",
+            STATS_THREADS, STATS_KEEP_ALIVE_SECONDS);
 
     private String mUuid;
     private StorageStatsSource mStatsManager;
     private PackageManager mPackageManager;
-    private ArraySet<String> mSeenPackages;
+    // Stats of the packages of each user found by the last load.
+    private SparseArray<Map<String, PackageStats>> mPackageStats = new SparseArray<>();
+    // Packages changed since the last load, guarded by itself.
+    private final Set<String> mChangedPackages = new ArraySet<>();
+    private boolean mPackageReceiverRegistered;
+
+    private final BroadcastReceiver mPackageReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            final Uri data = intent.getData();
+            final String packageName = data != null ? data.getSchemeSpecificPart() : null;
+            if (packageName != null) {
+                onPackageChanged(packageName);
+            }
+        }
+    };
 
     public StorageAsyncLoader(Context context, UserManager userManager,
             String uuid, StorageStatsSource source, PackageManager pm) {
@@ -63,14 +101,50 @@ public class StorageAsyncLoader
         mPackageManager = pm;
     }
 
+    @Override
+    protected void onStartLoading() {
+        if (!mPackageReceiverRegistered) {
+            final IntentFilter filter = new IntentFilter(Intent.ACTION_PACKAGE_ADDED);
+            filter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+            filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+            filter.addAction(Intent.ACTION_PACKAGE_DATA_CLEARED);
+            filter.addDataScheme("package");
+            getContext().registerReceiverAsUser(mPackageReceiver, UserHandle.ALL, filter,
+                    null /* broadcastPermission */, null /* scheduler */);
+            mPackageReceiverRegistered = true;
+        }
+        super.onStartLoading();
+    }
+
+    @Override
+    protected void onReset() {
+        if (mPackageReceiverRegistered) {
+            getContext().unregisterReceiver(mPackageReceiver);
+            mPackageReceiverRegistered = false;
+        }
+        super.onReset();
+    }
+
     @Override
     public SparseArray<AppsStorageResult> loadInBackground() {
         return loadApps();
     }
 
+    /** Reloads the stats of {@code packageName}, reusing the stats of the other packages. */
+    @VisibleForTesting
+    void onPackageChanged(String packageName) {
+        synchronized (mChangedPackages) {
+            mChangedPackages.add(packageName);
+        }
+        onContentChanged();
+    }
+
     private SparseArray<AppsStorageResult> loadApps() {
-        mSeenPackages = new ArraySet<>();
-        SparseArray<AppsStorageResult> result = new SparseArray<>();
+        final Set<String> changedPackages;
+        synchronized (mChangedPackages) {
+            changedPackages = new ArraySet<>(mChangedPackages);
+            mChangedPackages.clear();
+        }
         List<UserInfo> infos = mUserManager.getUsers();
         // Sort the users by user id ascending.
         Collections.sort(
@@ -81,21 +155,78 @@ public class StorageAsyncLoader
                         return Integer.compare(userInfo.id, otherUser.id);
                     }
                 });
-        for (int i = 0, userCount = infos.size(); i < userCount; i++) {
-            UserInfo info = infos.get(i);
-            result.put(info.id, getStorageResultForUser(info.id));
+
+        // Query all the users at once, each task only writes its own chunk of stats.
+        final ExecutorService executor = sStatsPool.get();
+        final int userCount = infos.size();
+        final List<List<ApplicationInfo>> userApps = new ArrayList<>(userCount);
+        final List<List<Future<PackageStats[]>>> userStatsTasks = new ArrayList<>(userCount);
+        final List<Future<StorageStatsSource.ExternalStorageStats>> externalStatsTasks =
+                new ArrayList<>(userCount);
+        for (int i = 0; i < userCount; i++) {
+            final int userId = infos.get(i).id;
+            Log.d(TAG, "Loading apps");
+            final List<ApplicationInfo> applicationInfos =
+                    mPackageManager.getInstalledApplicationsAsUser(0, userId);
+            final Map<String, PackageStats> lastStats = mPackageStats.get(userId);
+            final List<Future<PackageStats[]>> statsTasks = new ArrayList<>();
+            for (int start = 0, size = applicationInfos.size(); start < size;
+                    start += PACKAGES_PER_TASK) {
+                final List<ApplicationInfo> chunk = applicationInfos.subList(start,
+                        Math.min(start + PACKAGES_PER_TASK, size));
+                statsTasks.add(executor.submit(
+                        () -> getPackageStats(userId, chunk, lastStats, changedPackages)));
+            }
+            userApps.add(applicationInfos);
+            userStatsTasks.add(statsTasks);
+            externalStatsTasks.add(executor.submit(() -> getExternalStats(userId)));
         }
+
+        // Merge in user order, so that code sizes are blamed on the same user as before.
+        final ArraySet<String> seenPackages = new ArraySet<>();
+        final SparseArray<Map<String, PackageStats>> packageStats = new SparseArray<>();
+        SparseArray<AppsStorageResult> result = new SparseArray<>();
+        for (int i = 0; i < userCount; i++) {
+            final List<ApplicationInfo> applicationInfos = userApps.get(i);
+            final List<Future<PackageStats[]>> statsTasks = userStatsTasks.get(i);
+            final Map<String, PackageStats> userStats = new ArrayMap<>();
+            final AppsStorageResult userResult = new AppsStorageResult();
+            for (int task = 0, taskCount = statsTasks.size(); task < taskCount; task++) {
+                final PackageStats[] stats = getTaskResult(statsTasks.get(task));
+                if (stats == null) {
+                    continue;
+                }
+                for (int j = 0; j < stats.length; j++) {
+                    if (stats[j] == null) {
+                        continue;
+                    }
+                    final ApplicationInfo app =
+                            applicationInfos.get(task * PACKAGES_PER_TASK + j);
+                    userStats.put(app.packageName, stats[j]);
+                    addPackageSize(userResult, app, stats[j], seenPackages);
+                }
+            }
+            userResult.externalStats = getTaskResult(externalStatsTasks.get(i));
+            Log.d(TAG, "Obtaining result completed");
+            packageStats.put(infos.get(i).id, userStats);
+            result.put(infos.get(i).id, userResult);
+        }
+        mPackageStats = packageStats;
         return result;
     }
 
-    private AppsStorageResult getStorageResultForUser(int userId) {
-        Log.d(TAG, "Loading apps");
-        List<ApplicationInfo> applicationInfos =
-                mPackageManager.getInstalledApplicationsAsUser(0, userId);
-        AppsStorageResult result = new AppsStorageResult();
+    private PackageStats[] getPackageStats(int userId, List<ApplicationInfo> applicationInfos,
+            Map<String, PackageStats> lastStats, Set<String> changedPackages) {
+        final PackageStats[] packageStats = new PackageStats[applicationInfos.size()];
         UserHandle myUser = UserHandle.of(userId);
         for (int i = 0, size = applicationInfos.size(); i < size; i++) {
             ApplicationInfo app = applicationInfos.get(i);
+            if (lastStats != null && !changedPackages.contains(app.packageName)) {
+                packageStats[i] = lastStats.get(app.packageName);
+                if (packageStats[i] != null) {
+                    continue;
+                }
+            }
 
             StorageStatsSource.AppStorageStats stats;
             try {
@@ -117,47 +248,67 @@ public class StorageAsyncLoader
             if (cacheQuota < cacheBytes) {
                 blamedSize = blamedSize - cacheBytes + cacheQuota;
             }
+            packageStats[i] = new PackageStats(blamedSize, stats.getCodeBytes());
+        }
+        return packageStats;
+    }
 
-            // This isn't quite right because it slams the first user by user id with the whole code
-            // size, but this ensures that we count all apps seen once.
-            if (!mSeenPackages.contains(app.packageName)) {
-                blamedSize += stats.getCodeBytes();
-                mSeenPackages.add(app.packageName);
-            }
+    private static void addPackageSize(AppsStorageResult result, ApplicationInfo app,
+            PackageStats stats, ArraySet<String> seenPackages) {
+        long blamedSize = stats.blamedBytes;
+
+        // This isn't quite right because it slams the first user by user id with the whole code
+        // size, but this ensures that we count all apps seen once.
+        if (seenPackages.add(app.packageName)) {
+            blamedSize += stats.codeBytes;
+        }
 
-            switch (app.category) {
-                case CATEGORY_GAME:
+        switch (app.category) {
+            case CATEGORY_GAME:
+                result.gamesSize += blamedSize;
+                break;
+            case CATEGORY_AUDIO:
+                result.musicAppsSize += blamedSize;
+                break;
+            case CATEGORY_VIDEO:
+                result.videoAppsSize += blamedSize;
+                break;
+            case CATEGORY_IMAGE:
+                result.photosAppsSize += blamedSize;
+                break;
+            default:
+                // The deprecated game flag does not set the category.
+                if ((app.flags & ApplicationInfo.FLAG_IS_GAME) != 0) {
                     result.gamesSize += blamedSize;
                     break;
-                case CATEGORY_AUDIO:
-                    result.musicAppsSize += blamedSize;
-                    break;
-                case CATEGORY_VIDEO:
-                    result.videoAppsSize += blamedSize;
-                    break;
-                case CATEGORY_IMAGE:
-                    result.photosAppsSize += blamedSize;
-                    break;
-                default:
-                    // The deprecated game flag does not set the category.
-                    if ((app.flags & ApplicationInfo.FLAG_IS_GAME) != 0) {
-                        result.gamesSize += blamedSize;
-                        break;
-                    }
-                    result.otherAppsSize += blamedSize;
-                    break;
-            }
+                }
+                result.otherAppsSize += blamedSize;
+                break;
         }
+    }
 
+    private StorageStatsSource.ExternalStorageStats getExternalStats(int userId) {
         Log.d(TAG, "Loading external stats");
         try {
-            result.externalStats = mStatsManager.getExternalStorageStats(mUuid,
-                    UserHandle.of(userId));
+            return mStatsManager.getExternalStorageStats(mUuid, UserHandle.of(userId));
         } catch (IOException e) {
             Log.w(TAG, e);
+            return null;
+        }
+    }
+
+    private static <T> T getTaskResult(Future<T> task) {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
         }
-        Log.d(TAG, "Obtaining result completed");
-        return result;
     }
 
     @Override
@@ -174,6 +325,18 @@ public class StorageAsyncLoader
         public StorageStatsSource.ExternalStorageStats externalStats;
     }
 
+    /** Sizes of a package of a user, as blamed by the loader. */
+    private static class PackageStats {
+        // Data and cache, capped at the cache quota.
+        final long blamedBytes;
+        final long codeBytes;
+
+        PackageStats(long blamedBytes, long codeBytes) {
+            this.blamedBytes = blamedBytes;
+            this.codeBytes = codeBytes;
+        }
+    }
+
     /**
      * ResultHandler defines a destination of data which can handle a result from
      * {@link StorageAsyncLoader}.
@@ -0,0 +1,261 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.deviceinfo.storage;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.provider.Settings;
+import android.util.ArrayMap;
+import android.util.Log;
+import android.util.SparseArray;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settingslib.applications.StorageStatsSource;
+import com.android.settingslib.deviceinfo.PrivateStorageInfo;
+import com.android.settingslib.utils.ThreadUtils;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persistent cache of the sizes shown by the storage dashboard, so that it can be rendered
+ * immediately when it is opened again.
+ *
+ * <p>Sizes are cached per volume and, for app and external sizes, per user. Each category keeps
+ * its own timestamp and expires after {@link Settings.Global#STORAGE_SETTINGS_CLOBBER_THRESHOLD},
+ * after which it is no longer shown. Writes are batched and applied on a background thread.
+ */
+public class StorageCache {
+    private static final String TAG = "StorageCache";
+
+    @VisibleForTesting
+    static final String SHARED_PREFERENCES_NAME = "StorageCache";
+    // Entries written with another version are ignored. Bump it when the format changes.
+    @VisibleForTesting
+    static final int VERSION = 1;
+    // Written by the previous cache, which only held the sizes of a single volume and user.
+    @VisibleForTesting
+    static final String LEGACY_SHARED_PREFERENCES_NAME = "CachedStorageValues";
+
+    private static final String INTERNAL_VOLUME = "internal";
+    private static final String CATEGORY_VOLUME_SIZES = "volume_sizes";
+    private static final String CATEGORY_APPS = "apps";
+    private static final String CATEGORY_EXTERNAL = "external";
+    private static final String SEPARATOR = ",";
+
+    private static final Object sLock = new Object();
+    // Entries waiting to be written, shared by all the instances so that they are read back
+    // before the write is done. Guarded by sLock.
+    private static final Map<String, String> sPendingWrites = new ArrayMap<>();
+    private static boolean sFlushScheduled;
+    private static boolean sLegacyPreferencesDeleted;
+
+    private final SharedPreferences mSharedPreferences;
+    private final String mVolumeKey;
+    private final long mClobberThreshold;
+    // This clock is used to provide the time. By default, it uses the system clock, but can be
+    // replaced for test purposes.
+    @VisibleForTesting
+    Clock mClock;
+
+    public StorageCache(Context context, String volumeUuid) {
+        mSharedPreferences =
+                context.getSharedPreferences(SHARED_PREFERENCES_NAME, Context.MODE_PRIVATE);
+        mVolumeKey = VERSION + "/" + (volumeUuid == null ? INTERNAL_VOLUME : volumeUuid);
+        mClock = new Clock();
+        mClobberThreshold =
+                Settings.Global.getLong(
+                        context.getContentResolver(),
+                        Settings.Global.STORAGE_SETTINGS_CLOBBER_THRESHOLD,
+                        TimeUnit.MINUTES.toMillis(5));
+        deleteLegacyPreferences(context.getApplicationContext());
+    }
+
+    /** Returns the cached sizes of the volume, or {@code null} if they are missing or stale. */
+    public PrivateStorageInfo getPrivateStorageInfo() {
+        final long[] values = readEntry(getKey(CATEGORY_VOLUME_SIZES), 2);
+        if (values == null) {
+            return null;
+        }
+        return new PrivateStorageInfo(values[0], values[1]);
+    }
+
+    /**
+     * Returns the cached app sizes of {@code userIds}, or {@code null} if the sizes of any of
+     * them are missing or stale.
+     */
+    public SparseArray<StorageAsyncLoader.AppsStorageResult> getAppsStorageResult(int[] userIds) {
+        final SparseArray<StorageAsyncLoader.AppsStorageResult> results = new SparseArray<>();
+        for (int userId : userIds) {
+            final long[] apps = readEntry(getKey(userId, CATEGORY_APPS), 6);
+            final long[] external = readEntry(getKey(userId, CATEGORY_EXTERNAL), 5);
+            if (apps == null || external == null) {
+                return null;
+            }
+            final StorageAsyncLoader.AppsStorageResult result =
+                    new StorageAsyncLoader.AppsStorageResult();
+            result.gamesSize = apps[0];
+            result.musicAppsSize = apps[1];
+            result.videoAppsSize = apps[2];
+            result.photosAppsSize = apps[3];
+            result.otherAppsSize = apps[4];
+            result.cacheSize = apps[5];
+            result.externalStats = new StorageStatsSource.ExternalStorageStats(
+                    external[0], external[1], external[2], external[3], external[4]);
+            results.put(userId, result);
+        }
+        return results;
+    }
+
+    /** Caches the sizes of the volume. */
+    public void putPrivateStorageInfo(PrivateStorageInfo info) {
+        final Map<String, String> entries = new ArrayMap<>();
+        entries.put(getKey(CATEGORY_VOLUME_SIZES),
+                formatEntry(info.freeBytes, info.totalBytes));
+        write(entries);
+    }
+
+    /** Caches the app sizes of every user in {@code results}, in a single write. */
+    public void putAppsStorageResult(
+            SparseArray<StorageAsyncLoader.AppsStorageResult> results) {
+        final Map<String, String> entries = new ArrayMap<>();
+        for (int i = 0; i < results.size(); i++) {
+            final int userId = results.keyAt(i);
+            final StorageAsyncLoader.AppsStorageResult result = results.valueAt(i);
+            entries.put(getKey(userId, CATEGORY_APPS), formatEntry(
+                    result.gamesSize,
+                    result.musicAppsSize,
+                    result.videoAppsSize,
+                    result.photosAppsSize,
+                    result.otherAppsSize,
+                    result.cacheSize));
+            // The external stats may have failed to load, in which case the user stays stale.
+            final StorageStatsSource.ExternalStorageStats external = result.externalStats;
+            if (external != null) {
+                entries.put(getKey(userId, CATEGORY_EXTERNAL), formatEntry(
+                        external.totalBytes,
+                        external.audioBytes,
+                        external.videoBytes,
+                        external.imageBytes,
+                        external.appBytes));
+            }
+        }
+        write(entries);
+    }
+
+    /** Writes the pending entries of all the instances in a single edit. */
+    @VisibleForTesting
+    void flush() {
+        final SharedPreferences.Editor editor = mSharedPreferences.edit();
+        synchronized (sLock) {
+            sFlushScheduled = false;
+            if (sPendingWrites.isEmpty()) {
+                return;
+            }
+            for (Map.Entry<String, String> entry : sPendingWrites.entrySet()) {
+                editor.putString(entry.getKey(), entry.getValue());
+            }
+            sPendingWrites.clear();
+        }
+        editor.apply();
+    }
+
+    private static void deleteLegacyPreferences(Context context) {
+        synchronized (sLock) {
+            if (sLegacyPreferencesDeleted) {
+                return;
+            }
+            sLegacyPreferencesDeleted = true;
+        }
+        ThreadUtils.postOnBackgroundThread(
+                () -> context.deleteSharedPreferences(LEGACY_SHARED_PREFERENCES_NAME));
+    }
+
+    private void write(Map<String, String> entries) {
+        synchronized (sLock) {
+            sPendingWrites.putAll(entries);
+            if (sFlushScheduled) {
+                return;
+            }
+            sFlushScheduled = true;
+        }
+        ThreadUtils.postOnBackgroundThread(this::flush);
+    }
+
+    /**
+     * Returns the {@code size} values of the entry at {@code key}, or {@code null} if the entry
+     * is missing, stale or malformed.
+     */
+    private long[] readEntry(String key, int size) {
+        String entry;
+        synchronized (sLock) {
+            entry = sPendingWrites.get(key);
+        }
+        if (entry == null) {
+            entry = mSharedPreferences.getString(key, null);
+        }
+        if (entry == null) {
+            return null;
+        }
+
+        final String[] fields = entry.split(SEPARATOR);
+        if (fields.length != size + 1) {
+            return null;
+        }
+        try {
+            final long timestamp = Long.parseLong(fields[0]);
+            if (mClock.getCurrentTime() - timestamp >= mClobberThreshold) {
+                return null;
+            }
+            final long[] values = new long[size];
+            for (int i = 0; i < size; i++) {
+                values[i] = Long.parseLong(fields[i + 1]);
+                if (values[i] < 0) {
+                    return null;
+                }
+            }
+            return values;
+        } catch (NumberFormatException e) {
+            Log.w(TAG, "Ignoring malformed entry " + key, e);
+            return null;
+        }
+    }
+
+    private String formatEntry(long... values) {
+        final StringBuilder builder = new StringBuilder().append(mClock.getCurrentTime());
+        for (long value : values) {
+            builder.append(SEPARATOR).append(value);
+        }
+        return builder.toString();
+    }
+
+    private String getKey(String category) {
+        return mVolumeKey + "/" + category;
+    }
+
+    private String getKey(int userId, String category) {
+        return mVolumeKey + "/" + userId + "/" + category;
+    }
+
+    /** Clock provides the current time. */
+    static class Clock {
+        public long getCurrentTime() {
+            return System.currentTimeMillis();
+        }
+    }
+}
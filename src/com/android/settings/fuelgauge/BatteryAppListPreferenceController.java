@@ -186,24 +186,31 @@ public class BatteryAppListPreferenceController extends AbstractPreferenceContro
         mAppListGroup.setOrderingAsAdded(false);
 
         if (averagePower >= MIN_AVERAGE_POWER_THRESHOLD_MILLI_AMP || USE_FAKE_DATA) {
-            final List<BatterySipper> usageList = getCoalescedUsageList(
-                    USE_FAKE_DATA ? getFakeStats() : statsHelper.getUsageList());
-            double hiddenPowerMah = showAllApps ? 0 :
-                    mBatteryUtils.removeHiddenBatterySippers(usageList);
-            mBatteryUtils.sortUsageList(usageList);
+            final BatteryUsageTable usageTable = mBatteryUtils.buildUsageTable(
+                    getCoalescedUsageList(
+                            USE_FAKE_DATA ? getFakeStats() : statsHelper.getUsageList()));
+            double hiddenPowerMah = 0;
+            if (!showAllApps) {
+                hiddenPowerMah = usageTable.getHiddenPowerMah();
+                usageTable.smearScreenPower();
+            }
+            final double totalPower = USE_FAKE_DATA ? 4000 : statsHelper.getTotalPower();
 
-            final int numSippers = usageList.size();
-            for (int i = 0; i < numSippers; i++) {
-                final BatterySipper sipper = usageList.get(i);
-                double totalPower = USE_FAKE_DATA ? 4000 : statsHelper.getTotalPower();
+            // Only the rows that are shown get ordered.
+            final BatteryUsageTable.Ranking ranking = usageTable.rankByPower(showAllApps);
+            for (int i = 0; ranking.hasNext(); i++) {
+                final int row = ranking.next();
+                final BatterySipper sipper = usageTable.getSipper(row);
 
                 final double percentOfTotal = mBatteryUtils.calculateBatteryPercent(
-                        sipper.totalPowerMah, totalPower, hiddenPowerMah, dischargeAmount);
+                        usageTable.getPowerMah(row), totalPower, hiddenPowerMah,
+                        dischargeAmount);
 
                 if (((int) (percentOfTotal + .5)) < 1) {
-                    continue;
+                    // The rows left use even less power.
+                    break;
                 }
-                if (shouldHideSipper(sipper)) {
+                if (shouldHideSipper(usageTable, row)) {
                     continue;
                 }
                 final UserHandle userHandle = new UserHandle(UserHandle.getUserId(sipper.getUid()));
@@ -228,8 +235,7 @@ public class BatteryAppListPreferenceController extends AbstractPreferenceContro
                 pref.setPercent(percentOfTotal);
                 pref.shouldShowAnomalyIcon(false);
                 if (sipper.usageTimeMs == 0 && sipper.drainType == DrainType.APP) {
-                    sipper.usageTimeMs = mBatteryUtils.getProcessTimeMs(
-                            BatteryUtils.StatusType.FOREGROUND, sipper.uidObj, STATS_TYPE);
+                    sipper.usageTimeMs = usageTable.getForegroundTimeMs(row);
                 }
                 setUsageSummary(pref, sipper);
                 addedSome = true;
@@ -253,7 +259,7 @@ public class BatteryAppListPreferenceController extends AbstractPreferenceContro
      * exists for all users of the same app. We detect this case and merge the power use
      * for dex2oat to the device OWNER's use of the app.
      *
-     * @return A sorted list of apps using power.
+     * @return A list of apps using power, in no particular order.
      */
     private List<BatterySipper> getCoalescedUsageList(final List<BatterySipper> sippers) {
         final SparseArray<BatterySipper> uidList = new SparseArray<>();
@@ -329,8 +335,6 @@ public class BatteryAppListPreferenceController extends AbstractPreferenceContro
             results.add(uidList.valueAt(i));
         }
 
-        // The sort order must have changed, so re-sort based on total power use.
-        mBatteryUtils.sortUsageList(results);
         return results;
     }
 
@@ -352,9 +356,17 @@ public class BatteryAppListPreferenceController extends AbstractPreferenceContro
     @VisibleForTesting
     boolean shouldHideSipper(BatterySipper sipper) {
         // Don't show over-counted, unaccounted and hidden system module in any condition
+        return isAlwaysHidden(sipper) || mBatteryUtils.isHiddenSystemModule(sipper);
+    }
+
+    private boolean shouldHideSipper(BatteryUsageTable usageTable, int row) {
+        return isAlwaysHidden(usageTable.getSipper(row)) || usageTable.isHiddenSystemModule(row);
+    }
+
+    private static boolean isAlwaysHidden(BatterySipper sipper) {
         return sipper.drainType == BatterySipper.DrainType.OVERCOUNTED
                 || sipper.drainType == BatterySipper.DrainType.UNACCOUNTED
-                || mBatteryUtils.isHiddenSystemModule(sipper) || sipper.getUid() < 0;
+                || sipper.getUid() < 0;
     }
 
     @VisibleForTesting
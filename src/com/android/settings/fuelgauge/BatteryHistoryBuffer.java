@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.android.settings.fuelgauge;
+
+import android.os.BatteryStats;
+import android.os.BatteryStats.HistoryItem;
+
+import androidx.annotation.VisibleForTesting;
+
+import java.util.Arrays;
+
+/**
+ * Battery history decoded from {@link BatteryStats} in a single pass and kept in primitive
+ * columns, so it can be replayed to any number of {@link BatteryInfo.BatteryDataParser}s without
+ * iterating the history again.
+ *
+ * <p>Only the fields read by the parsers are kept: command, elapsed and wall clock time, battery
+ * level and the two state words.
+ */
+public class BatteryHistoryBuffer {
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private byte[] mCmds = new byte[INITIAL_CAPACITY];
+    private long[] mTimes = new long[INITIAL_CAPACITY];
+    private long[] mCurrentTimes = new long[INITIAL_CAPACITY];
+    private byte[] mLevels = new byte[INITIAL_CAPACITY];
+    private int[] mStates = new int[INITIAL_CAPACITY];
+    private int[] mStates2 = new int[INITIAL_CAPACITY];
+    private int mSize;
+
+    private long mStartWalltime;
+    private long mEndWalltime;
+    private long mHistoryStart;
+    private long mLastRealtime;
+    // Records after the last delta record are not replayed.
+    private int mLastInteresting;
+
+    private BatteryHistoryBuffer() {
+    }
+
+    /** Reads the whole battery history of {@code stats}. */
+    public static BatteryHistoryBuffer read(BatteryStats stats) {
+        final BatteryHistoryBuffer buffer = new BatteryHistoryBuffer();
+        long startWalltime = 0;
+        long historyStart = 0;
+        long historyEnd = 0;
+        long lastWallTime = 0;
+        long lastRealtime = 0;
+        int lastInteresting = 0;
+        int pos = 0;
+        boolean first = true;
+        if (stats.startIteratingHistoryLocked()) {
+            final HistoryItem rec = new HistoryItem();
+            while (stats.getNextHistoryLocked(rec)) {
+                buffer.append(rec);
+                pos++;
+                if (first) {
+                    first = false;
+                    historyStart = rec.time;
+                }
+                if (rec.cmd == HistoryItem.CMD_CURRENT_TIME
+                        || rec.cmd == HistoryItem.CMD_RESET) {
+                    // If there is a ridiculously large jump in time, then we won't be
+                    // able to create a good chart with that data, so just ignore the
+                    // times we got before and pretend like our data extends back from
+                    // the time we have now.
+                    // Also, if we are getting a time change and we are less than 5 minutes
+                    // since the start of the history real time, then also use this new
+                    // time to compute the base time, since whatever time we had before is
+                    // pretty much just noise.
+                    if (rec.currentTime > (lastWallTime + (180 * 24 * 60 * 60 * 1000L))
+                            || rec.time < (historyStart + (5 * 60 * 1000L))) {
+                        startWalltime = 0;
+                    }
+                    lastWallTime = rec.currentTime;
+                    lastRealtime = rec.time;
+                    if (startWalltime == 0) {
+                        startWalltime = lastWallTime - (lastRealtime - historyStart);
+                    }
+                }
+                if (rec.isDeltaData()) {
+                    lastInteresting = pos;
+                    historyEnd = rec.time;
+                }
+            }
+        }
+        stats.finishIteratingHistoryLocked();
+
+        buffer.mStartWalltime = startWalltime;
+        buffer.mEndWalltime = lastWallTime + historyEnd - lastRealtime;
+        buffer.mHistoryStart = historyStart;
+        buffer.mLastRealtime = lastRealtime;
+        buffer.mLastInteresting = lastInteresting;
+        return buffer;
+    }
+
+    /** Feeds the recorded history to {@code parsers}, in the order it was recorded. */
+    public void replay(BatteryInfo.BatteryDataParser... parsers) {
+        final long startWalltime = mStartWalltime;
+        final long endWalltime = mEndWalltime;
+        long curWalltime = 0;
+        long lastRealtime = mLastRealtime;
+
+        for (int j = 0; j < parsers.length; j++) {
+            parsers[j].onParsingStarted(startWalltime, endWalltime);
+        }
+        if (endWalltime > startWalltime) {
+            final HistoryItem rec = new HistoryItem();
+            final int n = Math.min(mLastInteresting, mSize);
+            for (int i = 0; i < n; i++) {
+                rec.cmd = mCmds[i];
+                rec.time = mTimes[i];
+                rec.currentTime = mCurrentTimes[i];
+                rec.batteryLevel = mLevels[i];
+                rec.states = mStates[i];
+                rec.states2 = mStates2[i];
+                if (rec.isDeltaData()) {
+                    curWalltime += rec.time - lastRealtime;
+                    lastRealtime = rec.time;
+                    long x = (curWalltime - startWalltime);
+                    if (x < 0) {
+                        x = 0;
+                    }
+                    for (int j = 0; j < parsers.length; j++) {
+                        parsers[j].onDataPoint(x, rec);
+                    }
+                } else {
+                    long lastWalltime = curWalltime;
+                    if (rec.cmd == HistoryItem.CMD_CURRENT_TIME
+                            || rec.cmd == HistoryItem.CMD_RESET) {
+                        if (rec.currentTime >= startWalltime) {
+                            curWalltime = rec.currentTime;
+                        } else {
+                            curWalltime = startWalltime + (rec.time - mHistoryStart);
+                        }
+                        lastRealtime = rec.time;
+                    }
+
+                    if (rec.cmd != HistoryItem.CMD_OVERFLOW
+                            && (rec.cmd != HistoryItem.CMD_CURRENT_TIME
+                            || Math.abs(lastWalltime - curWalltime) > (60 * 60 * 1000))) {
+                        for (int j = 0; j < parsers.length; j++) {
+                            parsers[j].onDataGap();
+                        }
+                    }
+                }
+            }
+        }
+
+        for (int j = 0; j < parsers.length; j++) {
+            parsers[j].onParsingDone();
+        }
+    }
+
+    @VisibleForTesting
+    int size() {
+        return mSize;
+    }
+
+    private void append(HistoryItem rec) {
+        if (mSize == mCmds.length) {
+            final int capacity = mSize * 2;
+            mCmds = Arrays.copyOf(mCmds, capacity);
+            mTimes = Arrays.copyOf(mTimes, capacity);
+            mCurrentTimes = Arrays.copyOf(mCurrentTimes, capacity);
+            mLevels = Arrays.copyOf(mLevels, capacity);
+            mStates = Arrays.copyOf(mStates, capacity);
+            mStates2 = Arrays.copyOf(mStates2, capacity);
+        }
+        mCmds[mSize] = rec.cmd;
+        mTimes[mSize] = rec.time;
+        mCurrentTimes[mSize] = rec.currentTime;
+        mLevels[mSize] = rec.batteryLevel;
+        mStates[mSize] = rec.states;
+        mStates2[mSize] = rec.states2;
+        mSize++;
+    }
+}
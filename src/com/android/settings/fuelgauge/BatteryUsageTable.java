@@ -0,0 +1,240 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.android.settings.fuelgauge;
+
+import android.os.BatteryStats;
+import android.os.SystemClock;
+import android.text.format.DateUtils;
+import android.util.Log;
+
+import com.android.internal.os.BatterySipper;
+import com.android.settingslib.utils.PowerUtil;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Power usage of a list of {@link BatterySipper}s, aggregated in a single pass into primitive
+ * columns indexed by row.
+ *
+ * <p>Rows keep the order of the source list. They can be looked up by
+ * {@link BatterySipper.DrainType} in constant time, and ranked by power without sorting the whole
+ * list.
+ */
+public class BatteryUsageTable {
+    private static final String TAG = "BatteryUsageTable";
+    private static final int STATS_TYPE = BatteryStats.STATS_SINCE_CHARGED;
+
+    private static final byte MODULE_UNKNOWN = 0;
+    private static final byte MODULE_HIDDEN = 1;
+    private static final byte MODULE_VISIBLE = 2;
+
+    private final BatteryUtils mBatteryUtils;
+    private final BatterySipper[] mSippers;
+    private final double[] mPowerMah;
+    private final long mRawRealtimeUs;
+    private final long[] mScreenUsageTimeMs;
+    private final boolean[] mHidden;
+    // Resolving the packages of a uid is a binder call, so it's done at most once per row. The
+    // constructor needs it for every row, except the ones hidden by their drain type whose power
+    // isn't smeared.
+    private final byte[] mHiddenSystemModule;
+    private final int[] mDrainTypeRows = new int[BatterySipper.DrainType.values().length];
+    private double mHiddenPowerMah;
+
+    BatteryUsageTable(BatteryUtils batteryUtils, List<BatterySipper> sippers) {
+        final int size = sippers.size();
+        mBatteryUtils = batteryUtils;
+        mSippers = sippers.toArray(new BatterySipper[size]);
+        mPowerMah = new double[size];
+        mScreenUsageTimeMs = new long[size];
+        mHidden = new boolean[size];
+        mHiddenSystemModule = new byte[size];
+        Arrays.fill(mDrainTypeRows, -1);
+
+        mRawRealtimeUs = PowerUtil.convertMsToUs(SystemClock.elapsedRealtime());
+        for (int row = 0; row < size; row++) {
+            final BatterySipper sipper = mSippers[row];
+            mPowerMah[row] = sipper.totalPowerMah;
+
+            final BatteryStats.Uid uid = sipper.uidObj;
+            if (uid != null) {
+                mScreenUsageTimeMs[row] = batteryUtils.getScreenUsageTimeMs(uid, STATS_TYPE,
+                        mRawRealtimeUs);
+            }
+            final int drainType = sipper.drainType.ordinal();
+            if (mDrainTypeRows[drainType] < 0) {
+                mDrainTypeRows[drainType] = row;
+            }
+
+            mHidden[row] = batteryUtils.isHiddenDrain(sipper) || isHiddenSystemModule(row);
+            if (mHidden[row] && BatteryUtils.isSmearedAsHiddenPower(sipper.drainType)
+                    && !isHiddenSystemModule(row)) {
+                mHiddenPowerMah += mPowerMah[row];
+            }
+        }
+    }
+
+    public int size() {
+        return mSippers.length;
+    }
+
+    public BatterySipper getSipper(int row) {
+        return mSippers[row];
+    }
+
+    /** Returns the power used by {@code row}, including the screen power smeared to it. */
+    public double getPowerMah(int row) {
+        return mPowerMah[row];
+    }
+
+    /**
+     * Returns the screen usage and foreground service time of {@code row}. Only the screen usage
+     * is read upfront, the foreground service time is read when asked for.
+     */
+    public long getForegroundTimeMs(int row) {
+        final BatteryStats.Uid uid = mSippers[row].uidObj;
+        if (uid == null) {
+            return 0;
+        }
+        return mScreenUsageTimeMs[row] + PowerUtil.convertUsToMs(
+                mBatteryUtils.getForegroundServiceTotalTimeUs(uid, mRawRealtimeUs));
+    }
+
+    /** Same as {@link BatteryUtils#isHiddenSystemModule(BatterySipper)}, resolved once per row. */
+    public boolean isHiddenSystemModule(int row) {
+        if (mHiddenSystemModule[row] == MODULE_UNKNOWN) {
+            mHiddenSystemModule[row] = mBatteryUtils.isHiddenSystemModule(mSippers[row])
+                    ? MODULE_HIDDEN : MODULE_VISIBLE;
+        }
+        return mHiddenSystemModule[row] == MODULE_HIDDEN;
+    }
+
+    /**
+     * Returns the total power of the hidden rows that should be smeared proportionally, same as
+     * {@link BatteryUtils#removeHiddenBatterySippers(List)}.
+     */
+    public double getHiddenPowerMah() {
+        return mHiddenPowerMah;
+    }
+
+    /** Returns the first sipper with {@code drainType}, or {@code null} if there is none. */
+    public BatterySipper findSipperByType(BatterySipper.DrainType drainType) {
+        final int row = mDrainTypeRows[drainType.ordinal()];
+        return row < 0 ? null : mSippers[row];
+    }
+
+    /**
+     * Smear the screen on power usage among the rows that are not hidden, based on ratio of
+     * foreground activity time. Both the table and the {@link BatterySipper}s are updated.
+     */
+    public void smearScreenPower() {
+        long totalActivityTimeMs = 0;
+        for (int row = 0, size = size(); row < size; row++) {
+            if (!mHidden[row]) {
+                totalActivityTimeMs += mScreenUsageTimeMs[row];
+            }
+        }
+
+        if (totalActivityTimeMs >= 10 * DateUtils.MINUTE_IN_MILLIS) {
+            final BatterySipper screenSipper = findSipperByType(BatterySipper.DrainType.SCREEN);
+            if (screenSipper == null) {
+                Log.e(TAG, "screen sipper is null even when app screen time is not zero");
+                return;
+            }
+
+            final double screenPowerMah = screenSipper.totalPowerMah;
+            for (int row = 0, size = size(); row < size; row++) {
+                if (!mHidden[row] && mScreenUsageTimeMs[row] > 0) {
+                    mPowerMah[row] += screenPowerMah * mScreenUsageTimeMs[row]
+                            / totalActivityTimeMs;
+                    mSippers[row].totalPowerMah = mPowerMah[row];
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the rows in decreasing order of power. Rows with the same power keep the order of
+     * the source list.
+     *
+     * @param includeHidden whether rows hidden by
+     *                      {@link BatteryUtils#shouldHideSipper(BatterySipper)} are ranked
+     */
+    public Ranking rankByPower(boolean includeHidden) {
+        final int[] rows = new int[size()];
+        int count = 0;
+        for (int row = 0, size = size(); row < size; row++) {
+            if (includeHidden || !mHidden[row]) {
+                rows[count++] = row;
+            }
+        }
+        return new Ranking(rows, count);
+    }
+
+    /**
+     * Rows of the table ordered by power, taken one at a time from a binary heap. Building it is
+     * linear and each row taken costs a logarithmic step, so reading only the top rows doesn't
+     * pay for sorting the rest.
+     */
+    public class Ranking {
+        private final int[] mHeap;
+        private int mCount;
+
+        private Ranking(int[] rows, int count) {
+            mHeap = rows;
+            mCount = count;
+            for (int i = count / 2 - 1; i >= 0; i--) {
+                siftDown(i);
+            }
+        }
+
+        public boolean hasNext() {
+            return mCount > 0;
+        }
+
+        /** Returns the row with the most power among the rows not taken yet. */
+        public int next() {
+            final int row = mHeap[0];
+            mHeap[0] = mHeap[--mCount];
+            siftDown(0);
+            return row;
+        }
+
+        private void siftDown(int i) {
+            final int row = mHeap[i];
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= mCount) {
+                    break;
+                }
+                if (child + 1 < mCount && ranksBefore(mHeap[child + 1], mHeap[child])) {
+                    child++;
+                }
+                if (!ranksBefore(mHeap[child], row)) {
+                    break;
+                }
+                mHeap[i] = mHeap[child];
+                i = child;
+            }
+            mHeap[i] = row;
+        }
+
+        private boolean ranksBefore(int a, int b) {
+            final int compare = Double.compare(mPowerMah[a], mPowerMah[b]);
+            return compare != 0 ? compare > 0 : a < b;
+        }
+    }
+}
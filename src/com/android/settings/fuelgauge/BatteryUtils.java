@@ -131,17 +131,24 @@ public class BatteryUtils {
         return 0;
     }
 
-    private long getScreenUsageTimeMs(BatteryStats.Uid uid, int which, long rawRealTimeUs) {
+    long getScreenUsageTimeMs(BatteryStats.Uid uid, int which, long rawRealTimeUs) {
         final int foregroundTypes[] = {BatteryStats.Uid.PROCESS_STATE_TOP};
-        Log.v(TAG, "package: " + mPackageManager.getNameForUid(uid.getUid()));
+        final boolean verbose = Log.isLoggable(TAG, Log.VERBOSE);
+        if (verbose) {
+            Log.v(TAG, "package: " + mPackageManager.getNameForUid(uid.getUid()));
+        }
 
         long timeUs = 0;
         for (int type : foregroundTypes) {
             final long localTime = uid.getProcessStateTime(type, rawRealTimeUs, which);
-            Log.v(TAG, "type: " + type + " time(us): " + localTime);
+            if (verbose) {
+                Log.v(TAG, "type: " + type + " time(us): " + localTime);
+            }
             timeUs += localTime;
         }
-        Log.v(TAG, "foreground time(us): " + timeUs);
+        if (verbose) {
+            Log.v(TAG, "foreground time(us): " + timeUs);
+        }
 
         // Return the min value of STATE_TOP time and foreground activity time, since both of these
         // time have some errors
@@ -159,8 +166,10 @@ public class BatteryUtils {
         final long timeUs = uid.getProcessStateTime(
                 BatteryStats.Uid.PROCESS_STATE_BACKGROUND, rawRealTimeUs, which);
 
-        Log.v(TAG, "package: " + mPackageManager.getNameForUid(uid.getUid()));
-        Log.v(TAG, "background time(us): " + timeUs);
+        if (Log.isLoggable(TAG, Log.VERBOSE)) {
+            Log.v(TAG, "package: " + mPackageManager.getNameForUid(uid.getUid()));
+            Log.v(TAG, "background time(us): " + timeUs);
+        }
         return PowerUtil.convertUsToMs(timeUs);
     }
 
@@ -185,13 +194,7 @@ public class BatteryUtils {
             final BatterySipper sipper = sippers.get(i);
             if (shouldHideSipper(sipper)) {
                 sippers.remove(i);
-                if (sipper.drainType != BatterySipper.DrainType.OVERCOUNTED
-                        && sipper.drainType != BatterySipper.DrainType.SCREEN
-                        && sipper.drainType != BatterySipper.DrainType.UNACCOUNTED
-                        && sipper.drainType != BatterySipper.DrainType.BLUETOOTH
-                        && sipper.drainType != BatterySipper.DrainType.WIFI
-                        && sipper.drainType != BatterySipper.DrainType.IDLE
-                        && !isHiddenSystemModule(sipper)) {
+                if (isSmearedAsHiddenPower(sipper.drainType) && !isHiddenSystemModule(sipper)) {
                     // Don't add it if it is overcounted, unaccounted, wifi, bluetooth, screen
                     // or hidden system modules
                     proportionalSmearPowerMah += sipper.totalPowerMah;
@@ -208,6 +211,27 @@ public class BatteryUtils {
         return proportionalSmearPowerMah;
     }
 
+    /**
+     * Aggregate {@code sippers} into a {@link BatteryUsageTable}, reading the usage of each of them
+     * once.
+     */
+    public BatteryUsageTable buildUsageTable(List<BatterySipper> sippers) {
+        return new BatteryUsageTable(this, sippers);
+    }
+
+    /**
+     * Whether a hidden sipper of {@code drainType} counts in the power that is smeared
+     * proportionally among the visible ones.
+     */
+    static boolean isSmearedAsHiddenPower(BatterySipper.DrainType drainType) {
+        return drainType != BatterySipper.DrainType.OVERCOUNTED
+                && drainType != BatterySipper.DrainType.SCREEN
+                && drainType != BatterySipper.DrainType.UNACCOUNTED
+                && drainType != BatterySipper.DrainType.BLUETOOTH
+                && drainType != BatterySipper.DrainType.WIFI
+                && drainType != BatterySipper.DrainType.IDLE;
+    }
+
     /**
      * Smear the screen on power usage among {@code sippers}, based on ratio of foreground activity
      * time.
@@ -245,6 +269,14 @@ public class BatteryUtils {
      * Check whether we should hide the battery sipper.
      */
     public boolean shouldHideSipper(BatterySipper sipper) {
+        return isHiddenDrain(sipper) || isHiddenSystemModule(sipper);
+    }
+
+    /**
+     * Same as {@link #shouldHideSipper(BatterySipper)}, without checking the packages of the
+     * sipper.
+     */
+    boolean isHiddenDrain(BatterySipper sipper) {
         final BatterySipper.DrainType drainType = sipper.drainType;
 
         return drainType == BatterySipper.DrainType.IDLE
@@ -256,8 +288,7 @@ public class BatteryUtils {
                 || drainType == BatterySipper.DrainType.WIFI
                 || (sipper.totalPowerMah * SECONDS_IN_HOUR) < MIN_POWER_THRESHOLD_MILLI_AMP
                 || mPowerUsageFeatureProvider.isTypeService(sipper)
-                || mPowerUsageFeatureProvider.isTypeSystem(sipper)
-                || isHiddenSystemModule(sipper);
+                || mPowerUsageFeatureProvider.isTypeSystem(sipper);
     }
 
     /**
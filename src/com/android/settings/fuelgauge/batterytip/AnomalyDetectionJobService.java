@@ -36,6 +36,7 @@ import android.os.StatsDimensionsValue;
 import android.os.UserManager;
 import android.provider.Settings;
 import android.util.Log;
+import android.util.SparseArray;
 
 import androidx.annotation.GuardedBy;
 import androidx.annotation.VisibleForTesting;
@@ -103,13 +104,22 @@ public class AnomalyDetectionJobService extends JobService {
             final MetricsFeatureProvider metricsFeatureProvider = FeatureFactory
                     .getFactory(this).getMetricsFeatureProvider();
 
-            for (JobWorkItem item = dequeueWork(params); item != null; item = dequeueWork(params)) {
-                saveAnomalyToDatabase(context, userManager,
+            // Anomalies tend to come in bursts, so save everything pending at once. The job
+            // finishes when nothing is left to dequeue after the last batch is completed.
+            for (List<JobWorkItem> items = dequeueAllWork(params); !items.isEmpty();
+                    items = dequeueAllWork(params)) {
+                final List<Bundle> bundles = new ArrayList<>(items.size());
+                for (JobWorkItem item : items) {
+                    bundles.add(item.getIntent().getExtras());
+                }
+                saveAnomaliesToDatabase(context, userManager,
                         batteryDatabaseManager, batteryUtils, policy, powerWhitelistBackend,
                         contentResolver, powerUsageFeatureProvider, metricsFeatureProvider,
-                        item.getIntent().getExtras());
+                        bundles);
 
-                completeWork(params, item);
+                for (JobWorkItem item : items) {
+                    completeWork(params, item);
+                }
             }
         });
 
@@ -124,12 +134,38 @@ public class AnomalyDetectionJobService extends JobService {
         return true; // Need to reschedule
     }
 
+    /**
+     * Save the anomalies in {@code bundles} to database in one transaction. Packages are only
+     * resolved once per uid.
+     */
     @VisibleForTesting
-    void saveAnomalyToDatabase(Context context, UserManager userManager,
+    void saveAnomaliesToDatabase(Context context, UserManager userManager,
             BatteryDatabaseManager databaseManager, BatteryUtils batteryUtils,
             BatteryTipPolicy policy, PowerWhitelistBackend powerWhitelistBackend,
             ContentResolver contentResolver, PowerUsageFeatureProvider powerUsageFeatureProvider,
-            MetricsFeatureProvider metricsFeatureProvider, Bundle bundle) {
+            MetricsFeatureProvider metricsFeatureProvider, List<Bundle> bundles) {
+        final boolean autoFeatureOn = powerUsageFeatureProvider.isSmartBatterySupported()
+                ? Settings.Global.getInt(contentResolver,
+                Settings.Global.ADAPTIVE_BATTERY_MANAGEMENT_ENABLED, ON) == ON
+                : Settings.Global.getInt(contentResolver,
+                        Settings.Global.APP_AUTO_RESTRICTION_ENABLED, ON) == ON;
+        final SparseArray<VersionedPackage> packages = new SparseArray<>();
+        final List<BatteryDatabaseManager.AnomalyRecord> anomalies = new ArrayList<>();
+        for (int i = 0, size = bundles.size(); i < size; i++) {
+            addAnomaly(batteryUtils, powerWhitelistBackend, metricsFeatureProvider,
+                    autoFeatureOn, packages, bundles.get(i), anomalies);
+        }
+
+        if (!anomalies.isEmpty()) {
+            databaseManager.insertAnomalies(anomalies);
+        }
+    }
+
+    private void addAnomaly(BatteryUtils batteryUtils,
+            PowerWhitelistBackend powerWhitelistBackend,
+            MetricsFeatureProvider metricsFeatureProvider, boolean autoFeatureOn,
+            SparseArray<VersionedPackage> packages, Bundle bundle,
+            List<BatteryDatabaseManager.AnomalyRecord> anomalies) {
         // The Example of intentDimsValue is: 35:{1:{1:{1:10013|}|}|}
         final StatsDimensionsValue intentDimsValue =
                 bundle.getParcelable(StatsManager.EXTRA_STATS_DIMENSIONS_VALUE);
@@ -143,37 +179,35 @@ public class AnomalyDetectionJobService extends JobService {
 
         try {
             final int uid = extractUidFromStatsDimensionsValue(intentDimsValue);
-            final boolean autoFeatureOn = powerUsageFeatureProvider.isSmartBatterySupported()
-                    ? Settings.Global.getInt(contentResolver,
-                    Settings.Global.ADAPTIVE_BATTERY_MANAGEMENT_ENABLED, ON) == ON
-                    : Settings.Global.getInt(contentResolver,
-                            Settings.Global.APP_AUTO_RESTRICTION_ENABLED, ON) == ON;
-            final String packageName = batteryUtils.getPackageName(uid);
-            final long versionCode = batteryUtils.getAppLongVersionCode(packageName);
-            final String versionedPackage = packageName + "/" + versionCode;
+            VersionedPackage versionedPackage = packages.get(uid);
+            if (versionedPackage == null) {
+                versionedPackage = new VersionedPackage(batteryUtils, uid);
+                packages.put(uid, versionedPackage);
+            }
+            final String packageName = versionedPackage.packageName;
             if (batteryUtils.shouldHideAnomaly(powerWhitelistBackend, uid, anomalyInfo)) {
                 metricsFeatureProvider.action(SettingsEnums.PAGE_UNKNOWN,
                         SettingsEnums.ACTION_ANOMALY_IGNORED,
                         SettingsEnums.PAGE_UNKNOWN,
-                        versionedPackage,
+                        versionedPackage.name,
                         anomalyInfo.anomalyType);
             } else {
                 if (autoFeatureOn && anomalyInfo.autoRestriction) {
                     // Auto restrict this app
                     batteryUtils.setForceAppStandby(uid, packageName,
                             AppOpsManager.MODE_IGNORED);
-                    databaseManager.insertAnomaly(uid, packageName, anomalyInfo.anomalyType,
-                            AnomalyDatabaseHelper.State.AUTO_HANDLED,
-                            timeMs);
+                    anomalies.add(new BatteryDatabaseManager.AnomalyRecord(uid, packageName,
+                            anomalyInfo.anomalyType, AnomalyDatabaseHelper.State.AUTO_HANDLED,
+                            timeMs));
                 } else {
-                    databaseManager.insertAnomaly(uid, packageName, anomalyInfo.anomalyType,
-                            AnomalyDatabaseHelper.State.NEW,
-                            timeMs);
+                    anomalies.add(new BatteryDatabaseManager.AnomalyRecord(uid, packageName,
+                            anomalyInfo.anomalyType, AnomalyDatabaseHelper.State.NEW,
+                            timeMs));
                 }
                 metricsFeatureProvider.action(SettingsEnums.PAGE_UNKNOWN,
                         SettingsEnums.ACTION_ANOMALY_TRIGGERED,
                         SettingsEnums.PAGE_UNKNOWN,
-                        versionedPackage,
+                        versionedPackage.name,
                         anomalyInfo.anomalyType);
             }
 
@@ -213,6 +247,20 @@ public class AnomalyDetectionJobService extends JobService {
         return UID_NULL;
     }
 
+    /**
+     * Dequeue all the pending work, or return an empty list if there is none or the job is
+     * canceled.
+     */
+    @VisibleForTesting
+    List<JobWorkItem> dequeueAllWork(JobParameters parameters) {
+        final List<JobWorkItem> items = new ArrayList<>();
+        for (JobWorkItem item = dequeueWork(parameters); item != null;
+                item = dequeueWork(parameters)) {
+            items.add(item);
+        }
+        return items;
+    }
+
     @VisibleForTesting
     JobWorkItem dequeueWork(JobParameters parameters) {
         synchronized (mLock) {
@@ -234,4 +282,15 @@ public class AnomalyDetectionJobService extends JobService {
             parameters.completeWork(item);
         }
     }
+
+    /** Package of an anomaly uid, with its version for logging. */
+    private static class VersionedPackage {
+        final String packageName;
+        final String name;
+
+        VersionedPackage(BatteryUtils batteryUtils, int uid) {
+            packageName = batteryUtils.getPackageName(uid);
+            name = packageName + "/" + batteryUtils.getAppLongVersionCode(packageName);
+        }
+    }
 }
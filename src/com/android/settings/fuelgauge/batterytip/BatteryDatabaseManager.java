@@ -31,6 +31,7 @@ import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
 import android.text.TextUtils;
 import android.util.ArrayMap;
 import android.util.SparseLongArray;
@@ -51,6 +52,10 @@ import java.util.Map;
  * so each operation won't be interfered by other threads.
  */
 public class BatteryDatabaseManager {
+    private static final String INSERT_ANOMALY_SQL = "INSERT OR IGNORE INTO " + TABLE_ANOMALY
+            + " (" + UID + ", " + PACKAGE_NAME + ", " + ANOMALY_TYPE + ", " + ANOMALY_STATE
+            + ", " + TIME_STAMP_MS + ") VALUES (?, ?, ?, ?, ?)";
+
     private static BatteryDatabaseManager sSingleton;
 
     private AnomalyDatabaseHelper mDatabaseHelper;
@@ -95,6 +100,43 @@ public class BatteryDatabaseManager {
         return db.insertWithOnConflict(TABLE_ANOMALY, null, values, CONFLICT_IGNORE) != -1;
     }
 
+    /**
+     * Insert anomaly logs to database in a single transaction.
+     *
+     * @param anomalies the anomalies to insert
+     * @return the number of anomalies inserted, which doesn't count the ones already logged
+     */
+    public synchronized int insertAnomalies(List<AnomalyRecord> anomalies) {
+        if (anomalies.isEmpty()) {
+            return 0;
+        }
+        int inserted = 0;
+        final SQLiteDatabase db = mDatabaseHelper.getWritableDatabase();
+        db.beginTransaction();
+        try (SQLiteStatement statement = db.compileStatement(INSERT_ANOMALY_SQL)) {
+            for (int i = 0, size = anomalies.size(); i < size; i++) {
+                final AnomalyRecord anomaly = anomalies.get(i);
+                statement.bindLong(1, anomaly.uid);
+                if (anomaly.packageName != null) {
+                    statement.bindString(2, anomaly.packageName);
+                } else {
+                    statement.bindNull(2);
+                }
+                statement.bindLong(3, anomaly.anomalyType);
+                statement.bindLong(4, anomaly.anomalyState);
+                statement.bindLong(5, anomaly.timestampMs);
+                if (statement.executeInsert() != -1) {
+                    inserted++;
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        return inserted;
+    }
+
     /**
      * Query all the anomalies that happened after {@code timestampMsAfter} and with {@code state}.
      */
@@ -217,4 +259,24 @@ public class BatteryDatabaseManager {
 
         return db.delete(TABLE_ACTION, where, whereArgs) != 0;
     }
+
+    /**
+     * An anomaly log to insert with {@link #insertAnomalies(List)}.
+     */
+    public static class AnomalyRecord {
+        public final int uid;
+        public final String packageName;
+        public final int anomalyType;
+        public final int anomalyState;
+        public final long timestampMs;
+
+        public AnomalyRecord(int uid, String packageName, int anomalyType, int anomalyState,
+                long timestampMs) {
+            this.uid = uid;
+            this.packageName = packageName;
+            this.anomalyType = anomalyType;
+            this.anomalyState = anomalyState;
+            this.timestampMs = timestampMs;
+        }
+    }
 }
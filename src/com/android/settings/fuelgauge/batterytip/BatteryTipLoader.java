@@ -17,12 +17,15 @@
 package com.android.settings.fuelgauge.batterytip;
 
 import android.content.Context;
+import android.os.BatteryStats;
+import android.util.Log;
 
 import androidx.annotation.VisibleForTesting;
 
 import com.android.internal.os.BatteryStatsHelper;
 import com.android.settings.fuelgauge.BatteryInfo;
 import com.android.settings.fuelgauge.BatteryUtils;
+import com.android.settings.fuelgauge.batterytip.detectors.BatteryTipDetector;
 import com.android.settings.fuelgauge.batterytip.detectors.EarlyWarningDetector;
 import com.android.settings.fuelgauge.batterytip.detectors.HighUsageDetector;
 import com.android.settings.fuelgauge.batterytip.detectors.LowBatteryDetector;
@@ -31,12 +34,16 @@ import com.android.settings.fuelgauge.batterytip.detectors.SummaryDetector;
 import com.android.settings.fuelgauge.batterytip.tips.BatteryTip;
 import com.android.settings.fuelgauge.batterytip.tips.LowBatteryTip;
 import com.android.settings.fuelgauge.batterytip.tips.SummaryTip;
+import com.android.settings.utils.LazyThreadPool;
 import com.android.settingslib.fuelgauge.EstimateKt;
 import com.android.settingslib.utils.AsyncLoaderCompat;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * Loader to compute and return a battery tip list. It will always return a full length list even
@@ -46,6 +53,10 @@ public class BatteryTipLoader extends AsyncLoaderCompat<List<BatteryTip>> {
     private static final String TAG = "BatteryTipLoader";
 
     private static final boolean USE_FAKE_DATA = false;
+    private static final long DETECTOR_KEEP_ALIVE_SECONDS = 10;
+
+    private static final LazyThreadPool sDetectorPool = new LazyThreadPool("BatteryTipDetector",
+            1 /* threads */, DETECTOR_KEEP_ALIVE_SECONDS);
 
     private BatteryStatsHelper mBatteryStatsHelper;
     @VisibleForTesting
@@ -62,25 +73,68 @@ public class BatteryTipLoader extends AsyncLoaderCompat<List<BatteryTip>> {
         if (USE_FAKE_DATA) {
             return getFakeData();
         }
-        final List<BatteryTip> tips = new ArrayList<>();
         final BatteryTipPolicy policy = new BatteryTipPolicy(getContext());
+        // Computed once and shared, read only, by all the detectors.
         final BatteryInfo batteryInfo = mBatteryUtils.getBatteryInfo(mBatteryStatsHelper, TAG);
+        final List<Long> statsGeneration = getStatsGeneration(mBatteryStatsHelper.getStats());
         final Context context = getContext();
 
-        tips.add(new LowBatteryDetector(context, policy, batteryInfo).detect());
-        tips.add(new HighUsageDetector(context, policy, mBatteryStatsHelper,
-                batteryInfo.discharging).detect());
-        tips.add(new SmartBatteryDetector(policy, context.getContentResolver()).detect());
-        tips.add(new EarlyWarningDetector(policy, context).detect());
-        tips.add(new SummaryDetector(policy, batteryInfo.averageTimeToDischarge).detect());
+        // HighUsageDetector goes through the usage of every app: run it in the background while
+        // the other detectors, which only read a few values, run here.
+        final BatteryTipDetector highUsageDetector = new HighUsageDetector(context, policy,
+                mBatteryStatsHelper, batteryInfo.discharging, statsGeneration);
+        final Future<BatteryTip> highUsageTip =
+                sDetectorPool.get().submit(() -> detect(highUsageDetector));
+
+        final List<BatteryTip> tips = new ArrayList<>();
+        tips.add(detect(new LowBatteryDetector(context, policy, batteryInfo)));
+        tips.add(detect(new SmartBatteryDetector(policy, context.getContentResolver())));
+        tips.add(detect(new EarlyWarningDetector(policy, context)));
+        tips.add(detect(new SummaryDetector(policy, batteryInfo.averageTimeToDischarge)));
         // Disable this feature now since it introduces false positive cases. We will try to improve
         // it in the future.
-        // tips.add(new RestrictAppDetector(context, policy).detect());
+        // tips.add(detect(new RestrictAppDetector(context, policy)));
+        tips.add(getDetectedTip(highUsageTip));
 
         Collections.sort(tips);
         return tips;
     }
 
+    /**
+     * Returns the values identifying the stats window of {@code stats}: they change whenever new
+     * history is recorded or the stats are reset. Returns {@code null} without stats.
+     */
+    @VisibleForTesting
+    static List<Long> getStatsGeneration(BatteryStats stats) {
+        if (stats == null) {
+            return null;
+        }
+        return Arrays.asList(stats.getStartClockTime(), (long) stats.getHistoryUsedSize(),
+                (long) stats.getDischargeAmount(BatteryStats.STATS_SINCE_CHARGED));
+    }
+
+    private static BatteryTip detect(BatteryTipDetector detector) {
+        final long startTime = System.currentTimeMillis();
+        final BatteryTip tip = detector.detect();
+        BatteryUtils.logRuntime(TAG, detector.getClass().getSimpleName(), startTime);
+        return tip;
+    }
+
+    private static BatteryTip getDetectedTip(Future<BatteryTip> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while detecting battery tips", e);
+        } catch (ExecutionException e) {
+            Log.e(TAG, "Failed to detect battery tip", e.getCause());
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
     @Override
     protected void onDiscardResult(List<BatteryTip> result) {
     }
@@ -34,6 +34,7 @@ import com.android.settings.fuelgauge.batterytip.tips.BatteryTip;
 import com.android.settings.fuelgauge.batterytip.tips.HighUsageTip;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
@@ -43,6 +44,12 @@ import java.util.concurrent.TimeUnit;
  * {@link BatteryTipDetector} since it need the most up-to-date {@code visibleTips}
  */
 public class HighUsageDetector implements BatteryTipDetector {
+    private static final Object sLock = new Object();
+    // The high usage apps found for the last stats generation and policy, guarded by sLock.
+    private static List<Object> sCachedKey;
+    private static List<AppInfo> sCachedHighUsageAppList;
+
+    private final List<Long> mStatsGeneration;
     private BatteryTipPolicy mPolicy;
     private BatteryStatsHelper mBatteryStatsHelper;
     private List<AppInfo> mHighUsageAppList;
@@ -55,6 +62,18 @@ public class HighUsageDetector implements BatteryTipDetector {
 
     public HighUsageDetector(Context context, BatteryTipPolicy policy,
             BatteryStatsHelper batteryStatsHelper, boolean discharging) {
+        this(context, policy, batteryStatsHelper, discharging, null /* statsGeneration */);
+    }
+
+    /**
+     * @param statsGeneration identifies the battery stats in {@code batteryStatsHelper}; the high
+     *                        usage apps found are reused by later detectors created with an equal
+     *                        generation and policy. Nothing is reused when it is {@code null}.
+     */
+    public HighUsageDetector(Context context, BatteryTipPolicy policy,
+            BatteryStatsHelper batteryStatsHelper, boolean discharging,
+            List<Long> statsGeneration) {
+        mStatsGeneration = statsGeneration;
         mPolicy = policy;
         mBatteryStatsHelper = batteryStatsHelper;
         mHighUsageAppList = new ArrayList<>();
@@ -69,48 +88,84 @@ public class HighUsageDetector implements BatteryTipDetector {
         final long lastFullChargeTimeMs = mBatteryUtils.calculateLastFullChargeTime(
                 mBatteryStatsHelper, System.currentTimeMillis());
         if (mPolicy.highUsageEnabled && mDischarging) {
-            parseBatteryData();
-            if (mDataParser.isDeviceHeavilyUsed() || mPolicy.testHighUsageTip) {
-                final BatteryStats batteryStats = mBatteryStatsHelper.getStats();
-                final List<BatterySipper> batterySippers
-                        = new ArrayList<>(mBatteryStatsHelper.getUsageList());
-                final double totalPower = mBatteryStatsHelper.getTotalPower();
-                final int dischargeAmount = batteryStats != null
-                        ? batteryStats.getDischargeAmount(BatteryStats.STATS_SINCE_CHARGED)
-                        : 0;
-
-                Collections.sort(batterySippers,
-                        (sipper1, sipper2) -> Double.compare(sipper2.totalSmearedPowerMah,
-                                sipper1.totalSmearedPowerMah));
-                for (BatterySipper batterySipper : batterySippers) {
-                    final double percent = mBatteryUtils.calculateBatteryPercent(
-                            batterySipper.totalSmearedPowerMah, totalPower, 0, dischargeAmount);
-                    if ((percent + 0.5f < 1f) || mBatteryUtils.shouldHideSipper(batterySipper)) {
-                        // Don't show it if we should hide or usage percentage is lower than 1%
-                        continue;
-                    }
-                    mHighUsageAppList.add(new AppInfo.Builder()
-                            .setUid(batterySipper.getUid())
-                            .setPackageName(
-                                    mBatteryUtils.getPackageName(batterySipper.getUid()))
-                            .build());
-                    if (mHighUsageAppList.size() >= mPolicy.highUsageAppCount) {
-                        break;
-                    }
+            final List<Object> key = getCacheKey();
+            final List<AppInfo> cachedAppList = getCachedHighUsageAppList(key);
+            if (cachedAppList != null) {
+                mHighUsageAppList.addAll(cachedAppList);
+            } else {
+                findHighUsageApps();
+                cacheHighUsageAppList(key, mHighUsageAppList);
+            }
+        }
 
-                }
+        return new HighUsageTip(lastFullChargeTimeMs, mHighUsageAppList);
+    }
 
-                // When in test mode, add an app if necessary
-                if (mPolicy.testHighUsageTip && mHighUsageAppList.isEmpty()) {
-                    mHighUsageAppList.add(new AppInfo.Builder()
-                            .setPackageName(SETTINGS_PACKAGE_NAME)
-                            .setScreenOnTimeMs(TimeUnit.HOURS.toMillis(3))
-                            .build());
+    private void findHighUsageApps() {
+        parseBatteryData();
+        if (mDataParser.isDeviceHeavilyUsed() || mPolicy.testHighUsageTip) {
+            final BatteryStats batteryStats = mBatteryStatsHelper.getStats();
+            final List<BatterySipper> batterySippers
+                    = new ArrayList<>(mBatteryStatsHelper.getUsageList());
+            final double totalPower = mBatteryStatsHelper.getTotalPower();
+            final int dischargeAmount = batteryStats != null
+                    ? batteryStats.getDischargeAmount(BatteryStats.STATS_SINCE_CHARGED)
+                    : 0;
+
+            Collections.sort(batterySippers,
+                    (sipper1, sipper2) -> Double.compare(sipper2.totalSmearedPowerMah,
+                            sipper1.totalSmearedPowerMah));
+            for (BatterySipper batterySipper : batterySippers) {
+                final double percent = mBatteryUtils.calculateBatteryPercent(
+                        batterySipper.totalSmearedPowerMah, totalPower, 0, dischargeAmount);
+                if ((percent + 0.5f < 1f) || mBatteryUtils.shouldHideSipper(batterySipper)) {
+                    // Don't show it if we should hide or usage percentage is lower than 1%
+                    continue;
+                }
+                mHighUsageAppList.add(new AppInfo.Builder()
+                        .setUid(batterySipper.getUid())
+                        .setPackageName(
+                                mBatteryUtils.getPackageName(batterySipper.getUid()))
+                        .build());
+                if (mHighUsageAppList.size() >= mPolicy.highUsageAppCount) {
+                    break;
                 }
+
+            }
+
+            // When in test mode, add an app if necessary
+            if (mPolicy.testHighUsageTip && mHighUsageAppList.isEmpty()) {
+                mHighUsageAppList.add(new AppInfo.Builder()
+                        .setPackageName(SETTINGS_PACKAGE_NAME)
+                        .setScreenOnTimeMs(TimeUnit.HOURS.toMillis(3))
+                        .build());
             }
         }
+    }
 
-        return new HighUsageTip(lastFullChargeTimeMs, mHighUsageAppList);
+    private List<Object> getCacheKey() {
+        if (mStatsGeneration == null) {
+            return null;
+        }
+        return Arrays.asList(mStatsGeneration, mPolicy.highUsageAppCount,
+                mPolicy.highUsagePeriodMs, mPolicy.highUsageBatteryDraining,
+                mPolicy.testHighUsageTip);
+    }
+
+    private static List<AppInfo> getCachedHighUsageAppList(List<Object> key) {
+        synchronized (sLock) {
+            return key != null && key.equals(sCachedKey) ? sCachedHighUsageAppList : null;
+        }
+    }
+
+    private static void cacheHighUsageAppList(List<Object> key, List<AppInfo> appList) {
+        if (key == null) {
+            return;
+        }
+        synchronized (sLock) {
+            sCachedKey = key;
+            sCachedHighUsageAppList = Collections.unmodifiableList(new ArrayList<>(appList));
+        }
     }
 
     @VisibleForTesting
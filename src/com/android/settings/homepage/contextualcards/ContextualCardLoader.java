@@ -27,7 +27,10 @@ import android.database.Cursor;
 import android.net.Uri;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.provider.Settings;
+import android.text.format.DateUtils;
+import android.util.ArrayMap;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
@@ -36,16 +39,17 @@ import androidx.annotation.VisibleForTesting;
 import com.android.settings.R;
 import com.android.settings.homepage.contextualcards.logging.ContextualCardLogUtils;
 import com.android.settings.overlay.FeatureFactory;
+import com.android.settings.utils.LazyThreadPool;
 import com.android.settingslib.core.instrumentation.MetricsFeatureProvider;
 import com.android.settingslib.utils.AsyncLoaderCompat;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
+import java.util.concurrent.TimeoutException;
 
 public class ContextualCardLoader extends AsyncLoaderCompat<List<ContextualCard>> {
 
@@ -56,7 +60,24 @@ public class ContextualCardLoader extends AsyncLoaderCompat<List<ContextualCard>
     static final int CARD_CONTENT_LOADER_ID = 1;
 
     private static final String TAG = "ContextualCardLoader";
-    private static final long ELIGIBILITY_CHECKER_TIMEOUT_MS = 400;
+    @VisibleForTesting
+    static final String KEY_ELIGIBILITY_CHECKER_TIMEOUT = "eligibility_checker_timeout_key";
+    @VisibleForTesting
+    static final long ELIGIBILITY_CHECKER_TIMEOUT_MS = 400;
+    // Leave the rest of the card loader timeout to the provider query and the card binding.
+    @VisibleForTesting
+    static final long MAX_ELIGIBILITY_CHECKER_TIMEOUT_MS =
+            ContextualCardManager.CARD_CONTENT_LOADER_TIMEOUT_MS / 2;
+    // Enough to check all the cards of SettingsContextualCardProvider at once.
+    private static final int ELIGIBILITY_CHECKER_THREADS = 8;
+    private static final long ELIGIBILITY_CHECKER_KEEP_ALIVE_SECONDS = 30;
+    @VisibleForTesting
+    static final long ELIGIBILITY_VERDICT_TTL_MS = 10 * DateUtils.SECOND_IN_MILLIS;
+
+    private static final Map<Uri, EligibilityVerdict> sEligibilityVerdicts = new ArrayMap<>();
+    private static final LazyThreadPool sEligibilityPool = new LazyThreadPool(
+            "CardEligibilityChecker", ELIGIBILITY_CHECKER_THREADS,
+            ELIGIBILITY_CHECKER_KEEP_ALIVE_SECONDS);
 
     private final ContentObserver mObserver = new ContentObserver(
             new Handler(Looper.getMainLooper())) {
@@ -197,42 +218,100 @@ public class ContextualCardLoader extends AsyncLoaderCompat<List<ContextualCard>
             return candidates;
         }
 
-        final ExecutorService executor = Executors.newFixedThreadPool(candidates.size());
-        final List<ContextualCard> cards = new ArrayList<>();
-        List<Future<ContextualCard>> eligibleCards = new ArrayList<>();
-
-        final List<EligibleCardChecker> checkers = candidates.stream()
-                .map(card -> new EligibleCardChecker(mContext, card))
-                .collect(Collectors.toList());
-        try {
-            eligibleCards = executor.invokeAll(checkers, ELIGIBILITY_CHECKER_TIMEOUT_MS,
-                    TimeUnit.MILLISECONDS);
-        } catch (InterruptedException e) {
-            Log.w(TAG, "Failed to get eligible states for all cards", e);
+        // A refresh is requested when a card failed to bind, so previous verdicts are stale.
+        if (CardContentProvider.REFRESH_CARD_URI.equals(mNotifyUri)) {
+            clearEligibilityVerdicts();
         }
-        executor.shutdown();
 
-        // Collect future and eligible cards
-        for (int i = 0; i < eligibleCards.size(); i++) {
-            final Future<ContextualCard> cardFuture = eligibleCards.get(i);
-            if (cardFuture.isCancelled()) {
-                Log.w(TAG, "Timeout getting eligible state for card: "
-                        + candidates.get(i).getSliceUri());
+        final ContextualCard[] results = new ContextualCard[candidates.size()];
+        final List<Future<ContextualCard>> eligibleCards = new ArrayList<>();
+        final List<Integer> pendingIndexes = new ArrayList<>();
+        final ExecutorService executor = sEligibilityPool.get();
+        final long now = SystemClock.elapsedRealtime();
+        for (int i = 0; i < candidates.size(); i++) {
+            final ContextualCard candidate = candidates.get(i);
+            final EligibilityVerdict verdict = getEligibilityVerdict(candidate.getSliceUri(), now);
+            if (verdict != null) {
+                results[i] = verdict.apply(candidate);
                 continue;
             }
+            pendingIndexes.add(i);
+            eligibleCards.add(executor.submit(getEligibleCardChecker(candidate)));
+        }
 
+        // All the cards share a single budget.
+        final long deadline = now + getEligibilityCheckerTimeout(mContext);
+
+        // Collect future and eligible cards
+        for (int i = 0; i < eligibleCards.size(); i++) {
+            final Future<ContextualCard> cardFuture = eligibleCards.get(i);
+            final ContextualCard candidate = candidates.get(pendingIndexes.get(i));
             try {
-                final ContextualCard card = cardFuture.get();
-                if (card != null) {
-                    cards.add(card);
-                }
+                final ContextualCard card = cardFuture.get(
+                        Math.max(0, deadline - SystemClock.elapsedRealtime()),
+                        TimeUnit.MILLISECONDS);
+                putEligibilityVerdict(candidate.getSliceUri(), card);
+                results[pendingIndexes.get(i)] = card;
+            } catch (TimeoutException e) {
+                Log.w(TAG, "Timeout getting eligible state for card: "
+                        + candidate.getSliceUri());
+                cardFuture.cancel(true /* mayInterruptIfRunning */);
+            } catch (InterruptedException e) {
+                Log.w(TAG, "Failed to get eligible states for all cards", e);
+                cardFuture.cancel(true /* mayInterruptIfRunning */);
             } catch (Exception e) {
                 Log.w(TAG, "Failed to get eligible state for card", e);
             }
         }
+
+        final List<ContextualCard> cards = new ArrayList<>();
+        for (ContextualCard card : results) {
+            if (card != null) {
+                cards.add(card);
+            }
+        }
         return cards;
     }
 
+    @VisibleForTesting
+    EligibleCardChecker getEligibleCardChecker(ContextualCard card) {
+        return new EligibleCardChecker(mContext, card);
+    }
+
+    @VisibleForTesting
+    static long getEligibilityCheckerTimeout(Context context) {
+        // Return the timeout budget of all the cards if Settings.Global has the
+        // KEY_ELIGIBILITY_CHECKER_TIMEOUT key, else return the default one. The budget stays
+        // below the timeout of the whole card loading.
+        return Math.min(MAX_ELIGIBILITY_CHECKER_TIMEOUT_MS,
+                Settings.Global.getLong(context.getContentResolver(),
+                        KEY_ELIGIBILITY_CHECKER_TIMEOUT, ELIGIBILITY_CHECKER_TIMEOUT_MS));
+    }
+
+    private static EligibilityVerdict getEligibilityVerdict(Uri uri, long now) {
+        synchronized (sEligibilityVerdicts) {
+            final EligibilityVerdict verdict = sEligibilityVerdicts.get(uri);
+            if (verdict != null && now - verdict.mTimestamp > ELIGIBILITY_VERDICT_TTL_MS) {
+                sEligibilityVerdicts.remove(uri);
+                return null;
+            }
+            return verdict;
+        }
+    }
+
+    private static void putEligibilityVerdict(Uri uri, ContextualCard eligibleCard) {
+        synchronized (sEligibilityVerdicts) {
+            sEligibilityVerdicts.put(uri, new EligibilityVerdict(eligibleCard));
+        }
+    }
+
+    @VisibleForTesting
+    static void clearEligibilityVerdicts() {
+        synchronized (sEligibilityVerdicts) {
+            sEligibilityVerdicts.clear();
+        }
+    }
+
     private boolean isLargeCard(ContextualCard card) {
         return card.getSliceUri().equals(CONTEXTUAL_WIFI_SLICE_URI)
                 || card.getSliceUri().equals(BLUETOOTH_DEVICES_SLICE_URI);
@@ -241,4 +320,28 @@ public class ContextualCardLoader extends AsyncLoaderCompat<List<ContextualCard>
     public interface CardContentLoaderListener {
         void onFinishCardLoading(List<ContextualCard> contextualCards);
     }
+
+    /**
+     * The last result of {@link EligibleCardChecker} for a slice uri.
+     */
+    private static class EligibilityVerdict {
+        private final long mTimestamp;
+        // The eligible card with its bound slice, or null if the card was not eligible.
+        private final ContextualCard mEligibleCard;
+
+        EligibilityVerdict(ContextualCard eligibleCard) {
+            mTimestamp = SystemClock.elapsedRealtime();
+            mEligibleCard = eligibleCard;
+        }
+
+        ContextualCard apply(ContextualCard candidate) {
+            if (mEligibleCard == null) {
+                return null;
+            }
+            return candidate.mutate()
+                    .setSlice(mEligibleCard.getSlice())
+                    .setHasInlineAction(mEligibleCard.hasInlineAction())
+                    .build();
+        }
+    }
 }
@@ -29,6 +29,7 @@ import android.bluetooth.BluetoothPan;
 import android.bluetooth.BluetoothProfile;
 import android.content.Context;
 import android.os.UserHandle;
+import android.provider.Settings;
 import android.util.FeatureFlagUtils;
 import android.util.Log;
 
@@ -40,6 +41,7 @@ import androidx.lifecycle.OnLifecycleEvent;
 import androidx.preference.PreferenceScreen;
 
 import com.android.settings.R;
+import com.android.settings.core.AvailabilityCache;
 import com.android.settings.core.BasePreferenceController;
 import com.android.settings.core.FeatureFlags;
 import com.android.settings.widget.MasterSwitchController;
@@ -53,7 +55,8 @@ import java.util.concurrent.atomic.AtomicReference;
  * preference. It updates the preference summary text based on tethering state.
  */
 public class AllInOneTetherPreferenceController extends BasePreferenceController implements
-        LifecycleObserver, TetherEnabler.OnTetherStateUpdateListener {
+        LifecycleObserver, TetherEnabler.OnTetherStateUpdateListener,
+        BasePreferenceController.AvailabilityCacheable {
     private static final String TAG = "AllInOneTetherPreferenceController";
 
     private int mTetheringState;
@@ -110,6 +113,17 @@ public class AllInOneTetherPreferenceController extends BasePreferenceController
         }
     }
 
+    @Override
+    public int getAvailabilityTriggers() {
+        // Tethering support depends on the user restrictions and the carrier config.
+        return AvailabilityCache.TRIGGER_USER_CHANGED | AvailabilityCache.TRIGGER_SIM_CHANGED;
+    }
+
+    @Override
+    public String[] getAvailabilityGlobalSettings() {
+        return new String[] {Settings.Global.TETHER_SUPPORTED};
+    }
+
     @Override
     public CharSequence getSummary() {
         switch (mTetheringState) {
@@ -18,18 +18,21 @@ package com.android.settings.network;
 
 import android.content.Context;
 import android.icu.text.ListFormatter;
+import android.provider.Settings;
 import android.text.BidiFormatter;
 import android.text.TextUtils;
 
 import com.android.settings.R;
 import com.android.settings.Utils;
+import com.android.settings.core.AvailabilityCache;
 import com.android.settings.core.BasePreferenceController;
 import com.android.settings.wifi.WifiMasterSwitchPreferenceController;
 
 import java.util.ArrayList;
 import java.util.List;
 
-public class TopLevelNetworkEntryPreferenceController extends BasePreferenceController {
+public class TopLevelNetworkEntryPreferenceController extends BasePreferenceController
+        implements BasePreferenceController.AvailabilityCacheable {
 
     private final WifiMasterSwitchPreferenceController mWifiPreferenceController;
     private final MobileNetworkPreferenceController mMobileNetworkPreferenceController;
@@ -49,6 +52,16 @@ public class TopLevelNetworkEntryPreferenceController extends BasePreferenceCont
         return Utils.isDemoUser(mContext) ? UNSUPPORTED_ON_DEVICE : AVAILABLE;
     }
 
+    @Override
+    public int getAvailabilityTriggers() {
+        return AvailabilityCache.TRIGGER_USER_CHANGED;
+    }
+
+    @Override
+    public String[] getAvailabilityGlobalSettings() {
+        return new String[] {Settings.Global.DEVICE_DEMO_MODE};
+    }
+
     @Override
     public CharSequence getSummary() {
         final String wifiSummary = BidiFormatter.getInstance()
@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.search;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.SystemClock;
+import android.os.storage.VolumeInfo;
+import android.text.format.DateUtils;
+import android.util.ArrayMap;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settingslib.search.SearchIndexableRaw;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Caches the raw data of each {@link com.android.settingslib.search.Indexable.SearchIndexProvider}
+ * served by {@link SettingsSearchIndexablesProvider}, keyed by the class name of the provider.
+ * Non-indexable keys depend on the current state of the device, so they are never cached.
+ * <p>
+ * Entries expire after a short time, and are all dropped on package, user, locale or storage
+ * volume changes.
+ */
+class SearchIndexableResultCache {
+
+    @VisibleForTesting
+    static final long ENTRY_TTL_MS = DateUtils.MINUTE_IN_MILLIS;
+
+    // Guarded by this.
+    private final Map<String, Entry> mRawData = new ArrayMap<>();
+
+    private final BroadcastReceiver mReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            invalidate();
+        }
+    };
+
+    /**
+     * Start dropping the cached results on package, user, locale or storage volume changes.
+     */
+    void register(Context context) {
+        final IntentFilter packageFilter = new IntentFilter();
+        packageFilter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        packageFilter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        packageFilter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+        packageFilter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        packageFilter.addDataScheme("package");
+        context.registerReceiver(mReceiver, packageFilter);
+
+        final IntentFilter userFilter = new IntentFilter();
+        userFilter.addAction(Intent.ACTION_USER_ADDED);
+        userFilter.addAction(Intent.ACTION_USER_REMOVED);
+        userFilter.addAction(Intent.ACTION_USER_SWITCHED);
+        userFilter.addAction(Intent.ACTION_MANAGED_PROFILE_AVAILABLE);
+        userFilter.addAction(Intent.ACTION_MANAGED_PROFILE_UNAVAILABLE);
+        userFilter.addAction(Intent.ACTION_LOCALE_CHANGED);
+        context.registerReceiver(mReceiver, userFilter);
+
+        // The storage page lists the mounted volumes.
+        context.registerReceiver(mReceiver,
+                new IntentFilter(VolumeInfo.ACTION_VOLUME_STATE_CHANGED));
+    }
+
+    synchronized List<SearchIndexableRaw> getRawData(String className) {
+        final Entry entry = mRawData.get(className);
+        if (entry == null) {
+            return null;
+        }
+        if (SystemClock.elapsedRealtime() - entry.mTimestamp > ENTRY_TTL_MS) {
+            mRawData.remove(className);
+            return null;
+        }
+        return entry.mRawData;
+    }
+
+    synchronized void putRawData(String className, List<SearchIndexableRaw> rawData) {
+        mRawData.put(className, new Entry(rawData));
+    }
+
+    /**
+     * Drop all cached results.
+     */
+    synchronized void invalidate() {
+        mRawData.clear();
+    }
+
+    private static class Entry {
+        private final List<SearchIndexableRaw> mRawData;
+        private final long mTimestamp;
+
+        Entry(List<SearchIndexableRaw> rawData) {
+            mRawData = rawData;
+            mTimestamp = SystemClock.elapsedRealtime();
+        }
+    }
+}
@@ -67,6 +67,7 @@ import com.android.settings.SettingsActivity;
 import com.android.settings.dashboard.DashboardFeatureProvider;
 import com.android.settings.overlay.FeatureFactory;
 import com.android.settings.slices.SettingsSliceProvider;
+import com.android.settings.utils.LazyThreadPool;
 import com.android.settingslib.drawer.ActivityTile;
 import com.android.settingslib.drawer.CategoryKey;
 import com.android.settingslib.drawer.DashboardCategory;
@@ -77,7 +78,11 @@ import com.android.settingslib.search.SearchIndexableRaw;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
 
@@ -100,8 +105,18 @@ public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
         INVALID_KEYS.add("");
     }
 
+    private static final int NON_INDEXABLE_KEYS_THREADS = 4;
+    private static final long NON_INDEXABLE_KEYS_KEEP_ALIVE_SECONDS = 30;
+
+    private static final LazyThreadPool sNonIndexableKeysPool = new LazyThreadPool(
+            "SearchNonIndexableKeys", NON_INDEXABLE_KEYS_THREADS,
+            NON_INDEXABLE_KEYS_KEEP_ALIVE_SECONDS);
+
+    private final SearchIndexableResultCache mResultCache = new SearchIndexableResultCache();
+
     @Override
     public boolean onCreate() {
+        mResultCache.register(getContext());
         return true;
     }
 
@@ -256,51 +271,71 @@ public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
         final Collection<SearchIndexableData> bundles = FeatureFactory.getFactory(context)
                 .getSearchFeatureProvider().getSearchIndexableResources().getProviderValues();
 
-        final List<String> nonIndexableKeys = new ArrayList<>();
-
+        // Evaluate the providers concurrently, results are merged in the provider order.
+        final List<Future<List<String>>> futures = new ArrayList<>();
+        final ExecutorService executor = sNonIndexableKeysPool.get();
         for (SearchIndexableData bundle : bundles) {
-            final long startTime = System.currentTimeMillis();
-            Indexable.SearchIndexProvider provider = bundle.getSearchIndexProvider();
-            List<String> providerNonIndexableKeys;
+            futures.add(executor.submit(() -> getNonIndexableKeysFromBundle(context, bundle)));
+        }
+
+        final List<String> nonIndexableKeys = new ArrayList<>();
+        for (Future<List<String>> future : futures) {
             try {
-                providerNonIndexableKeys = provider.getNonIndexableKeys(context);
-            } catch (Exception e) {
-                // Catch a generic crash. In the absence of the catch, the background thread will
-                // silently fail anyway, so we aren't losing information by catching the exception.
-                // We crash when the system property exists so that we can test if crashes need to
-                // be fixed.
-                // The gain is that if there is a crash in a specific controller, we don't lose all
-                // non-indexable keys, but we can still find specific crashes in development.
-                if (System.getProperty(SYSPROP_CRASH_ON_ERROR) != null) {
-                    throw new RuntimeException(e);
-                }
-                Log.e(TAG, "Error trying to get non-indexable keys from: "
-                        + bundle.getTargetClass().getName(), e);
-                continue;
+                nonIndexableKeys.addAll(future.get());
+            } catch (ExecutionException e) {
+                // Only thrown when SYSPROP_CRASH_ON_ERROR is set.
+                throw new RuntimeException(e.getCause());
+            } catch (InterruptedException e) {
+                Log.w(TAG, "Interrupted while getting non-indexable keys", e);
+                Thread.currentThread().interrupt();
+                break;
             }
+        }
 
-            if (providerNonIndexableKeys == null || providerNonIndexableKeys.isEmpty()) {
-                if (DEBUG) {
-                    final long totalTime = System.currentTimeMillis() - startTime;
-                    Log.d(TAG, "No indexable, total time " + totalTime);
-                }
-                continue;
-            }
+        return nonIndexableKeys;
+    }
 
-            if (providerNonIndexableKeys.removeAll(INVALID_KEYS)) {
-                Log.v(TAG, provider + " tried to add an empty non-indexable key");
+    private List<String> getNonIndexableKeysFromBundle(Context context,
+            SearchIndexableData bundle) {
+        final long startTime = System.currentTimeMillis();
+        Indexable.SearchIndexProvider provider = bundle.getSearchIndexProvider();
+        List<String> providerNonIndexableKeys;
+        try {
+            providerNonIndexableKeys = provider.getNonIndexableKeys(context);
+        } catch (Exception e) {
+            // Catch a generic crash. In the absence of the catch, the background thread will
+            // silently fail anyway, so we aren't losing information by catching the exception.
+            // We crash when the system property exists so that we can test if crashes need to
+            // be fixed.
+            // The gain is that if there is a crash in a specific controller, we don't lose all
+            // non-indexable keys, but we can still find specific crashes in development.
+            if (System.getProperty(SYSPROP_CRASH_ON_ERROR) != null) {
+                throw new RuntimeException(e);
             }
+            Log.e(TAG, "Error trying to get non-indexable keys from: "
+                    + bundle.getTargetClass().getName(), e);
+            return Collections.emptyList();
+        }
 
+        if (providerNonIndexableKeys == null || providerNonIndexableKeys.isEmpty()) {
             if (DEBUG) {
                 final long totalTime = System.currentTimeMillis() - startTime;
-                Log.d(TAG, "Non-indexables " + providerNonIndexableKeys.size() + ", total time "
-                        + totalTime);
+                Log.d(TAG, "No indexable, total time " + totalTime);
             }
+            return Collections.emptyList();
+        }
 
-            nonIndexableKeys.addAll(providerNonIndexableKeys);
+        if (providerNonIndexableKeys.removeAll(INVALID_KEYS)) {
+            Log.v(TAG, provider + " tried to add an empty non-indexable key");
         }
 
-        return nonIndexableKeys;
+        if (DEBUG) {
+            final long totalTime = System.currentTimeMillis() - startTime;
+            Log.d(TAG, "Non-indexables " + providerNonIndexableKeys.size() + ", total time "
+                    + totalTime);
+        }
+
+        return providerNonIndexableKeys;
     }
 
     private List<SearchIndexableResource> getSearchIndexableResourcesFromProvider(Context context) {
@@ -335,20 +370,29 @@ public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
         final List<SearchIndexableRaw> rawList = new ArrayList<>();
 
         for (SearchIndexableData bundle : bundles) {
+            final String className = bundle.getTargetClass().getName();
+            final List<SearchIndexableRaw> cachedRaws = mResultCache.getRawData(className);
+            if (cachedRaws != null) {
+                rawList.addAll(cachedRaws);
+                continue;
+            }
+
             Indexable.SearchIndexProvider provider = bundle.getSearchIndexProvider();
             final List<SearchIndexableRaw> providerRaws = provider.getRawDataToIndex(context,
                     true /* enabled */);
 
             if (providerRaws == null) {
+                mResultCache.putRawData(className, Collections.emptyList());
                 continue;
             }
 
             for (SearchIndexableRaw raw : providerRaws) {
                 // The classname and intent information comes from the PreIndexData
                 // This will be more clear when provider conversion is done at PreIndex time.
-                raw.className = bundle.getTargetClass().getName();
+                raw.className = className;
 
             }
+            mResultCache.putRawData(className, providerRaws);
             rawList.addAll(providerRaws);
         }
 
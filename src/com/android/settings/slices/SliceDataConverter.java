@@ -35,6 +35,7 @@ import android.content.res.Resources;
 import android.content.res.XmlResourceParser;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.provider.SearchIndexableResource;
 import android.provider.SettingsSlicesContract;
 import android.text.TextUtils;
@@ -49,6 +50,7 @@ import com.android.settings.R;
 import com.android.settings.accessibility.AccessibilitySettings;
 import com.android.settings.accessibility.AccessibilitySlicePreferenceController;
 import com.android.settings.core.BasePreferenceController;
+import com.android.settings.core.PreferenceMetadataStore;
 import com.android.settings.core.PreferenceXmlParserUtils;
 import com.android.settings.core.PreferenceXmlParserUtils.MetadataFlag;
 import com.android.settings.dashboard.DashboardFragment;
@@ -62,11 +64,12 @@ import org.xmlpull.v1.XmlPullParserException;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 /**
  * Converts all Slice sources into {@link SliceData}.
@@ -80,6 +83,11 @@ class SliceDataConverter {
 
     private static final String NODE_NAME_PREFERENCE_SCREEN = "PreferenceScreen";
 
+    // Number of providers converted serially by a leaf task.
+    private static final int PROVIDERS_PER_TASK = 4;
+    // Log the providers taking longer than this to convert.
+    private static final long PROVIDER_TIME_THRESHOLD_MS = 100;
+
     private final MetricsFeatureProvider mMetricsFeatureProvider;
     private Context mContext;
 
@@ -101,28 +109,42 @@ class SliceDataConverter {
     public List<SliceData> getSliceData() {
         List<SliceData> sliceData = new ArrayList<>();
 
-        final Collection<SearchIndexableData> bundles = FeatureFactory.getFactory(mContext)
-                .getSearchFeatureProvider().getSearchIndexableResources().getProviderValues();
+        final List<SearchIndexableData> bundles = new ArrayList<>(
+                FeatureFactory.getFactory(mContext).getSearchFeatureProvider()
+                        .getSearchIndexableResources().getProviderValues());
 
-        for (SearchIndexableData bundle : bundles) {
-            final String fragmentName = bundle.getTargetClass().getName();
+        final long startTime = SystemClock.elapsedRealtime();
+        // Share the common pool, its workers are kept alive between indexing runs.
+        sliceData.addAll(ForkJoinPool.commonPool().invoke(
+                new ConvertProvidersTask(bundles, 0, bundles.size())));
+        Log.d(TAG, "Converting " + bundles.size() + " providers took: "
+                + (SystemClock.elapsedRealtime() - startTime));
 
-            final SearchIndexProvider provider = bundle.getSearchIndexProvider();
+        final List<SliceData> a11ySliceData = getAccessibilitySliceData();
+        sliceData.addAll(a11ySliceData);
+        return sliceData;
+    }
 
-            // CodeInspection test guards against the null check. Keep check in case of bad actors.
-            if (provider == null) {
-                Log.e(TAG, fragmentName + " dose not implement Search Index Provider");
-                continue;
-            }
+    @VisibleForTesting
+    List<SliceData> getSliceDataFromBundle(SearchIndexableData bundle) {
+        final String fragmentName = bundle.getTargetClass().getName();
+
+        final SearchIndexProvider provider = bundle.getSearchIndexProvider();
 
-            final List<SliceData> providerSliceData = getSliceDataFromProvider(provider,
-                    fragmentName);
-            sliceData.addAll(providerSliceData);
+        // CodeInspection test guards against the null check. Keep check in case of bad actors.
+        if (provider == null) {
+            Log.e(TAG, fragmentName + " dose not implement Search Index Provider");
+            return Collections.emptyList();
         }
 
-        final List<SliceData> a11ySliceData = getAccessibilitySliceData();
-        sliceData.addAll(a11ySliceData);
-        return sliceData;
+        final long startTime = SystemClock.elapsedRealtime();
+        final List<SliceData> providerSliceData = getSliceDataFromProvider(provider,
+                fragmentName);
+        final long elapsedTime = SystemClock.elapsedRealtime() - startTime;
+        if (elapsedTime > PROVIDER_TIME_THRESHOLD_MS) {
+            Log.w(TAG, "Converting " + fragmentName + " took: " + elapsedTime);
+        }
+        return providerSliceData;
     }
 
     private List<SliceData> getSliceDataFromProvider(SearchIndexProvider provider,
@@ -180,8 +202,8 @@ class SliceDataConverter {
             // TODO (b/67996923) Investigate if we need headers for Slices, since they never
             // correspond to an actual setting.
 
-            final List<Bundle> metadata = PreferenceXmlParserUtils.extractMetadata(mContext,
-                    xmlResId,
+            final List<Bundle> metadata = PreferenceMetadataStore.getInstance(mContext)
+                    .getMetadata(mContext, xmlResId,
                     MetadataFlag.FLAG_NEED_KEY
                             | MetadataFlag.FLAG_NEED_PREF_CONTROLLER
                             | MetadataFlag.FLAG_NEED_PREF_TYPE
@@ -319,4 +341,39 @@ class SliceDataConverter {
                 mContext);
         return accessibilityManager.getInstalledAccessibilityServiceList();
     }
+
+    /**
+     * Converts a range of providers, splitting it in halves across the pool. Results are merged
+     * in the order of the providers so the output does not depend on scheduling.
+     */
+    private class ConvertProvidersTask extends RecursiveTask<List<SliceData>> {
+        private final List<SearchIndexableData> mBundles;
+        private final int mStart;
+        private final int mEnd;
+
+        ConvertProvidersTask(List<SearchIndexableData> bundles, int start, int end) {
+            mBundles = bundles;
+            mStart = start;
+            mEnd = end;
+        }
+
+        @Override
+        protected List<SliceData> compute() {
+            if (mEnd - mStart <= PROVIDERS_PER_TASK) {
+                final List<SliceData> sliceData = new ArrayList<>();
+                for (int i = mStart; i < mEnd; i++) {
+                    sliceData.addAll(getSliceDataFromBundle(mBundles.get(i)));
+                }
+                return sliceData;
+            }
+            final int middle = (mStart + mEnd) >>> 1;
+            final ConvertProvidersTask first = new ConvertProvidersTask(mBundles, mStart, middle);
+            final ConvertProvidersTask second = new ConvertProvidersTask(mBundles, middle, mEnd);
+            first.fork();
+            final List<SliceData> secondResult = second.compute();
+            final List<SliceData> sliceData = first.join();
+            sliceData.addAll(secondResult);
+            return sliceData;
+        }
+    }
 }
\ No newline at end of file
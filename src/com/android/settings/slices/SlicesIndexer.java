@@ -16,9 +16,9 @@
 
 package com.android.settings.slices;
 
-import android.content.ContentValues;
 import android.content.Context;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
 import android.util.Log;
 
 import androidx.annotation.VisibleForTesting;
@@ -39,6 +39,22 @@ class SlicesIndexer implements Runnable {
 
     private static final String TAG = "SlicesIndexer";
 
+    private static final String INSERT_SLICE_SQL = "INSERT OR REPLACE INTO "
+            + Tables.TABLE_SLICES_INDEX + " ("
+            + IndexColumns.KEY + ", "
+            + IndexColumns.SLICE_URI + ", "
+            + IndexColumns.TITLE + ", "
+            + IndexColumns.SUMMARY + ", "
+            + IndexColumns.SCREENTITLE + ", "
+            + IndexColumns.KEYWORDS + ", "
+            + IndexColumns.ICON_RESOURCE + ", "
+            + IndexColumns.FRAGMENT + ", "
+            + IndexColumns.CONTROLLER + ", "
+            + IndexColumns.SLICE_TYPE + ", "
+            + IndexColumns.UNAVAILABLE_SLICE_SUBTITLE + ", "
+            + IndexColumns.PUBLIC_SLICE
+            + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
     private Context mContext;
 
     private SlicesDatabaseHelper mHelper;
@@ -96,29 +112,35 @@ class SlicesIndexer implements Runnable {
 
     @VisibleForTesting
     void insertSliceData(SQLiteDatabase database, List<SliceData> indexData) {
-        ContentValues values;
-
-        for (SliceData dataRow : indexData) {
-            values = new ContentValues();
-            values.put(IndexColumns.KEY, dataRow.getKey());
-            values.put(IndexColumns.SLICE_URI, dataRow.getUri().toSafeString());
-            values.put(IndexColumns.TITLE, dataRow.getTitle());
-            values.put(IndexColumns.SUMMARY, dataRow.getSummary());
-            final CharSequence screenTitle = dataRow.getScreenTitle();
-            if (screenTitle != null) {
-                values.put(IndexColumns.SCREENTITLE, screenTitle.toString());
+        final SQLiteStatement statement = database.compileStatement(INSERT_SLICE_SQL);
+        try {
+            for (SliceData dataRow : indexData) {
+                statement.clearBindings();
+                bindString(statement, 1, dataRow.getKey());
+                bindString(statement, 2, dataRow.getUri().toSafeString());
+                bindString(statement, 3, dataRow.getTitle());
+                bindString(statement, 4, dataRow.getSummary());
+                final CharSequence screenTitle = dataRow.getScreenTitle();
+                bindString(statement, 5, screenTitle != null ? screenTitle.toString() : null);
+                bindString(statement, 6, dataRow.getKeywords());
+                statement.bindLong(7, dataRow.getIconResource());
+                bindString(statement, 8, dataRow.getFragmentClassName());
+                bindString(statement, 9, dataRow.getPreferenceController());
+                statement.bindLong(10, dataRow.getSliceType());
+                bindString(statement, 11, dataRow.getUnavailableSliceSubtitle());
+                statement.bindLong(12, dataRow.isPublicSlice() ? 1 : 0);
+                statement.executeInsert();
             }
-            values.put(IndexColumns.KEYWORDS, dataRow.getKeywords());
-            values.put(IndexColumns.ICON_RESOURCE, dataRow.getIconResource());
-            values.put(IndexColumns.FRAGMENT, dataRow.getFragmentClassName());
-            values.put(IndexColumns.CONTROLLER, dataRow.getPreferenceController());
-            values.put(IndexColumns.SLICE_TYPE, dataRow.getSliceType());
-            values.put(IndexColumns.UNAVAILABLE_SLICE_SUBTITLE,
-                    dataRow.getUnavailableSliceSubtitle());
-            values.put(IndexColumns.PUBLIC_SLICE, dataRow.isPublicSlice());
-
-            database.replaceOrThrow(Tables.TABLE_SLICES_INDEX, null /* nullColumnHack */,
-                    values);
+        } finally {
+            statement.close();
+        }
+    }
+
+    private static void bindString(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.utils;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A fixed size thread pool, created on first use and meant to be held in a static field. Its
+ * threads exit after being idle for the keep alive time, so the pool costs nothing while unused.
+ */
+public class LazyThreadPool {
+
+    private final String mName;
+    private final int mThreads;
+    private final long mKeepAliveSeconds;
+    private final BlockingQueue<Runnable> mWorkQueue;
+    private final AtomicInteger mThreadCount = new AtomicInteger();
+
+    private ThreadPoolExecutor mExecutor;
+
+    /**
+     * @param name prefix of the names of the pool threads
+     * @param threads maximum number of threads running at once
+     * @param keepAliveSeconds time an idle thread waits for a new task before exiting
+     */
+    public LazyThreadPool(String name, int threads, long keepAliveSeconds) {
+        this(name, threads, keepAliveSeconds, new LinkedBlockingQueue<>());
+    }
+
+    /**
+     * @param workQueue queue holding the tasks waiting for a thread, e.g. to order them
+     */
+    public LazyThreadPool(String name, int threads, long keepAliveSeconds,
+            BlockingQueue<Runnable> workQueue) {
+        mName = name;
+        mThreads = threads;
+        mKeepAliveSeconds = keepAliveSeconds;
+        mWorkQueue = workQueue;
+    }
+
+    /**
+     * @return the executor of the pool, creating it if needed.
+     */
+    public synchronized ThreadPoolExecutor get() {
+        if (mExecutor == null) {
+            mExecutor = new ThreadPoolExecutor(mThreads, mThreads, mKeepAliveSeconds,
+                    TimeUnit.SECONDS, mWorkQueue,
+                    runnable -> new Thread(runnable, mName + "-" + mThreadCount.incrementAndGet()));
+            mExecutor.allowCoreThreadTimeOut(true);
+        }
+        return mExecutor;
+    }
+}
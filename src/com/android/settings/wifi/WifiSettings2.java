@@ -42,6 +42,7 @@ import android.os.SimpleClock;
 import android.os.SystemClock;
 import android.provider.Settings;
 import android.text.TextUtils;
+import android.util.ArrayMap;
 import android.util.FeatureFlagUtils;
 import android.util.Log;
 import android.view.ContextMenu;
@@ -161,8 +162,11 @@ public class WifiSettings2 extends RestrictedSettingsFragment
         updateWifiEntryPreferences();
     };
     private final Runnable mHideProgressBarRunnable = () -> {
+        mHideProgressBarPending = false;
         setProgressBarVisible(false);
     };
+    // Whether mHideProgressBarRunnable is posted and has not run yet.
+    private boolean mHideProgressBarPending;
 
     protected WifiManager mWifiManager;
     private WifiManager.ActionListener mConnectListener;
@@ -189,7 +193,8 @@ public class WifiSettings2 extends RestrictedSettingsFragment
     private View mProgressHeader;
 
     private PreferenceCategory mConnectedWifiEntryPreferenceCategory;
-    private PreferenceCategory mWifiEntryPreferenceCategory;
+    @VisibleForTesting
+    PreferenceCategory mWifiEntryPreferenceCategory;
     @VisibleForTesting
     AddWifiNetworkPreference mAddWifiNetworkPreference;
     @VisibleForTesting
@@ -405,6 +410,7 @@ public class WifiSettings2 extends RestrictedSettingsFragment
     public void onStop() {
         getView().removeCallbacks(mUpdateWifiEntryPreferencesRunnable);
         getView().removeCallbacks(mHideProgressBarRunnable);
+        mHideProgressBarPending = false;
         super.onStop();
     }
 
@@ -716,7 +722,6 @@ public class WifiSettings2 extends RestrictedSettingsFragment
             return;
         }
 
-        boolean hasAvailableWifiEntries = false;
         mStatusMessagePreference.setVisible(false);
         mWifiEntryPreferenceCategory.setVisible(true);
 
@@ -753,27 +758,69 @@ public class WifiSettings2 extends RestrictedSettingsFragment
             mConnectedWifiEntryPreferenceCategory.removeAll();
         }
 
+        final List<WifiEntry> wifiEntries = mWifiPickerTracker.getWifiEntries();
+        updateWifiEntryListPreferences(wifiEntries);
+
+        if (wifiEntries.isEmpty()) {
+            setProgressBarVisible(true);
+        } else {
+            hideProgressBarDelayed();
+        }
+        setAdditionalSettingsSummaries();
+    }
+
+    /**
+     * Hides the progress bar after a delay, unless a hide is already pending. The pending hide is
+     * not restarted, otherwise updates arriving faster than the delay would keep it visible.
+     */
+    @VisibleForTesting
+    void hideProgressBarDelayed() {
+        if (mHideProgressBarPending) {
+            return;
+        }
+        mHideProgressBarPending = true;
+        // Continuing showing progress bar for an additional delay to overlap with animation
+        getView().postDelayed(mHideProgressBarRunnable, 1700 /* delay millis */);
+    }
+
+    /**
+     * Updates the preferences of {@link #mWifiEntryPreferenceCategory} to show
+     * {@code wifiEntries} in order, followed by the add network preference.
+     *
+     * <p>Preferences are matched by key, so that a network keeps its preference across scans and
+     * only the preferences whose position changed are moved. A preference is bound to its
+     * WifiEntry, so it is only replaced when the WifiEntry of its key is a new object.
+     */
+    @VisibleForTesting
+    void updateWifiEntryListPreferences(List<WifiEntry> wifiEntries) {
+        final int count = mWifiEntryPreferenceCategory.getPreferenceCount();
+        final ArrayMap<String, Preference> stalePrefs = new ArrayMap<>(count);
+        boolean hasAddNetworkPreference = false;
+        for (int i = 0; i < count; i++) {
+            final Preference pref = mWifiEntryPreferenceCategory.getPreference(i);
+            if (pref == mAddWifiNetworkPreference) {
+                hasAddNetworkPreference = true;
+            } else {
+                stalePrefs.put(pref.getKey(), pref);
+            }
+        }
+
         int index = 0;
-        cacheRemoveAllPrefs(mWifiEntryPreferenceCategory);
-        List<WifiEntry> wifiEntries = mWifiPickerTracker.getWifiEntries();
         for (WifiEntry wifiEntry : wifiEntries) {
-            hasAvailableWifiEntries = true;
-
-            String key = wifiEntry.getKey();
-            LongPressWifiEntryPreference pref =
-                    (LongPressWifiEntryPreference) getCachedPreference(key);
-            if (pref != null) {
-                if (pref.getWifiEntry() == wifiEntry) {
-                    pref.setOrder(index++);
-                    continue;
-                } else {
-                    // Create a new preference if the underlying WifiEntry object has changed
-                    removePreference(key);
-                }
+            final String key = wifiEntry.getKey();
+            final Preference stalePref = stalePrefs.remove(key);
+            if (stalePref instanceof LongPressWifiEntryPreference
+                    && ((LongPressWifiEntryPreference) stalePref).getWifiEntry() == wifiEntry) {
+                // The WifiEntry refreshes its preference itself, only its position may change.
+                stalePref.setOrder(index++);
+                continue;
+            }
+            if (stalePref != null) {
+                mWifiEntryPreferenceCategory.removePreference(stalePref);
             }
 
-            pref = createLongPressWifiEntryPreference(wifiEntry);
-            pref.setKey(wifiEntry.getKey());
+            final LongPressWifiEntryPreference pref = createLongPressWifiEntryPreference(wifiEntry);
+            pref.setKey(key);
             pref.setOrder(index++);
             pref.refresh();
 
@@ -784,24 +831,26 @@ public class WifiSettings2 extends RestrictedSettingsFragment
             }
             mWifiEntryPreferenceCategory.addPreference(pref);
         }
-        removeCachedPrefs(mWifiEntryPreferenceCategory);
 
-        if (!hasAvailableWifiEntries) {
-            setProgressBarVisible(true);
-            Preference pref = new Preference(getPrefContext());
-            pref.setSelectable(false);
-            pref.setSummary(R.string.wifi_empty_list_wifi_on);
+        if (wifiEntries.isEmpty()) {
+            Preference pref = stalePrefs.remove(PREF_KEY_EMPTY_WIFI_LIST);
+            if (pref == null) {
+                pref = new Preference(getPrefContext());
+                pref.setSelectable(false);
+                pref.setSummary(R.string.wifi_empty_list_wifi_on);
+                pref.setKey(PREF_KEY_EMPTY_WIFI_LIST);
+                mWifiEntryPreferenceCategory.addPreference(pref);
+            }
             pref.setOrder(index++);
-            pref.setKey(PREF_KEY_EMPTY_WIFI_LIST);
-            mWifiEntryPreferenceCategory.addPreference(pref);
-        } else {
-            // Continuing showing progress bar for an additional delay to overlap with animation
-            getView().postDelayed(mHideProgressBarRunnable, 1700 /* delay millis */);
+        }
+        for (int i = 0; i < stalePrefs.size(); i++) {
+            mWifiEntryPreferenceCategory.removePreference(stalePrefs.valueAt(i));
         }
 
         mAddWifiNetworkPreference.setOrder(index++);
-        mWifiEntryPreferenceCategory.addPreference(mAddWifiNetworkPreference);
-        setAdditionalSettingsSummaries();
+        if (!hasAddNetworkPreference) {
+            mWifiEntryPreferenceCategory.addPreference(mAddWifiNetworkPreference);
+        }
     }
 
     private void launchNetworkDetailsFragment(LongPressWifiEntryPreference pref) {
@@ -30,8 +30,9 @@ import android.view.ViewGroup;
 import android.widget.ImageView;
 import android.widget.TextView;
 
+import androidx.lifecycle.ViewModelProviders;
+
 import com.android.settings.R;
-import com.android.settings.wifi.qrcode.QrCodeGenerator;
 
 import com.google.zxing.WriterException;
 
@@ -120,7 +121,9 @@ public class WifiDppQrCodeGeneratorFragment extends WifiDppQrCodeBaseFragment {
         try {
             final int qrcodeSize = getContext().getResources().getDimensionPixelSize(
                     R.dimen.qrcode_size);
-            final Bitmap bmp = QrCodeGenerator.encodeQrCode(mQrCode, qrcodeSize);
+            final WifiDppQrCodeGeneratorViewModel model =
+                    ViewModelProviders.of(this).get(WifiDppQrCodeGeneratorViewModel.class);
+            final Bitmap bmp = model.getQrCodeBitmap(mQrCode, qrcodeSize);
             mQrCodeView.setImageBitmap(bmp);
         } catch (WriterException e) {
             Log.e(TAG, "Error generating QR code bitmap " + e);
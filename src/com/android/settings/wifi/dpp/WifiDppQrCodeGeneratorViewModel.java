@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.wifi.dpp;
+
+import android.graphics.Bitmap;
+import android.text.TextUtils;
+
+import androidx.lifecycle.ViewModel;
+
+import com.android.settings.wifi.qrcode.QrCodeGenerator;
+
+import com.google.zxing.WriterException;
+
+/**
+ * Keeps the QR code bitmap of {@link WifiDppQrCodeGeneratorFragment} across view and
+ * configuration changes, so that it is only generated again when the QR code changes. It is
+ * released with the fragment, the QR code contains the network credentials.
+ */
+public class WifiDppQrCodeGeneratorViewModel extends ViewModel {
+    private String mQrCode;
+    private int mQrCodeSize;
+    private Bitmap mQrCodeBitmap;
+
+    Bitmap getQrCodeBitmap(String qrCode, int size) throws WriterException {
+        if (mQrCodeBitmap == null || mQrCodeSize != size || !TextUtils.equals(mQrCode, qrCode)) {
+            mQrCodeBitmap = QrCodeGenerator.encodeQrCode(qrCode, size);
+            mQrCode = qrCode;
+            mQrCodeSize = size;
+        }
+
+        return mQrCodeBitmap;
+    }
+
+    @Override
+    protected void onCleared() {
+        mQrCode = null;
+        mQrCodeBitmap = null;
+    }
+}
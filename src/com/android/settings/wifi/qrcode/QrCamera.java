@@ -18,6 +18,7 @@ package com.android.settings.wifi.qrcode;
 
 import android.content.Context;
 import android.content.res.Configuration;
+import android.graphics.ImageFormat;
 import android.graphics.Matrix;
 import android.graphics.Rect;
 import android.graphics.SurfaceTexture;
@@ -27,6 +28,7 @@ import android.hardware.Camera.Parameters;
 import android.os.AsyncTask;
 import android.os.Handler;
 import android.os.Message;
+import android.os.SystemClock;
 import android.util.ArrayMap;
 import android.util.Log;
 import android.util.Size;
@@ -35,6 +37,8 @@ import android.view.WindowManager;
 
 import androidx.annotation.VisibleForTesting;
 
+import com.android.settings.utils.LazyThreadPool;
+
 import com.google.zxing.BarcodeFormat;
 import com.google.zxing.BinaryBitmap;
 import com.google.zxing.DecodeHintType;
@@ -48,8 +52,8 @@ import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Semaphore;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 /**
  * Manage the camera for the QR scanner and help the decoder to get the image inside the scanning
@@ -72,6 +76,14 @@ public class QrCamera extends Handler {
 
     private static final long AUTOFOCUS_INTERVAL_MS = 1500L;
 
+    // Preview buffers handed to the camera. One is decoded while the camera fills the others.
+    private static final int PREVIEW_BUFFER_COUNT = 3;
+    private static final long DECODE_KEEP_ALIVE_SECONDS = 10;
+    private static final long STATS_INTERVAL_MS = 5000L;
+
+    private static final LazyThreadPool sDecodePool = new LazyThreadPool("QrCamera-Decode",
+            1 /* threads */, DECODE_KEEP_ALIVE_SECONDS);
+
     private static Map<DecodeHintType, List<BarcodeFormat>> HINTS = new ArrayMap<>();
     private static List<BarcodeFormat> FORMATS = new ArrayList<>();
 
@@ -107,8 +119,9 @@ public class QrCamera extends Handler {
     public void start(SurfaceTexture surface) {
         if (mDecodeTask == null) {
             mDecodeTask = new DecodingTask(surface);
-            // Execute in the separate thread pool to prevent block other AsyncTask.
-            mDecodeTask.executeOnExecutor(Executors.newSingleThreadExecutor());
+            // Execute in a separate thread to prevent blocking other AsyncTasks. The thread is
+            // shared by all scans, so that a scan only starts once the previous one is over.
+            mDecodeTask.executeOnExecutor(sDecodePool.get());
         }
     }
 
@@ -230,7 +243,6 @@ public class QrCamera extends Handler {
     }
 
     private class DecodingTask extends AsyncTask<Void, Void, String> {
-        private QrYuvLuminanceSource mImage;
         private SurfaceTexture mSurface;
 
         private DecodingTask(SurfaceTexture surface) {
@@ -243,39 +255,54 @@ public class QrCamera extends Handler {
                 return null;
             }
 
-            final Semaphore imageGot = new Semaphore(0);
+            final Camera camera = mCamera;
+            final int bufferSize = mPreviewSize.getWidth() * mPreviewSize.getHeight()
+                    * ImageFormat.getBitsPerPixel(mParameters.getPreviewFormat()) / 8;
+            for (int i = 0; i < PREVIEW_BUFFER_COUNT; i++) {
+                camera.addCallbackBuffer(new byte[bufferSize]);
+            }
+            // Holds the frame waiting to be decoded. Frames arriving while the decoder is busy are
+            // dropped, and their buffer is given back to the camera right away.
+            final BlockingQueue<byte[]> frames = new ArrayBlockingQueue<>(1);
+            camera.setPreviewCallbackWithBuffer((imageData, previewCamera) -> {
+                if (!frames.offer(imageData)) {
+                    previewCamera.addCallbackBuffer(imageData);
+                }
+            });
+
+            final DecodeStats stats = new DecodeStats();
             while (true) {
-                // This loop will try to capture preview image continuously until a valid QR Code
+                // This loop will try to decode preview images continuously until a valid QR Code
                 // decoded. The caller can also call {@link #stop()} to interrupts scanning loop.
-                mCamera.setOneShotPreviewCallback(
-                        (imageData, camera) -> {
-                            mImage = getFrameImage(imageData);
-                            imageGot.release();
-                        });
+                final byte[] imageData;
                 try {
-                    // Semaphore.acquire() blocking until permit is available, or the thread is
+                    // BlockingQueue.take() blocking until a frame is available, or the thread is
                     // interrupted.
-                    imageGot.acquire();
-                    Result qrCode = null;
-                    try {
-                        qrCode =
-                                mReader.decodeWithState(
-                                        new BinaryBitmap(new HybridBinarizer(mImage)));
-                    } catch (ReaderException e) {
-                        // No logging since every time the reader cannot decode the
-                        // image, this ReaderException will be thrown.
-                    } finally {
-                        mReader.reset();
-                    }
-                    if (qrCode != null) {
-                        if (mScannerCallback.isValid(qrCode.getText())) {
-                            return qrCode.getText();
-                        }
-                    }
+                    imageData = frames.take();
                 } catch (InterruptedException e) {
                     Thread.currentThread().interrupt();
                     return null;
                 }
+
+                final long startTime = SystemClock.elapsedRealtime();
+                Result qrCode = null;
+                try {
+                    qrCode = mReader.decodeWithState(
+                            new BinaryBitmap(new HybridBinarizer(getFrameImage(imageData))));
+                } catch (ReaderException e) {
+                    // No logging since every time the reader cannot decode the
+                    // image, this ReaderException will be thrown.
+                } finally {
+                    mReader.reset();
+                    camera.addCallbackBuffer(imageData);
+                }
+                stats.onFrameDecoded(SystemClock.elapsedRealtime() - startTime);
+
+                if (qrCode != null) {
+                    if (mScannerCallback.isValid(qrCode.getText())) {
+                        return qrCode.getText();
+                    }
+                }
             }
         }
 
@@ -478,4 +505,29 @@ public class QrCamera extends Handler {
     public boolean isDecodeTaskAlive() {
         return mDecodeTask != null;
     }
+
+    /** Logs the decode latency and the frame rate of a scan, when debug logging is enabled. */
+    private static final class DecodeStats {
+        private final boolean mEnabled = Log.isLoggable(TAG, Log.DEBUG);
+        private long mIntervalStartTime = SystemClock.elapsedRealtime();
+        private int mFrameCount;
+        private long mDecodeTimeMs;
+
+        void onFrameDecoded(long decodeTimeMs) {
+            if (!mEnabled) {
+                return;
+            }
+            mFrameCount++;
+            mDecodeTimeMs += decodeTimeMs;
+            final long now = SystemClock.elapsedRealtime();
+            final long elapsedMs = now - mIntervalStartTime;
+            if (elapsedMs >= STATS_INTERVAL_MS) {
+                Log.d(TAG, "Decoded " + (mFrameCount * 1000f / elapsedMs) + " frames/s, "
+                        + (mDecodeTimeMs / mFrameCount) + " ms/frame");
+                mIntervalStartTime = now;
+                mFrameCount = 0;
+                mDecodeTimeMs = 0;
+            }
+        }
+    }
 }
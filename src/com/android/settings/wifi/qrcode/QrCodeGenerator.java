@@ -47,13 +47,15 @@ public final class QrCodeGenerator {
 
         final BitMatrix qrBits = new MultiFormatWriter().encode(contents, BarcodeFormat.QR_CODE,
                 size, size, hints);
-        final Bitmap bitmap = Bitmap.createBitmap(size, size, Bitmap.Config.RGB_565);
-        for (int x = 0; x < size; x++) {
-            for (int y = 0; y < size; y++) {
-                bitmap.setPixel(x, y, qrBits.get(x, y) ? Color.BLACK : Color.WHITE);
+        // Fill all the pixels first, setting them one by one on the bitmap is slow.
+        final int[] pixels = new int[size * size];
+        for (int y = 0; y < size; y++) {
+            final int offset = y * size;
+            for (int x = 0; x < size; x++) {
+                pixels[offset + x] = qrBits.get(x, y) ? Color.BLACK : Color.WHITE;
             }
         }
-        return bitmap;
+        return Bitmap.createBitmap(pixels, size, size, Bitmap.Config.RGB_565);
     }
 
     private static boolean isIso88591(String contents) {
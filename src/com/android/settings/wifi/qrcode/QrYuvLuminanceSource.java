@@ -19,20 +19,40 @@ package com.android.settings.wifi.qrcode;
 import com.google.zxing.LuminanceSource;
 
 /**
- * This helper class implements crop method to crop preview picture.
+ * This helper class implements crop method to crop preview picture. Cropping doesn't copy the
+ * preview picture, the cropped image reads the rows of the rectangle from it.
+ *
+ * <p>{@link com.google.zxing.common.HybridBinarizer} reads the whole image through
+ * {@link #getMatrix()} for images of 40 pixels or more, which copies the rectangle. So a scanned
+ * frame is still copied once, as when cropping copied it, only the rows read by
+ * {@link #getRow(int, byte[])} are read in place.
  */
 public class QrYuvLuminanceSource extends LuminanceSource {
 
     private byte[] mYuvData;
+    // Size of the picture in mYuvData, and position of this image inside it.
+    private int mDataWidth;
+    private int mDataHeight;
+    private int mLeft;
+    private int mTop;
     private int mWidth;
     private int mHeight;
 
     public QrYuvLuminanceSource(byte[] yuvData, int width, int height) {
+        this(yuvData, width, height, 0 /* left */, 0 /* top */, width, height);
+    }
+
+    private QrYuvLuminanceSource(byte[] yuvData, int dataWidth, int dataHeight, int left,
+            int top, int width, int height) {
         super(width, height);
 
+        mYuvData = yuvData;
+        mDataWidth = dataWidth;
+        mDataHeight = dataHeight;
+        mLeft = left;
+        mTop = top;
         mWidth = width;
         mHeight = height;
-        mYuvData = yuvData;
     }
 
     @Override
@@ -42,18 +62,11 @@ public class QrYuvLuminanceSource extends LuminanceSource {
 
     @Override
     public LuminanceSource crop(int left, int top, int crop_width, int crop_height) {
-        final byte[] newImage = new byte[crop_width * crop_height];
-        int inputOffset = top * mWidth + left;
-
         if (left + crop_width > mWidth || top + crop_height > mHeight) {
             throw new IllegalArgumentException("cropped rectangle does not fit within image data.");
         }
-
-        for (int y = 0; y < crop_height; y++) {
-            System.arraycopy(mYuvData, inputOffset, newImage, y * crop_width, crop_width);
-            inputOffset += mWidth;
-        }
-        return new QrYuvLuminanceSource(newImage, crop_width, crop_height);
+        return new QrYuvLuminanceSource(mYuvData, mDataWidth, mDataHeight, mLeft + left,
+                mTop + top, crop_width, crop_height);
     }
 
     @Override
@@ -64,12 +77,28 @@ public class QrYuvLuminanceSource extends LuminanceSource {
         if (row == null || row.length < mWidth) {
             row = new byte[mWidth];
         }
-        System.arraycopy(mYuvData, y * mWidth, row, 0, mWidth);
+        System.arraycopy(mYuvData, (mTop + y) * mDataWidth + mLeft, row, 0, mWidth);
         return row;
     }
 
+    // Called once per frame by HybridBinarizer, the copy is not avoided.
     @Override
     public byte[] getMatrix() {
-        return mYuvData;
+        if (mWidth == mDataWidth && mHeight == mDataHeight) {
+            return mYuvData;
+        }
+
+        final byte[] matrix = new byte[mWidth * mHeight];
+        int inputOffset = mTop * mDataWidth + mLeft;
+        if (mWidth == mDataWidth) {
+            // The rows are contiguous.
+            System.arraycopy(mYuvData, inputOffset, matrix, 0, matrix.length);
+            return matrix;
+        }
+        for (int y = 0; y < mHeight; y++) {
+            System.arraycopy(mYuvData, inputOffset, matrix, y * mWidth, mWidth);
+            inputOffset += mDataWidth;
+        }
+        return matrix;
     }
 }
@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import android.content.pm.ApplicationInfo;
+import android.os.Looper;
+
+import com.android.settingslib.applications.ApplicationsState;
+import com.android.settingslib.applications.ApplicationsState.AppEntry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.util.ReflectionHelpers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class AppStateBaseBridgeTest {
+
+    private static final String PKG1 = "pkg1";
+    private static final String PKG2 = "pkg2";
+
+    @Mock
+    private ApplicationsState mState;
+    @Mock
+    private ApplicationsState.Session mSession;
+
+    private ArrayList<AppEntry> mApps;
+    private TestBridge mBridge;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        when(mState.newSession(any())).thenReturn(mSession);
+        when(mState.getBackgroundLooper()).thenReturn(Looper.getMainLooper());
+        mApps = new ArrayList<>();
+        mApps.add(getAppEntry(PKG1, 10001));
+        mApps.add(getAppEntry(PKG2, 10002));
+        when(mSession.getAllApps()).thenReturn(mApps);
+
+        mBridge = new TestBridge(mState);
+        ReflectionHelpers.setField(mBridge, "mWatchingChanges", true);
+    }
+
+    @Test
+    public void loadExtraInfo_nothingChanged_shouldNotReload() {
+        mBridge.loadExtraInfo();
+        mBridge.loadExtraInfo();
+
+        assertThat(mBridge.mLoadAllCount).isEqualTo(1);
+        assertThat(mBridge.mUpdatedPackages).isEmpty();
+    }
+
+    @Test
+    public void loadExtraInfo_packageChanged_shouldOnlyUpdateThatPackage() {
+        mBridge.loadExtraInfo();
+
+        mBridge.notifyPackageChanged(PKG2);
+        mBridge.loadExtraInfo();
+
+        assertThat(mBridge.mLoadAllCount).isEqualTo(1);
+        assertThat(mBridge.mUpdatedPackages).containsExactly(PKG2);
+    }
+
+    @Test
+    public void loadExtraInfo_uidChanged_shouldOnlyUpdateThatUid() {
+        mBridge.loadExtraInfo();
+
+        mBridge.notifyUidChanged(10001);
+        mBridge.loadExtraInfo();
+
+        assertThat(mBridge.mLoadAllCount).isEqualTo(1);
+        assertThat(mBridge.mUpdatedPackages).containsExactly(PKG1);
+    }
+
+    @Test
+    public void loadExtraInfo_allChanged_shouldReloadAll() {
+        mBridge.loadExtraInfo();
+
+        mBridge.notifyAllChanged();
+        mBridge.loadExtraInfo();
+
+        assertThat(mBridge.mLoadAllCount).isEqualTo(2);
+    }
+
+    @Test
+    public void loadExtraInfo_extraInfoReplaced_shouldReloadAll() {
+        mBridge.loadExtraInfo();
+
+        mApps.get(0).extraInfo = new Object();
+        mBridge.loadExtraInfo();
+
+        assertThat(mBridge.mLoadAllCount).isEqualTo(2);
+    }
+
+    @Test
+    public void loadExtraInfo_newApp_shouldReloadAll() {
+        mBridge.loadExtraInfo();
+
+        mApps.add(getAppEntry("pkg3", 10003));
+        mBridge.loadExtraInfo();
+
+        assertThat(mBridge.mLoadAllCount).isEqualTo(2);
+    }
+
+    @Test
+    public void loadExtraInfo_notWatchingChanges_shouldReloadAll() {
+        ReflectionHelpers.setField(mBridge, "mWatchingChanges", false);
+
+        mBridge.loadExtraInfo();
+        mBridge.loadExtraInfo();
+
+        assertThat(mBridge.mLoadAllCount).isEqualTo(2);
+    }
+
+    private static AppEntry getAppEntry(String pkg, int uid) {
+        final AppEntry entry = mock(AppEntry.class);
+        entry.info = new ApplicationInfo();
+        entry.info.packageName = pkg;
+        entry.info.uid = uid;
+        return entry;
+    }
+
+    private class TestBridge extends AppStateBaseBridge {
+        private int mLoadAllCount;
+        private final List<String> mUpdatedPackages = new ArrayList<>();
+
+        TestBridge(ApplicationsState appState) {
+            super(appState, mock(Callback.class));
+        }
+
+        @Override
+        protected void loadAllExtraInfo() {
+            mLoadAllCount++;
+            for (AppEntry app : mApps) {
+                app.extraInfo = Boolean.TRUE;
+            }
+        }
+
+        @Override
+        protected void updateExtraInfo(AppEntry app, String pkg, int uid) {
+            mUpdatedPackages.add(pkg);
+            app.extraInfo = Boolean.TRUE;
+        }
+    }
+}
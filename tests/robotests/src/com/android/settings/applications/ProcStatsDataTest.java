@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import android.text.format.DateUtils;
+import android.util.LongSparseArray;
+
+import com.android.internal.app.procstats.ProcessStats;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.shadows.ShadowLooper;
+import org.robolectric.util.ReflectionHelpers;
+
+import java.util.concurrent.TimeUnit;
+
+@RunWith(RobolectricTestRunner.class)
+public class ProcStatsDataTest {
+    private static final long DURATION = 3 * DateUtils.HOUR_IN_MILLIS;
+    private static final long OTHER_DURATION = 6 * DateUtils.HOUR_IN_MILLIS;
+
+    private ProcStatsData mProcStatsData;
+
+    @Before
+    public void setUp() {
+        mProcStatsData = spy(new ProcStatsData(RuntimeEnvironment.application,
+                false /* useXfer */));
+        doAnswer(invocation -> new ProcessStats(false)).when(mProcStatsData)
+                .fetchStats(anyLong());
+        doNothing().when(mProcStatsData).buildEntries();
+    }
+
+    @After
+    public void tearDown() {
+        ProcStatsData.clearCache();
+    }
+
+    @Test
+    public void setDuration_freshStats_shouldReuseStats() {
+        mProcStatsData.setDuration(DURATION);
+        mProcStatsData.setDuration(OTHER_DURATION);
+
+        mProcStatsData.setDuration(DURATION);
+
+        verify(mProcStatsData).fetchStats(DURATION);
+    }
+
+    @Test
+    public void setDuration_staleStats_shouldFetchAgain() {
+        mProcStatsData.setDuration(DURATION);
+        mProcStatsData.setDuration(OTHER_DURATION);
+        ShadowLooper.idleMainLooper(ProcStatsData.MAX_CACHED_STATS_AGE_MS, TimeUnit.MILLISECONDS);
+
+        mProcStatsData.setDuration(DURATION);
+
+        verify(mProcStatsData, times(2)).fetchStats(DURATION);
+    }
+
+    @Test
+    public void setDuration_staleStats_shouldBeEvicted() {
+        mProcStatsData.setDuration(DURATION);
+        ShadowLooper.idleMainLooper(ProcStatsData.MAX_CACHED_STATS_AGE_MS, TimeUnit.MILLISECONDS);
+
+        mProcStatsData.setDuration(OTHER_DURATION);
+
+        final LongSparseArray<?> cache =
+                ReflectionHelpers.getStaticField(ProcStatsData.class, "sStatsCache");
+        assertThat(cache.size()).isEqualTo(1);
+        assertThat(cache.get(DURATION)).isNull();
+    }
+}
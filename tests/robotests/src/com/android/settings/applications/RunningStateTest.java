@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications;
+
+import static android.app.ActivityManager.RunningAppProcessInfo.IMPORTANCE_CACHED;
+import static android.app.ActivityManager.RunningAppProcessInfo.IMPORTANCE_SERVICE;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+
+import android.app.ActivityManager;
+import android.app.IActivityManager;
+import android.content.ComponentName;
+import android.content.Context;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class RunningStateTest {
+    private static final int UID = 10001;
+    private static final String PROCESS_NAME = "com.android.test";
+    private static final ComponentName SERVICE =
+            new ComponentName(PROCESS_NAME, PROCESS_NAME + ".TestService");
+
+    @Mock
+    private ActivityManager mActivityManager;
+    @Mock
+    private IActivityManager mActivityManagerService;
+
+    private Context mContext;
+    private RunningState mState;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        mContext = RuntimeEnvironment.application;
+        mState = spy(RunningState.getInstance(mContext));
+        doReturn(mActivityManagerService).when(mState).getActivityManagerService();
+    }
+
+    @After
+    public void tearDown() {
+        RunningState.sInstance = null;
+    }
+
+    @Test
+    public void update_unchangedSample_keepSequence() {
+        updateSamples(createService(), createProcess(1 /* pid */, IMPORTANCE_SERVICE));
+        final int sequence = mState.mSequence;
+        setRunning(createService(), createProcess(1 /* pid */, IMPORTANCE_SERVICE));
+
+        mState.update(mContext, mActivityManager);
+
+        assertThat(mState.mSequence).isEqualTo(sequence);
+    }
+
+    @Test
+    public void update_unchangedSample_refreshRunningService() {
+        mState.updateSamples(Collections.singletonList(createService()), 1,
+                Collections.emptyList(), 0);
+        final RunningState.ProcessItem proc =
+                new RunningState.ProcessItem(mContext, UID, PROCESS_NAME);
+        final RunningState.ServiceItem serviceItem = new RunningState.ServiceItem(0 /* userId */);
+        serviceItem.mRunningService = createService();
+        proc.mServices.put(SERVICE, serviceItem);
+        final HashMap<String, RunningState.ProcessItem> procs = new HashMap<>();
+        procs.put(PROCESS_NAME, proc);
+        mState.mServiceProcessesByName.put(UID, procs);
+        final ActivityManager.RunningServiceInfo latest = createService();
+        setRunning(latest);
+
+        mState.update(mContext, mActivityManager);
+
+        assertThat(serviceItem.mRunningService).isSameAs(latest);
+    }
+
+    @Test
+    public void updateSamples_sameSample_returnUnchanged() {
+        assertThat(updateSamples(createService(),
+                createProcess(1 /* pid */, IMPORTANCE_SERVICE))).isTrue();
+
+        assertThat(updateSamples(createService(),
+                createProcess(1 /* pid */, IMPORTANCE_SERVICE))).isFalse();
+    }
+
+    @Test
+    public void updateSamples_importanceChanged_returnChanged() {
+        updateSamples(createProcess(1 /* pid */, IMPORTANCE_SERVICE));
+
+        assertThat(updateSamples(createProcess(1 /* pid */, IMPORTANCE_CACHED))).isTrue();
+    }
+
+    @Test
+    public void updateSamples_processAdded_returnChanged() {
+        updateSamples(createProcess(1 /* pid */, IMPORTANCE_SERVICE));
+
+        assertThat(updateSamples(createProcess(1 /* pid */, IMPORTANCE_SERVICE),
+                createProcess(2 /* pid */, IMPORTANCE_SERVICE))).isTrue();
+    }
+
+    @Test
+    public void updateSamples_processRemoved_returnChanged() {
+        updateSamples(createProcess(1 /* pid */, IMPORTANCE_SERVICE),
+                createProcess(2 /* pid */, IMPORTANCE_SERVICE));
+
+        assertThat(updateSamples(createProcess(1 /* pid */, IMPORTANCE_SERVICE))).isTrue();
+    }
+
+    @Test
+    public void updateSamples_serviceChanged_returnChanged() {
+        updateSamples(createService());
+        final ActivityManager.RunningServiceInfo service = createService();
+        service.foreground = true;
+
+        assertThat(updateSamples(service)).isTrue();
+    }
+
+    @Test
+    public void updateSamples_serviceRemoved_returnChanged() {
+        updateSamples(createService());
+
+        assertThat(mState.updateSamples(Collections.emptyList(), 0,
+                Collections.emptyList(), 0)).isTrue();
+    }
+
+    @Test
+    public void updateSamples_pooledSampleReused_holdNewProcess() {
+        updateSamples(createProcess(1 /* pid */, IMPORTANCE_SERVICE));
+        // Pid 1 is gone, its sample goes back to the pool.
+        updateSamples();
+        final ActivityManager.RunningAppProcessInfo process =
+                createProcess(2 /* pid */, IMPORTANCE_CACHED);
+        process.processName = "com.android.other";
+
+        assertThat(updateSamples(process)).isTrue();
+
+        final RunningState.ProcessSample sample = mState.mProcessSamples.get(2);
+        assertThat(mState.mProcessSamples.size()).isEqualTo(1);
+        assertThat(sample.mProcessName).isEqualTo("com.android.other");
+        assertThat(sample.mImportance).isEqualTo(IMPORTANCE_CACHED);
+        assertThat(updateSamples(process)).isFalse();
+    }
+
+    private boolean updateSamples(ActivityManager.RunningAppProcessInfo... processes) {
+        return mState.updateSamples(Collections.emptyList(), 0, Arrays.asList(processes),
+                processes.length);
+    }
+
+    private boolean updateSamples(ActivityManager.RunningServiceInfo service,
+            ActivityManager.RunningAppProcessInfo... processes) {
+        return mState.updateSamples(Collections.singletonList(service), 1,
+                Arrays.asList(processes), processes.length);
+    }
+
+    private void setRunning(ActivityManager.RunningServiceInfo service,
+            ActivityManager.RunningAppProcessInfo... processes) {
+        final List<ActivityManager.RunningServiceInfo> services = new ArrayList<>();
+        services.add(service);
+        when(mActivityManager.getRunningServices(anyInt())).thenReturn(services);
+        when(mActivityManager.getRunningAppProcesses())
+                .thenReturn(new ArrayList<>(Arrays.asList(processes)));
+    }
+
+    private static ActivityManager.RunningServiceInfo createService() {
+        final ActivityManager.RunningServiceInfo service = new ActivityManager.RunningServiceInfo();
+        service.service = SERVICE;
+        service.uid = UID;
+        service.pid = 1;
+        service.process = PROCESS_NAME;
+        service.started = true;
+        service.activeSince = 1000L;
+        return service;
+    }
+
+    private static ActivityManager.RunningAppProcessInfo createProcess(int pid, int importance) {
+        final ActivityManager.RunningAppProcessInfo process =
+                new ActivityManager.RunningAppProcessInfo(PROCESS_NAME, pid, null /* pkgList */);
+        process.uid = UID;
+        process.importance = importance;
+        return process;
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications.manageapplications;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.Mockito.mock;
+
+import com.android.settingslib.applications.ApplicationsState.AppEntry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class AppSearchIndexTest {
+
+    private AppSearchIndex mIndex;
+
+    @Before
+    public void setUp() {
+        mIndex = new AppSearchIndex();
+    }
+
+    @Test
+    public void query_accentedLabel_shouldMatchUnaccentedQuery() {
+        final List<AppEntry> entries = getTestAppList("Café", "Crème", "Fig");
+        mIndex.update(entries);
+
+        final List<AppEntry> matches = mIndex.query("cafe");
+
+        assertThat(matches).containsExactly(entries.get(0));
+    }
+
+    @Test
+    public void query_extendedQuery_shouldNarrowPreviousResults() {
+        final List<AppEntry> entries = getTestAppList("Apricot", "Banana", "Mango");
+        mIndex.update(entries);
+
+        assertThat(mIndex.query("an")).containsExactly(entries.get(1), entries.get(2)).inOrder();
+        assertThat(mIndex.query("ang")).containsExactly(entries.get(2));
+        assertThat(mIndex.query("a")).hasSize(3);
+    }
+
+    @Test
+    public void query_labelChanged_shouldMatchNewLabel() {
+        final List<AppEntry> entries = getTestAppList("Apricot", "Banana");
+        mIndex.update(entries);
+        assertThat(mIndex.query("kiwi")).isEmpty();
+
+        entries.get(0).label = "Kiwi";
+        mIndex.update(new ArrayList<>(entries));
+
+        assertThat(mIndex.query("kiwi")).containsExactly(entries.get(0));
+    }
+
+    @Test
+    public void query_nullLabel_shouldNotMatch() {
+        final List<AppEntry> entries = getTestAppList(null, "Banana");
+        mIndex.update(entries);
+
+        assertThat(mIndex.query("b")).containsExactly(entries.get(1));
+    }
+
+    private static List<AppEntry> getTestAppList(String... labels) {
+        final List<AppEntry> entries = new ArrayList<>();
+        for (String label : labels) {
+            final AppEntry entry = mock(AppEntry.class);
+            entry.label = label;
+            entries.add(entry);
+        }
+        return entries;
+    }
+}
@@ -34,6 +34,7 @@ import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -57,12 +58,14 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.android.settings.R;
 import com.android.settings.testutils.shadow.ShadowAppUtils;
+import com.android.settings.testutils.shadow.ShadowThreadUtils;
 import com.android.settings.testutils.shadow.ShadowUserManager;
 import com.android.settings.widget.LoadingViewController;
 import com.android.settingslib.applications.ApplicationsState;
 import com.android.settingslib.applications.ApplicationsState.AppEntry;
 import com.android.settingslib.applications.ApplicationsState.AppFilter;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -72,9 +75,11 @@ import org.robolectric.RobolectricTestRunner;
 import org.robolectric.RuntimeEnvironment;
 import org.robolectric.annotation.Config;
 import org.robolectric.fakes.RoboMenuItem;
+import org.robolectric.shadows.ShadowLooper;
 import org.robolectric.util.ReflectionHelpers;
 
 import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
 
 @RunWith(RobolectricTestRunner.class)
 @Config(shadows = {ShadowUserManager.class, ShadowAppUtils.class})
@@ -124,6 +129,11 @@ public class ManageApplicationsTest {
         when(mActivity.getLayoutInflater()).thenReturn(LayoutInflater.from(mContext));
     }
 
+    @After
+    public void tearDown() {
+        ShadowThreadUtils.reset();
+    }
+
     @Test
     public void updateMenu_mainListType_showAppReset() {
         setUpOptionMenus();
@@ -482,6 +492,106 @@ public class ManageApplicationsTest {
         assertThat(mFragment.mSortOrder).isEqualTo(mSortFrequent.getItemId());
     }
 
+    @Test
+    public void applicationsAdapter_resortEntries_shouldSortStably() {
+        final ArrayList<AppEntry> entries = getTestAppList(
+                new String[]{"Mango", "Apricot", "Fig", "Banana", "Apricot"});
+        final AppEntry secondApricot = entries.get(4);
+
+        final ArrayList<AppEntry> sorted = ManageApplications.ApplicationsAdapter.resortEntries(
+                entries, (a, b) -> a.label.compareTo(b.label));
+
+        assertThat(sorted).hasSize(5);
+        assertThat(sorted.get(0)).isSameAs(entries.get(1));
+        assertThat(sorted.get(1)).isSameAs(secondApricot);
+        assertThat(sorted.get(2).label).isEqualTo("Banana");
+        assertThat(sorted.get(3).label).isEqualTo("Fig");
+        assertThat(sorted.get(4).label).isEqualTo("Mango");
+    }
+
+    @Test
+    public void applicationsAdapter_rebuild_shouldRebuildRightAway() {
+        final ManageApplications.ApplicationsAdapter adapter = createLoadedAdapter();
+
+        adapter.rebuild();
+
+        verify(mSession).rebuild(any(), any(), anyBoolean());
+    }
+
+    @Test
+    public void applicationsAdapter_callbacksInBurst_shouldRebuildOnce() {
+        final ManageApplications.ApplicationsAdapter adapter = createLoadedAdapter();
+
+        adapter.onPackageListChanged();
+        adapter.onLauncherInfoChanged();
+        adapter.scheduleRebuild(true /* sizesOnly */);
+        verify(mSession, never()).rebuild(any(), any(), anyBoolean());
+
+        ShadowLooper.idleMainLooper(ManageApplications.ApplicationsAdapter.REBUILD_DELAY_MS,
+                TimeUnit.MILLISECONDS);
+
+        verify(mSession, times(1)).rebuild(any(), any(), anyBoolean());
+    }
+
+    @Test
+    public void applicationsAdapter_sizesOnlyRebuild_shouldResortWithoutSessionRebuild() {
+        final ManageApplications.ApplicationsAdapter adapter = createLoadedAdapter();
+        adapter.rebuild();
+        adapter.onRebuildComplete(getTestAppList(new String[]{"Mango", "Apricot", "Fig"}));
+
+        adapter.scheduleRebuild(true /* sizesOnly */);
+        ShadowLooper.idleMainLooper(ManageApplications.ApplicationsAdapter.REBUILD_DELAY_MS,
+                TimeUnit.MILLISECONDS);
+
+        verify(mSession, times(1)).rebuild(any(), any(), anyBoolean());
+        assertThat(adapter.getAppEntry(0).label).isEqualTo("Apricot");
+        assertThat(adapter.getAppEntry(1).label).isEqualTo("Fig");
+        assertThat(adapter.getAppEntry(2).label).isEqualTo("Mango");
+    }
+
+    @Test
+    public void applicationsAdapter_sizesOnlyRebuildDuringFullRebuild_shouldKeepFullRebuild() {
+        final ManageApplications.ApplicationsAdapter adapter = createLoadedAdapter();
+        ShadowThreadUtils.setDeferBackgroundTasks(true);
+        adapter.rebuild();
+
+        adapter.scheduleRebuild(true /* sizesOnly */);
+        ShadowLooper.idleMainLooper(ManageApplications.ApplicationsAdapter.REBUILD_DELAY_MS,
+                TimeUnit.MILLISECONDS);
+        ShadowThreadUtils.runBackgroundTasks();
+
+        verify(mSession, times(1)).rebuild(any(), any(), anyBoolean());
+    }
+
+    @Test
+    public void applicationsAdapter_sizesOnlyRebuildDuringFullRebuild_shouldResortAfterIt() {
+        final ManageApplications.ApplicationsAdapter adapter = createLoadedAdapter();
+        adapter.rebuild();
+        adapter.scheduleRebuild(true /* sizesOnly */);
+        ShadowLooper.idleMainLooper(ManageApplications.ApplicationsAdapter.REBUILD_DELAY_MS,
+                TimeUnit.MILLISECONDS);
+
+        adapter.onRebuildComplete(getTestAppList(new String[]{"Mango", "Apricot"}));
+        assertThat(adapter.getAppEntry(0).label).isEqualTo("Mango");
+        ShadowLooper.idleMainLooper(ManageApplications.ApplicationsAdapter.REBUILD_DELAY_MS,
+                TimeUnit.MILLISECONDS);
+
+        verify(mSession, times(1)).rebuild(any(), any(), anyBoolean());
+        assertThat(adapter.getAppEntry(0).label).isEqualTo("Apricot");
+    }
+
+    @Test
+    public void applicationsAdapter_newerFullRebuild_shouldDropOlderOne() {
+        final ManageApplications.ApplicationsAdapter adapter = createLoadedAdapter();
+        ShadowThreadUtils.setDeferBackgroundTasks(true);
+
+        adapter.rebuild();
+        adapter.rebuild();
+        ShadowThreadUtils.runBackgroundTasks();
+
+        verify(mSession, times(1)).rebuild(any(), any(), anyBoolean());
+    }
+
     @Test
     public void updateFilterView_hasFilterSet_shouldShowFilterAndHavePaddingTop() {
         mFragment.mRecyclerView = new RecyclerView(mContext);
@@ -636,6 +746,22 @@ public class ManageApplicationsTest {
         });
     }
 
+    private ManageApplications.ApplicationsAdapter createLoadedAdapter() {
+        final View listContainer = mock(View.class);
+        when(listContainer.getVisibility()).thenReturn(View.VISIBLE);
+        ReflectionHelpers.setField(mFragment, "mListContainer", listContainer);
+        ReflectionHelpers.setField(mFragment, "mRecyclerView", mock(RecyclerView.class));
+        ReflectionHelpers.setField(mFragment, "mEmptyView", mock(View.class));
+        ReflectionHelpers.setField(
+                mFragment, "mFilterAdapter", mock(ManageApplications.FilterSpinnerAdapter.class));
+        when(mSession.getAllApps()).thenReturn(new ArrayList<>());
+        final ManageApplications.ApplicationsAdapter adapter =
+                new ManageApplications.ApplicationsAdapter(mState, mFragment,
+                        AppFilterRegistry.getInstance().get(FILTER_APPS_ALL), new Bundle());
+        ReflectionHelpers.setField(adapter, "mHasReceivedLoadEntries", true);
+        return adapter;
+    }
+
     private ArrayList<AppEntry> getTestAppList(String[] appNames) {
         final ArrayList<AppEntry> appList = new ArrayList<>();
         for (String name : appNames) {
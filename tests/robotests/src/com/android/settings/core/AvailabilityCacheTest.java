@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import static com.android.settings.core.BasePreferenceController.AVAILABLE;
+import static com.android.settings.core.BasePreferenceController.UNSUPPORTED_ON_DEVICE;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+import android.os.UserManager;
+import android.provider.Settings;
+
+import com.android.internal.telephony.TelephonyIntents;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+@RunWith(RobolectricTestRunner.class)
+public class AvailabilityCacheTest {
+    private static final String GLOBAL_SETTING = "test_global_setting";
+
+    private Context mContext;
+    private AvailabilityCache mCache;
+    private CacheableController mController;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mCache = new AvailabilityCache(mContext);
+        mController = new CacheableController(mContext, 0 /* triggers */);
+    }
+
+    @Test
+    public void getInstance_sameApplication_returnSameCache() {
+        assertThat(AvailabilityCache.getInstance(mContext))
+                .isSameAs(AvailabilityCache.getInstance(mContext));
+    }
+
+    @Test
+    public void getAvailabilityStatus_cached_returnCachedStatusAndRevalidateOnce() {
+        mController.mStatus = AVAILABLE;
+        assertThat(mCache.getAvailabilityStatus(mController)).isEqualTo(AVAILABLE);
+
+        mController.mStatus = UNSUPPORTED_ON_DEVICE;
+
+        // The cached status is served, and revalidated for the next call.
+        assertThat(mCache.getAvailabilityStatus(mController)).isEqualTo(AVAILABLE);
+        assertThat(mCache.getAvailabilityStatus(mController)).isEqualTo(UNSUPPORTED_ON_DEVICE);
+        assertThat(mController.mComputeCount).isEqualTo(2);
+    }
+
+    @Test
+    public void getAvailabilityStatus_globalSettingChanged_recomputeStatus() {
+        mController.mStatus = AVAILABLE;
+        mCache.getAvailabilityStatus(mController);
+
+        mController.mStatus = UNSUPPORTED_ON_DEVICE;
+        mContext.getContentResolver().notifyChange(Settings.Global.getUriFor(GLOBAL_SETTING),
+                null /* observer */);
+
+        assertThat(mCache.getAvailabilityStatus(mController)).isEqualTo(UNSUPPORTED_ON_DEVICE);
+    }
+
+    @Test
+    public void getAvailabilityStatus_packageChanged_recomputeStatus() {
+        mController = new CacheableController(mContext, AvailabilityCache.TRIGGER_PACKAGE_CHANGED);
+        mController.mStatus = AVAILABLE;
+        mCache.getAvailabilityStatus(mController);
+
+        mController.mStatus = UNSUPPORTED_ON_DEVICE;
+        mContext.sendBroadcast(new Intent(Intent.ACTION_PACKAGE_ADDED,
+                Uri.fromParts("package", "com.android.test", null /* fragment */)));
+
+        assertThat(mCache.getAvailabilityStatus(mController)).isEqualTo(UNSUPPORTED_ON_DEVICE);
+    }
+
+    @Test
+    public void getAvailabilityStatus_userRestrictionsChanged_recomputeStatus() {
+        mController = new CacheableController(mContext, AvailabilityCache.TRIGGER_USER_CHANGED);
+        mController.mStatus = AVAILABLE;
+        mCache.getAvailabilityStatus(mController);
+
+        mController.mStatus = UNSUPPORTED_ON_DEVICE;
+        mContext.sendBroadcast(new Intent(UserManager.ACTION_USER_RESTRICTIONS_CHANGED));
+
+        assertThat(mCache.getAvailabilityStatus(mController)).isEqualTo(UNSUPPORTED_ON_DEVICE);
+    }
+
+    @Test
+    public void getAvailabilityStatus_simChanged_recomputeStatus() {
+        mController = new CacheableController(mContext, AvailabilityCache.TRIGGER_SIM_CHANGED);
+        mController.mStatus = AVAILABLE;
+        mCache.getAvailabilityStatus(mController);
+
+        mController.mStatus = UNSUPPORTED_ON_DEVICE;
+        mContext.sendBroadcast(new Intent(TelephonyIntents.ACTION_SIM_STATE_CHANGED));
+
+        assertThat(mCache.getAvailabilityStatus(mController)).isEqualTo(UNSUPPORTED_ON_DEVICE);
+    }
+
+    @Test
+    public void invalidate_otherTrigger_keepCachedStatus() {
+        mController = new CacheableController(mContext, AvailabilityCache.TRIGGER_SIM_CHANGED);
+        mController.mStatus = AVAILABLE;
+        mCache.getAvailabilityStatus(mController);
+
+        mCache.invalidate(AvailabilityCache.TRIGGER_PACKAGE_CHANGED);
+
+        assertThat(mController.mComputeCount).isEqualTo(1);
+        mCache.getAvailabilityStatus(mController);
+        // Only the background revalidation computed the status again.
+        assertThat(mController.mComputeCount).isEqualTo(2);
+    }
+
+    @Test
+    public void getAvailabilityStatus_cleared_recomputeStatus() {
+        mController.mStatus = AVAILABLE;
+        mCache.getAvailabilityStatus(mController);
+
+        mController.mStatus = UNSUPPORTED_ON_DEVICE;
+        mCache.clear();
+
+        assertThat(mCache.getAvailabilityStatus(mController)).isEqualTo(UNSUPPORTED_ON_DEVICE);
+    }
+
+    private static class CacheableController extends BasePreferenceController
+            implements BasePreferenceController.AvailabilityCacheable {
+        private final int mTriggers;
+        private int mStatus;
+        private int mComputeCount;
+
+        CacheableController(Context context, int triggers) {
+            super(context, "test_key");
+            mTriggers = triggers;
+        }
+
+        @Override
+        public int getAvailabilityStatus() {
+            mComputeCount++;
+            return mStatus;
+        }
+
+        @Override
+        public int getAvailabilityTriggers() {
+            return mTriggers;
+        }
+
+        @Override
+        public String[] getAvailabilityGlobalSettings() {
+            return new String[]{GLOBAL_SETTING};
+        }
+    }
+}
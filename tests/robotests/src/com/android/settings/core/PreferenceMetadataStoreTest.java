@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_ICON;
+import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_KEY;
+import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_SEARCHABLE;
+import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_TITLE;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+import android.os.Bundle;
+
+import com.android.settings.R;
+import com.android.settings.core.PreferenceXmlParserUtils.MetadataFlag;
+import com.android.settings.testutils.shadow.ShadowThreadUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class PreferenceMetadataStoreTest {
+
+    private static final String ENVIRONMENT = "environment";
+    private static final int FLAGS = MetadataFlag.FLAG_NEED_KEY
+            | MetadataFlag.FLAG_NEED_PREF_TITLE
+            | MetadataFlag.FLAG_NEED_PREF_ICON
+            | MetadataFlag.FLAG_NEED_SEARCHABLE;
+
+    private Context mContext;
+    private File mDir;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mDir = new File(mContext.getCacheDir(), "metadata_store_test");
+        ShadowThreadUtils.setIsMainThread(false);
+    }
+
+    @After
+    public void tearDown() {
+        ShadowThreadUtils.reset();
+    }
+
+    @Test
+    public void encodeDecode_sameMetadata() {
+        final Bundle bundle = new Bundle();
+        bundle.putString(METADATA_KEY, "key");
+        bundle.putString(METADATA_TITLE, null);
+        bundle.putInt(METADATA_ICON, 42);
+        bundle.putBoolean(METADATA_SEARCHABLE, false);
+        final List<Bundle> metadata = new ArrayList<>();
+        metadata.add(bundle);
+
+        final List<Bundle> decoded = PreferenceMetadataStore.decode(
+                ByteBuffer.wrap(PreferenceMetadataStore.encode(metadata, ENVIRONMENT)),
+                ENVIRONMENT);
+
+        assertThat(decoded).hasSize(1);
+        assertThat(decoded.get(0).getString(METADATA_KEY)).isEqualTo("key");
+        assertThat(decoded.get(0).containsKey(METADATA_TITLE)).isTrue();
+        assertThat(decoded.get(0).getString(METADATA_TITLE)).isNull();
+        assertThat(decoded.get(0).getInt(METADATA_ICON)).isEqualTo(42);
+        assertThat(decoded.get(0).getBoolean(METADATA_SEARCHABLE, true)).isFalse();
+    }
+
+    @Test
+    public void getMetadata_sameAsParsedMetadata() throws Exception {
+        final List<Bundle> expected = PreferenceXmlParserUtils.extractMetadata(mContext,
+                R.xml.display_settings, FLAGS);
+
+        final List<Bundle> fromParser = new PreferenceMetadataStore(mDir).getMetadata(mContext,
+                R.xml.display_settings, FLAGS);
+        // A fresh store reads the metadata written by the previous one.
+        final List<Bundle> fromFile = new PreferenceMetadataStore(mDir).getMetadata(mContext,
+                R.xml.display_settings, FLAGS);
+
+        assertThat(fromParser).hasSize(expected.size());
+        assertThat(fromFile).hasSize(expected.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertThat(fromFile.get(i).getString(METADATA_KEY))
+                    .isEqualTo(expected.get(i).getString(METADATA_KEY));
+            assertThat(fromFile.get(i).getString(METADATA_TITLE))
+                    .isEqualTo(expected.get(i).getString(METADATA_TITLE));
+            assertThat(fromFile.get(i).getInt(METADATA_ICON))
+                    .isEqualTo(expected.get(i).getInt(METADATA_ICON));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decode_otherEnvironment_shouldThrow() {
+        final List<Bundle> metadata = new ArrayList<>();
+        metadata.add(new Bundle());
+
+        PreferenceMetadataStore.decode(
+                ByteBuffer.wrap(PreferenceMetadataStore.encode(metadata, ENVIRONMENT)),
+                ENVIRONMENT + "_other");
+    }
+
+    @Test
+    public void getMetadata_modified_shouldNotChangeStoredMetadata() throws Exception {
+        final PreferenceMetadataStore store = new PreferenceMetadataStore(mDir);
+        final List<Bundle> metadata = store.getMetadata(mContext, R.xml.display_settings, FLAGS);
+        final String key = metadata.get(0).getString(METADATA_KEY);
+
+        metadata.get(0).putString(METADATA_KEY, "modified");
+        metadata.clear();
+
+        final List<Bundle> storedMetadata =
+                store.getMetadata(mContext, R.xml.display_settings, FLAGS);
+        assertThat(storedMetadata).isNotEmpty();
+        assertThat(storedMetadata.get(0).getString(METADATA_KEY)).isEqualTo(key);
+    }
+
+    @Test
+    public void getMetadata_mainThread_shouldNotReadFile() throws Exception {
+        final PreferenceMetadataStore store = new PreferenceMetadataStore(mDir);
+        writeMetadataFile(store, R.xml.display_settings, "stored_key");
+
+        final List<Bundle> fromFile = new PreferenceMetadataStore(mDir).getMetadata(mContext,
+                R.xml.display_settings, FLAGS);
+        ShadowThreadUtils.setIsMainThread(true);
+        final List<Bundle> fromParser = new PreferenceMetadataStore(mDir).getMetadata(mContext,
+                R.xml.display_settings, FLAGS);
+
+        assertThat(fromParser.get(0).getString(METADATA_KEY)).isNotEqualTo("stored_key");
+        assertThat(fromFile.get(0).getString(METADATA_KEY)).isEqualTo("stored_key");
+    }
+
+    @Test
+    public void preload_shouldServeStoredMetadataOnMainThread() throws Exception {
+        final PreferenceMetadataStore store = new PreferenceMetadataStore(mDir);
+        writeMetadataFile(store, R.xml.display_settings, "stored_key");
+
+        store.preload(mContext, FLAGS);
+        ShadowThreadUtils.setIsMainThread(true);
+
+        assertThat(store.getMetadata(mContext, R.xml.display_settings, FLAGS).get(0)
+                .getString(METADATA_KEY)).isEqualTo("stored_key");
+    }
+
+    private void writeMetadataFile(PreferenceMetadataStore store, int xmlResId, String key)
+            throws Exception {
+        final Bundle bundle = new Bundle();
+        bundle.putString(METADATA_KEY, key);
+        final List<Bundle> metadata = new ArrayList<>();
+        metadata.add(bundle);
+        final String environment = store.getEnvironment(mContext);
+        final File file = store.getMetadataFile(environment, xmlResId, FLAGS);
+        file.getParentFile().mkdirs();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(PreferenceMetadataStore.encode(metadata, environment));
+        }
+    }
+}
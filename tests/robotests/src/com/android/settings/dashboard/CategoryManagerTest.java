@@ -42,6 +42,7 @@ import org.robolectric.RobolectricTestRunner;
 import org.robolectric.RuntimeEnvironment;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @RunWith(RobolectricTestRunner.class)
@@ -313,6 +314,34 @@ public class CategoryManagerTest {
         assertThat(category.getTilesCount()).isEqualTo(1);
     }
 
+    @Test
+    public void getCategories_shouldReuseCategoriesUntilReload() {
+        final CategoryManager categoryManager = new CategoryManager(mContext);
+        final List<DashboardCategory> categories = categoryManager.getCategories(mContext);
+
+        assertThat(categoryManager.getCategories(mContext)).isSameAs(categories);
+
+        categoryManager.reloadAllCategories(mContext);
+
+        assertThat(categoryManager.getCategories(mContext)).isNotSameAs(categories);
+    }
+
+    @Test
+    public void invalidatePackage_shouldOnlyDropTilesOfPackage() {
+        final CategoryManager categoryManager = new CategoryManager(mContext);
+        categoryManager.mTileByComponentCache.put(new Pair<>("pkg1", "class1"),
+                createActivityTile(CATEGORY_HOMEPAGE, "pkg1", "class1", 100));
+        categoryManager.mTileByComponentCache.put(new Pair<>("pkg1", "class2"),
+                createActivityTile(CATEGORY_HOMEPAGE, "pkg1", "class2", 100));
+        categoryManager.mTileByComponentCache.put(new Pair<>("pkg2", "class1"),
+                createActivityTile(CATEGORY_HOMEPAGE, "pkg2", "class1", 100));
+
+        categoryManager.invalidatePackage("pkg1");
+
+        assertThat(categoryManager.mTileByComponentCache.keySet())
+                .containsExactly(new Pair<>("pkg2", "class1"));
+    }
+
     private Tile createActivityTile(String categoryKey, String packageName, String className,
             int order) {
         final ActivityInfo activityInfo = new ActivityInfo();
@@ -57,6 +57,19 @@ public class ControllerFutureTaskTest {
         assertThat(futureTask.getController().getPreferenceKey()).isEqualTo(KEY);
     }
 
+    @Test
+    public void compareTo_lowerPriorityValue_ordersFirst() {
+        final ControllerFutureTask top = new ControllerFutureTask(
+                new ControllerTask(mTestController, mScreen, null /* metricsFeature */,
+                        METRICS_CATEGORY_UNKNOWN), null /* result */, 0 /* priority */);
+        final ControllerFutureTask bottom = new ControllerFutureTask(
+                new ControllerTask(mTestController, mScreen, null /* metricsFeature */,
+                        METRICS_CATEGORY_UNKNOWN), null /* result */, 10 /* priority */);
+
+        assertThat(top.compareTo(bottom)).isLessThan(0);
+        assertThat(bottom.compareTo(top)).isGreaterThan(0);
+    }
+
 
     static class TestPreferenceController extends BasePreferenceController {
         TestPreferenceController(Context context, String preferenceKey) {
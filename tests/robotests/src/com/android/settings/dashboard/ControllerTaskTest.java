@@ -17,6 +17,8 @@ package com.android.settings.dashboard;
 
 import static com.android.settingslib.core.instrumentation.Instrumentable.METRICS_CATEGORY_UNKNOWN;
 
+import static com.google.common.truth.Truth.assertThat;
+
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
@@ -94,6 +96,88 @@ public class ControllerTaskTest {
         verify(mTestController).updateState(any(Preference.class));
     }
 
+    @Test
+    public void doRun_deferred_updateStateOnlyWhenApplied() {
+        mTestController.setKey(KEY);
+        final Preference preference = new Preference(mContext);
+        preference.setKey(KEY);
+        mScreen.addPreference(preference);
+        final ControllerTask task = new ControllerTask(mTestController, mScreen,
+                null /* metricsFeature */, METRICS_CATEGORY_UNKNOWN, true /* deferred */);
+
+        task.run();
+        verify(mTestController, never()).updateState(any(Preference.class));
+
+        assertThat(task.applyPendingUpdate()).isTrue();
+        verify(mTestController).updateState(preference);
+        assertThat(task.applyPendingUpdate()).isFalse();
+    }
+
+    @Test
+    public void doRun_deferredAndPostedBeforeRun_updateStateWhenRunIsOver() {
+        mTestController.setKey(KEY);
+        final Preference preference = new Preference(mContext);
+        preference.setKey(KEY);
+        mScreen.addPreference(preference);
+        final ControllerTask task = new ControllerTask(mTestController, mScreen,
+                null /* metricsFeature */, METRICS_CATEGORY_UNKNOWN, true /* deferred */);
+
+        task.postPendingUpdate();
+        verify(mTestController, never()).updateState(any(Preference.class));
+
+        task.run();
+        verify(mTestController).updateState(preference);
+        assertThat(task.applyPendingUpdate()).isFalse();
+    }
+
+    @Test
+    public void doRun_deferredAndPostedAfterRun_updateStateRightAway() {
+        mTestController.setKey(KEY);
+        final Preference preference = new Preference(mContext);
+        preference.setKey(KEY);
+        mScreen.addPreference(preference);
+        final ControllerTask task = new ControllerTask(mTestController, mScreen,
+                null /* metricsFeature */, METRICS_CATEGORY_UNKNOWN, true /* deferred */);
+        task.run();
+
+        task.postPendingUpdate();
+
+        verify(mTestController).updateState(preference);
+    }
+
+    @Test
+    public void doRun_deferredAndCancelledBeforeRun_noRunUpdateState() {
+        mTestController.setKey(KEY);
+        final Preference preference = new Preference(mContext);
+        preference.setKey(KEY);
+        mScreen.addPreference(preference);
+        final ControllerTask task = new ControllerTask(mTestController, mScreen,
+                null /* metricsFeature */, METRICS_CATEGORY_UNKNOWN, true /* deferred */);
+        task.postPendingUpdate();
+
+        task.cancel();
+        task.run();
+
+        verify(mTestController, never()).updateState(any(Preference.class));
+        assertThat(task.applyPendingUpdate()).isFalse();
+    }
+
+    @Test
+    public void doRun_deferredAndCancelledAfterRun_noRunUpdateState() {
+        mTestController.setKey(KEY);
+        final Preference preference = new Preference(mContext);
+        preference.setKey(KEY);
+        mScreen.addPreference(preference);
+        final ControllerTask task = new ControllerTask(mTestController, mScreen,
+                null /* metricsFeature */, METRICS_CATEGORY_UNKNOWN, true /* deferred */);
+        task.run();
+
+        task.cancel();
+        task.postPendingUpdate();
+
+        verify(mTestController, never()).updateState(any(Preference.class));
+    }
+
     static class TestPreferenceController extends AbstractPreferenceController {
         private boolean mAvailable;
         private String mKey;
@@ -83,6 +83,7 @@ import org.robolectric.RuntimeEnvironment;
 import org.robolectric.Shadows;
 import org.robolectric.annotation.Config;
 import org.robolectric.shadows.ShadowActivity;
+import org.robolectric.shadows.ShadowLooper;
 import org.robolectric.util.ReflectionHelpers;
 
 import java.util.ArrayList;
@@ -367,6 +368,30 @@ public class DashboardFeatureProviderImplTest {
         assertThat(preference.isChecked()).isTrue();
     }
 
+    @Test
+    @Config(shadows = {ShadowTileUtils.class})
+    public void bindPreference_onCheckedChangedFailure_shouldEnableAndRevertSwitch() {
+        final SwitchPreference preference = new SwitchPreference(RuntimeEnvironment.application);
+        final Tile tile = new ProviderTile(mProviderInfo, CategoryKey.CATEGORY_HOMEPAGE,
+                mSwitchMetaData);
+        ShadowTileUtils.setPutBooleanException(new IllegalStateException());
+        mImpl.bindPreferenceToTileAndGetObservers(mActivity, mForceRoundedIcon,
+                MetricsEvent.VIEW_UNKNOWN, preference, tile, null /*key */,
+                Preference.DEFAULT_ORDER);
+
+        ShadowLooper.pauseMainLooper();
+        // As done by a click once the listener accepted the change.
+        if (preference.callChangeListener(true)) {
+            preference.setChecked(true);
+        }
+        assertThat(preference.isEnabled()).isFalse();
+
+        ShadowLooper.unPauseMainLooper();
+
+        assertThat(preference.isEnabled()).isTrue();
+        assertThat(preference.isChecked()).isFalse();
+    }
+
     @Test
     @Config(shadows = {ShadowTileUtils.class})
     public void bindPreference_callbackOnChanged_shouldLoadFromContentProvider() {
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.dashboard;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.IContentProvider;
+import android.net.Uri;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(RobolectricTestRunner.class)
+public class TileDataFetcherTest {
+    private static final Uri URI_1 = Uri.parse("content://authority1/tile_summary");
+    private static final Uri URI_2 = Uri.parse("content://authority2/tile_summary");
+
+    private TileDataFetcher mFetcher;
+    private List<String> mResults;
+
+    @Before
+    public void setUp() {
+        mFetcher = new TileDataFetcher();
+        mResults = Collections.synchronizedList(new ArrayList<>());
+    }
+
+    @Test
+    public void fetch_severalAuthorities_shouldDeliverAllResultsInOneBatch() throws Exception {
+        final CountDownLatch delivered = new CountDownLatch(2);
+        ShadowLooper.pauseMainLooper();
+        mFetcher.fetch(URI_1, providerMap -> "summary1", result -> {
+            mResults.add(result);
+            delivered.countDown();
+        });
+        mFetcher.fetch(URI_2, providerMap -> "summary2", result -> {
+            mResults.add(result);
+            delivered.countDown();
+        });
+        assertThat(mResults).isEmpty();
+
+        ShadowLooper.unPauseMainLooper();
+
+        assertThat(delivered.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(mResults).containsExactly("summary1", "summary2");
+    }
+
+    @Test
+    public void fetch_shouldShareProviderMapAcrossBatches() {
+        final List<Map<String, IContentProvider>> providerMaps = new ArrayList<>();
+
+        mFetcher.fetch(URI_1, providerMap -> providerMaps.add(providerMap), result -> {});
+        mFetcher.fetch(URI_1, providerMap -> providerMaps.add(providerMap), result -> {});
+
+        assertThat(providerMaps).hasSize(2);
+        assertThat(providerMaps.get(0)).isSameAs(providerMaps.get(1));
+    }
+
+    @Test
+    public void fetch_queryThrows_shouldDropResult() {
+        mFetcher.fetch(URI_1, providerMap -> {
+            throw new IllegalStateException();
+        }, mResults::add);
+
+        assertThat(mResults).isEmpty();
+    }
+
+    @Test
+    public void fetch_queryThrows_shouldRunFailureCallback() {
+        mFetcher.fetch(URI_1, providerMap -> {
+            throw new IllegalStateException();
+        }, mResults::add, () -> mResults.add("failure"));
+        mFetcher.fetch(URI_2, providerMap -> "summary2", mResults::add,
+                () -> mResults.add("failure"));
+
+        assertThat(mResults).containsExactly("failure", "summary2");
+    }
+
+    @Test
+    public void fetch_slowAuthority_shouldNotDelayOtherAuthorities() throws Exception {
+        final CountDownLatch slowReleased = new CountDownLatch(1);
+        final CountDownLatch fastDelivered = new CountDownLatch(1);
+        final CountDownLatch slowDelivered = new CountDownLatch(1);
+        ShadowLooper.pauseMainLooper();
+        mFetcher.fetch(URI_1, providerMap -> {
+            await(slowReleased);
+            return "slow";
+        }, result -> {
+            mResults.add(result);
+            slowDelivered.countDown();
+        });
+        mFetcher.fetch(URI_2, providerMap -> "fast", result -> {
+            mResults.add(result);
+            fastDelivered.countDown();
+        });
+
+        ShadowLooper.unPauseMainLooper();
+        // Run the deadline of the batch, the slow authority is still being queried.
+        ShadowLooper.idleMainLooper(TileDataFetcher.AUTHORITY_DEADLINE_MS, TimeUnit.MILLISECONDS);
+
+        assertThat(fastDelivered.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(mResults).containsExactly("fast");
+        slowReleased.countDown();
+        assertThat(slowDelivered.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(mResults).containsExactly("fast", "slow").inOrder();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.datausage;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.content.Intent;
+import android.net.NetworkPolicyManager;
+import android.net.Uri;
+import android.net.NetworkTemplate;
+import android.text.format.DateUtils;
+
+import com.android.settingslib.AppItem;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class AppsDataUsageLoaderTest {
+    private static final int UID = 10001;
+
+    @Mock
+    private NetworkPolicyManager mPolicyManager;
+    @Mock
+    private NetworkTemplate mTemplate;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        when(mPolicyManager.getUidsWithPolicy(anyInt())).thenReturn(new int[0]);
+    }
+
+    @After
+    public void tearDown() {
+        AppsDataUsageLoader.clearCache();
+    }
+
+    @Test
+    public void loadInBackground_closedCycle_shouldQueryOnce() {
+        final long end = System.currentTimeMillis() - 2 * DateUtils.DAY_IN_MILLIS;
+        final AppsDataUsageLoader first = createLoader(end);
+        first.loadInBackground();
+        final AppsDataUsageLoader second = createLoader(end);
+
+        final List<AppItem> items = second.loadInBackground();
+
+        verify(second, never()).queryUsage();
+        assertThat(items).hasSize(1);
+        assertThat(items.get(0).total).isEqualTo(100);
+    }
+
+    @Test
+    public void loadInBackground_profilesChanged_shouldQueryAgain() {
+        final long end = System.currentTimeMillis() - 2 * DateUtils.DAY_IN_MILLIS;
+        createLoader(end).loadInBackground();
+        final AppsDataUsageLoader second = createLoader(end);
+        doReturn(new int[] {0, 10}).when(second).getProfileIds();
+
+        second.loadInBackground();
+
+        verify(second).queryUsage();
+    }
+
+    @Test
+    public void loadInBackground_openCycle_shouldQueryAgain() {
+        final long end = System.currentTimeMillis() + DateUtils.DAY_IN_MILLIS;
+        createLoader(end).loadInBackground();
+        final AppsDataUsageLoader second = createLoader(end);
+
+        second.loadInBackground();
+
+        verify(second).queryUsage();
+    }
+
+    @Test
+    public void loadInBackground_restrictedUid_shouldNotModifyCachedItems() {
+        final long end = System.currentTimeMillis() - 2 * DateUtils.DAY_IN_MILLIS;
+        when(mPolicyManager.getUidsWithPolicy(anyInt())).thenReturn(new int[] {UID});
+        assertThat(createLoader(end).loadInBackground().get(0).restricted).isTrue();
+        when(mPolicyManager.getUidsWithPolicy(anyInt())).thenReturn(new int[0]);
+
+        assertThat(createLoader(end).loadInBackground().get(0).restricted).isFalse();
+    }
+
+    @Test
+    public void loadInBackground_appUninstalled_shouldQueryAgain() {
+        final long end = System.currentTimeMillis() - 2 * DateUtils.DAY_IN_MILLIS;
+        createLoader(end).loadInBackground();
+        final AppsDataUsageLoader second = createLoader(end);
+
+        RuntimeEnvironment.application.sendBroadcast(createPackageRemovedIntent(UID));
+        second.loadInBackground();
+
+        verify(second).queryUsage();
+    }
+
+    @Test
+    public void loadInBackground_appUpdated_shouldQueryOnce() {
+        final long end = System.currentTimeMillis() - 2 * DateUtils.DAY_IN_MILLIS;
+        createLoader(end).loadInBackground();
+        final AppsDataUsageLoader second = createLoader(end);
+        final Intent intent = createPackageRemovedIntent(UID);
+        intent.putExtra(Intent.EXTRA_REPLACING, true);
+
+        RuntimeEnvironment.application.sendBroadcast(intent);
+        second.loadInBackground();
+
+        verify(second, never()).queryUsage();
+    }
+
+    @Test
+    public void onUidRemoved_otherUid_shouldKeepCachedCycle() {
+        final long end = System.currentTimeMillis() - 2 * DateUtils.DAY_IN_MILLIS;
+        createLoader(end).loadInBackground();
+        final AppsDataUsageLoader second = createLoader(end);
+
+        AppsDataUsageLoader.onUidRemoved(UID + 1);
+        second.loadInBackground();
+
+        verify(second, never()).queryUsage();
+    }
+
+    private static Intent createPackageRemovedIntent(int uid) {
+        final Intent intent = new Intent(Intent.ACTION_PACKAGE_REMOVED,
+                Uri.fromParts("package", "com.android.test", null /* fragment */));
+        intent.putExtra(Intent.EXTRA_UID, uid);
+        return intent;
+    }
+
+    private AppsDataUsageLoader createLoader(long end) {
+        final AppsDataUsageLoader loader = spy(new AppsDataUsageLoader(
+                RuntimeEnvironment.application, mPolicyManager, mTemplate, 0L, end));
+        final AppItem item = new AppItem(UID);
+        item.addUid(UID);
+        item.total = 100;
+        final List<AppItem> items = new ArrayList<>();
+        items.add(item);
+        doReturn(items).when(loader).queryUsage();
+        return loader;
+    }
+}
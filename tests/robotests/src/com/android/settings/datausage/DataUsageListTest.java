@@ -39,6 +39,8 @@ import android.widget.Spinner;
 
 import androidx.fragment.app.FragmentActivity;
 import androidx.loader.app.LoaderManager;
+import androidx.preference.Preference;
+import androidx.preference.PreferenceGroup;
 import androidx.preference.PreferenceManager;
 
 import com.android.settings.R;
@@ -50,6 +52,7 @@ import com.android.settingslib.AppItem;
 import com.android.settingslib.NetworkPolicyEditor;
 import com.android.settingslib.core.instrumentation.VisibilityLoggerMixin;
 import com.android.settingslib.net.NetworkCycleChartData;
+import com.android.settingslib.net.UidDetailProvider;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -228,6 +231,35 @@ public class DataUsageListTest {
         verify(mLoaderManager).destroyLoader(DataUsageList.LOADER_SUMMARY);
     }
 
+    @Test
+    public void bindStats_shouldReuseAndReorderExistingPreferences() {
+        final PreferenceGroup apps =
+                new PreferenceManager(mActivity).createPreferenceScreen(mActivity);
+        ReflectionHelpers.setField(mDataUsageList, "mApps", apps);
+        ReflectionHelpers.setField(mDataUsageList, "mUidDetailProvider",
+                mock(UidDetailProvider.class));
+        mDataUsageList.bindStats(createItems(1001, 100, 1002, 50));
+        final Preference first = apps.getPreference(0);
+
+        mDataUsageList.bindStats(createItems(1003, 300, 1001, 200));
+
+        assertThat(apps.getPreferenceCount()).isEqualTo(2);
+        assertThat(apps.getPreference(1)).isSameAs(first);
+        assertThat(((AppDataUsagePreference) first).getItem().total).isEqualTo(200);
+        assertThat(((AppDataUsagePreference) apps.getPreference(0)).getItem().key)
+                .isEqualTo(1003);
+    }
+
+    private static List<AppItem> createItems(int... keysAndTotals) {
+        final List<AppItem> items = new ArrayList<>();
+        for (int i = 0; i < keysAndTotals.length; i += 2) {
+            final AppItem item = new AppItem(keysAndTotals[i]);
+            item.total = keysAndTotals[i + 1];
+            items.add(item);
+        }
+        return items;
+    }
+
     private View getHeader() {
         final View rootView = LayoutInflater.from(mActivity)
                 .inflate(R.layout.preference_list_fragment, null, false);
@@ -18,6 +18,7 @@ package com.android.settings.deviceinfo;
 
 import static com.google.common.truth.Truth.assertThat;
 
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
 import static org.mockito.Mockito.mock;
@@ -33,8 +34,8 @@ import android.view.View;
 
 import androidx.recyclerview.widget.RecyclerView;
 
-import com.android.settings.deviceinfo.storage.CachedStorageValuesHelper;
 import com.android.settings.deviceinfo.storage.StorageAsyncLoader;
+import com.android.settings.deviceinfo.storage.StorageCache;
 import com.android.settingslib.deviceinfo.PrivateStorageInfo;
 import com.android.settingslib.drawer.CategoryKey;
 
@@ -50,6 +51,8 @@ import java.util.List;
 @RunWith(RobolectricTestRunner.class)
 public class StorageDashboardFragmentTest {
 
+    private static final int[] USER_IDS = {0};
+
     private StorageDashboardFragment mFragment;
 
     @Before
@@ -74,43 +77,43 @@ public class StorageDashboardFragmentTest {
 
     @Test
     public void test_cacheProviderProvidesValuesIfBothCached() {
-        CachedStorageValuesHelper helper = mock(CachedStorageValuesHelper.class);
+        StorageCache cache = mock(StorageCache.class);
         PrivateStorageInfo info = new PrivateStorageInfo(0, 0);
-        when(helper.getCachedPrivateStorageInfo()).thenReturn(info);
+        when(cache.getPrivateStorageInfo()).thenReturn(info);
         SparseArray<StorageAsyncLoader.AppsStorageResult> result = new SparseArray<>();
-        when(helper.getCachedAppsStorageResult()).thenReturn(result);
+        when(cache.getAppsStorageResult(any())).thenReturn(result);
 
-        mFragment.setCachedStorageValuesHelper(helper);
-        mFragment.initializeCachedValues();
+        mFragment.setStorageCache(cache);
+        mFragment.initializeCachedValues(USER_IDS);
 
         assertThat(mFragment.getPrivateStorageInfo()).isEqualTo(info);
         assertThat(mFragment.getAppsStorageResult()).isEqualTo(result);
     }
 
     @Test
-    public void test_cacheProviderDoesntProvideValuesIfAppsMissing() {
-        CachedStorageValuesHelper helper = mock(CachedStorageValuesHelper.class);
+    public void test_cacheProviderProvidesVolumeInfoIfAppsMissing() {
+        StorageCache cache = mock(StorageCache.class);
         PrivateStorageInfo info = new PrivateStorageInfo(0, 0);
-        when(helper.getCachedPrivateStorageInfo()).thenReturn(info);
+        when(cache.getPrivateStorageInfo()).thenReturn(info);
 
-        mFragment.setCachedStorageValuesHelper(helper);
-        mFragment.initializeCachedValues();
+        mFragment.setStorageCache(cache);
+        mFragment.initializeCachedValues(USER_IDS);
 
-        assertThat(mFragment.getPrivateStorageInfo()).isNull();
+        assertThat(mFragment.getPrivateStorageInfo()).isEqualTo(info);
         assertThat(mFragment.getAppsStorageResult()).isNull();
     }
 
     @Test
-    public void test_cacheProviderDoesntProvideValuesIfVolumeInfoMissing() {
-        CachedStorageValuesHelper helper = mock(CachedStorageValuesHelper.class);
+    public void test_cacheProviderProvidesAppsIfVolumeInfoMissing() {
+        StorageCache cache = mock(StorageCache.class);
         SparseArray<StorageAsyncLoader.AppsStorageResult> result = new SparseArray<>();
-        when(helper.getCachedAppsStorageResult()).thenReturn(result);
+        when(cache.getAppsStorageResult(any())).thenReturn(result);
 
-        mFragment.setCachedStorageValuesHelper(helper);
-        mFragment.initializeCachedValues();
+        mFragment.setStorageCache(cache);
+        mFragment.initializeCachedValues(USER_IDS);
 
         assertThat(mFragment.getPrivateStorageInfo()).isNull();
-        assertThat(mFragment.getAppsStorageResult()).isNull();
+        assertThat(mFragment.getAppsStorageResult()).isEqualTo(result);
     }
 
     @Test
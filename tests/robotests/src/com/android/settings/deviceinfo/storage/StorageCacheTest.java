@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.deviceinfo.storage;
+
+import static com.android.settings.deviceinfo.storage.StorageCache.LEGACY_SHARED_PREFERENCES_NAME;
+import static com.android.settings.deviceinfo.storage.StorageCache.SHARED_PREFERENCES_NAME;
+import static com.android.settings.deviceinfo.storage.StorageCache.VERSION;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.SparseArray;
+
+import com.android.settingslib.applications.StorageStatsSource;
+import com.android.settingslib.deviceinfo.PrivateStorageInfo;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.util.ReflectionHelpers;
+
+import java.util.concurrent.TimeUnit;
+
+@RunWith(RobolectricTestRunner.class)
+public class StorageCacheTest {
+    private static final String VOLUME_UUID = "uuid";
+    private static final long CURRENT_TIME = 10000L;
+    private static final long STALE_TIME = CURRENT_TIME - TimeUnit.MINUTES.toMillis(10);
+
+    private Context mContext;
+
+    @Mock
+    private StorageCache.Clock mMockClock;
+    private StorageCache mCache;
+    private SharedPreferences mSharedPreferences;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        mContext = RuntimeEnvironment.application;
+        mSharedPreferences = mContext.getSharedPreferences(SHARED_PREFERENCES_NAME, 0);
+        mCache = createCache(VOLUME_UUID);
+        when(mMockClock.getCurrentTime()).thenReturn(CURRENT_TIME);
+    }
+
+    @After
+    public void tearDown() {
+        // Drops the writes still pending so that they don't leak to other tests.
+        mCache.flush();
+        mSharedPreferences.edit().clear().commit();
+    }
+
+    @Test
+    public void getPrivateStorageInfo_cachedValuesAreLoaded() {
+        mSharedPreferences.edit()
+                .putString(VERSION + "/" + VOLUME_UUID + "/volume_sizes", "9999,1000,6000")
+                .commit();
+
+        final PrivateStorageInfo info = mCache.getPrivateStorageInfo();
+
+        assertThat(info.freeBytes).isEqualTo(1000L);
+        assertThat(info.totalBytes).isEqualTo(6000L);
+    }
+
+    @Test
+    public void getPrivateStorageInfo_otherVersion_returnsNull() {
+        mSharedPreferences.edit()
+                .putString((VERSION + 1) + "/" + VOLUME_UUID + "/volume_sizes", "9999,1000,6000")
+                .commit();
+
+        assertThat(mCache.getPrivateStorageInfo()).isNull();
+    }
+
+    @Test
+    public void getAppsStorageResult_cachedValuesAreLoaded() {
+        mSharedPreferences.edit()
+                .putString(VERSION + "/" + VOLUME_UUID + "/0/apps", "9999,1,10,100,1000,10000,5")
+                .putString(VERSION + "/" + VOLUME_UUID + "/0/external", "9999,2,22,222,2222,0")
+                .commit();
+
+        final SparseArray<StorageAsyncLoader.AppsStorageResult> result =
+                mCache.getAppsStorageResult(new int[] {0});
+
+        final StorageAsyncLoader.AppsStorageResult primary = result.get(0);
+        assertThat(primary.gamesSize).isEqualTo(1L);
+        assertThat(primary.musicAppsSize).isEqualTo(10L);
+        assertThat(primary.videoAppsSize).isEqualTo(100L);
+        assertThat(primary.photosAppsSize).isEqualTo(1000L);
+        assertThat(primary.otherAppsSize).isEqualTo(10000L);
+        assertThat(primary.cacheSize).isEqualTo(5L);
+        assertThat(primary.externalStats.totalBytes).isEqualTo(2L);
+        assertThat(primary.externalStats.audioBytes).isEqualTo(22L);
+        assertThat(primary.externalStats.videoBytes).isEqualTo(222L);
+        assertThat(primary.externalStats.imageBytes).isEqualTo(2222L);
+        assertThat(primary.externalStats.appBytes).isEqualTo(0L);
+    }
+
+    @Test
+    public void getAppsStorageResult_userMissing_returnsNull() {
+        mCache.putAppsStorageResult(createResult(0));
+
+        assertThat(mCache.getAppsStorageResult(new int[] {0})).isNotNull();
+        assertThat(mCache.getAppsStorageResult(new int[] {0, 10})).isNull();
+    }
+
+    @Test
+    public void categoriesExpireSeparately() {
+        when(mMockClock.getCurrentTime()).thenReturn(STALE_TIME);
+        mCache.putPrivateStorageInfo(new PrivateStorageInfo(1000L, 6000L));
+        when(mMockClock.getCurrentTime()).thenReturn(CURRENT_TIME);
+        mCache.putAppsStorageResult(createResult(0));
+
+        assertThat(mCache.getPrivateStorageInfo()).isNull();
+        assertThat(mCache.getAppsStorageResult(new int[] {0})).isNotNull();
+    }
+
+    @Test
+    public void volumesAreCachedSeparately() {
+        mCache.putPrivateStorageInfo(new PrivateStorageInfo(1000L, 6000L));
+
+        assertThat(createCache(null /* volumeUuid */).getPrivateStorageInfo()).isNull();
+        assertThat(createCache(VOLUME_UUID).getPrivateStorageInfo().totalBytes)
+                .isEqualTo(6000L);
+    }
+
+    @Test
+    public void flush_writesAllPendingEntriesAtOnce() {
+        mCache.putPrivateStorageInfo(new PrivateStorageInfo(1000L, 6000L));
+        mCache.putAppsStorageResult(createResult(0));
+
+        mCache.flush();
+
+        assertThat(mSharedPreferences.getAll()).hasSize(3);
+        assertThat(mSharedPreferences.getString(VERSION + "/" + VOLUME_UUID + "/volume_sizes",
+                null)).isEqualTo(CURRENT_TIME + ",1000,6000");
+    }
+
+    @Test
+    public void constructor_shouldDeleteLegacyPreferencesOnce() {
+        ReflectionHelpers.setStaticField(StorageCache.class, "sLegacyPreferencesDeleted", false);
+        final Context context = spy(mContext);
+        doReturn(context).when(context).getApplicationContext();
+
+        new StorageCache(context, VOLUME_UUID);
+        new StorageCache(context, VOLUME_UUID);
+
+        verify(context, times(1)).deleteSharedPreferences(LEGACY_SHARED_PREFERENCES_NAME);
+    }
+
+    private StorageCache createCache(String volumeUuid) {
+        final StorageCache cache = new StorageCache(mContext, volumeUuid);
+        cache.mClock = mMockClock;
+        return cache;
+    }
+
+    private static SparseArray<StorageAsyncLoader.AppsStorageResult> createResult(int userId) {
+        final StorageAsyncLoader.AppsStorageResult result =
+                new StorageAsyncLoader.AppsStorageResult();
+        result.gamesSize = 1;
+        result.externalStats = new StorageStatsSource.ExternalStorageStats(2, 0, 0, 0, 0);
+        final SparseArray<StorageAsyncLoader.AppsStorageResult> results = new SparseArray<>();
+        results.put(userId, result);
+        return results;
+    }
+}
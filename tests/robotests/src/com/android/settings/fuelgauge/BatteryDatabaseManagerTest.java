@@ -113,6 +113,21 @@ public class BatteryDatabaseManagerTest {
         assertThat(appInfos1).containsExactly(mNewAppInfo);
     }
 
+    @Test
+    public void insertAnomalies_insertAllAndIgnoreDuplicates() {
+        final List<BatteryDatabaseManager.AnomalyRecord> anomalies = new ArrayList<>();
+        anomalies.add(new BatteryDatabaseManager.AnomalyRecord(UID_NEW, PACKAGE_NAME_NEW,
+                TYPE_NEW, AnomalyDatabaseHelper.State.NEW, NOW));
+        anomalies.add(new BatteryDatabaseManager.AnomalyRecord(UID_NEW, PACKAGE_NAME_NEW,
+                TYPE_NEW, AnomalyDatabaseHelper.State.NEW, NOW));
+        anomalies.add(new BatteryDatabaseManager.AnomalyRecord(UID_OLD, PACKAGE_NAME_OLD,
+                TYPE_OLD, AnomalyDatabaseHelper.State.NEW, NOW));
+
+        assertThat(mBatteryDatabaseManager.insertAnomalies(anomalies)).isEqualTo(2);
+        assertThat(mBatteryDatabaseManager.queryAllAnomalies(0 /* timeMsAfter */,
+                AnomalyDatabaseHelper.State.NEW)).containsExactly(mNewAppInfo, mOldAppInfo);
+    }
+
     @Test
     public void updateAnomalies_updateSuccessfully() {
         mBatteryDatabaseManager.insertAnomaly(UID_NEW, PACKAGE_NAME_NEW, TYPE_NEW,
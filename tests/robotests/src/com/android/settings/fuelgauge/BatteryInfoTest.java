@@ -246,6 +246,21 @@ public class BatteryInfoTest {
         assertThat(info.chargeLabel).isEqualTo("100%");
     }
 
+    @Test
+    public void testBindHistory_rebind_shouldReadHistoryOnce() {
+        BatteryInfo info = getBatteryInfo(false /* charging */, false /* enhanced */,
+                false /* estimate */);
+        mockBatteryStatsHistory();
+        UsageView view = mock(UsageView.class);
+        when(view.getContext()).thenReturn(mContext);
+
+        info.bindHistory(view);
+        info.bindHistory(view);
+
+        verify(mBatteryStats, times(1)).startIteratingHistoryLocked();
+        verify(view, times(2)).addPath(any(SparseIntArray.class));
+    }
+
     // Make our battery stats return a sequence of battery events.
     private void mockBatteryStatsHistory() {
         // Mock out new data every time start...Locked is called.
@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.settings.fuelgauge;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+
+import android.os.BatteryStats;
+import android.text.format.DateUtils;
+
+import com.android.internal.os.BatterySipper;
+import com.android.settings.testutils.FakeFeatureFactory;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class BatteryUsageTableTest {
+    private static final double PRECISION = 0.001;
+    private static final double SCREEN_POWER = 300;
+    private static final long SCREEN_TIME_MS = 100 * DateUtils.MINUTE_IN_MILLIS;
+
+    private BatteryUtils mBatteryUtils;
+    private List<BatterySipper> mSippers;
+
+    @Before
+    public void setUp() {
+        FakeFeatureFactory.setupForTest();
+        mBatteryUtils = spy(new BatteryUtils(RuntimeEnvironment.application));
+        doReturn(false).when(mBatteryUtils).isHiddenSystemModule(any());
+        doReturn(0L).when(mBatteryUtils)
+                .getScreenUsageTimeMs(any(BatteryStats.Uid.class), anyInt(), anyLong());
+        doReturn(0L).when(mBatteryUtils)
+                .getForegroundServiceTotalTimeUs(any(BatteryStats.Uid.class), anyLong());
+        mSippers = new ArrayList<>();
+    }
+
+    @Test
+    public void rankByPower_visibleRows_sortedByPowerAndStable() {
+        final BatterySipper app1 = addSipper(BatterySipper.DrainType.APP, 10001, 100, false);
+        final BatterySipper app2 = addSipper(BatterySipper.DrainType.APP, 10002, 300, false);
+        addSipper(BatterySipper.DrainType.WIFI, -1, 500, true);
+        final BatterySipper app3 = addSipper(BatterySipper.DrainType.APP, 10003, 100, false);
+
+        final BatteryUsageTable table = mBatteryUtils.buildUsageTable(mSippers);
+
+        assertThat(getRankedSippers(table, false /* includeHidden */))
+                .containsExactly(app2, app1, app3).inOrder();
+        assertThat(getRankedSippers(table, true /* includeHidden */)).hasSize(4);
+    }
+
+    @Test
+    public void findSipperByType_returnFirstMatchingRow() {
+        addSipper(BatterySipper.DrainType.APP, 10001, 100, false);
+        final BatterySipper screen = addSipper(BatterySipper.DrainType.SCREEN, -1, 10, true);
+        addSipper(BatterySipper.DrainType.APP, 10002, 300, false);
+
+        final BatteryUsageTable table = mBatteryUtils.buildUsageTable(mSippers);
+
+        assertThat(table.findSipperByType(BatterySipper.DrainType.SCREEN)).isSameAs(screen);
+        assertThat(table.findSipperByType(BatterySipper.DrainType.CELL)).isNull();
+    }
+
+    @Test
+    public void getHiddenPowerMah_sameAsRemoveHiddenBatterySippers() {
+        final BatterySipper app = addSipper(BatterySipper.DrainType.APP, 10001, 100, false);
+        addSipper(BatterySipper.DrainType.APP, 1000, 600, true);
+        addSipper(BatterySipper.DrainType.WIFI, -1, 200, true);
+        addSipper(BatterySipper.DrainType.SCREEN, -1, SCREEN_POWER, true);
+
+        final BatteryUsageTable table = mBatteryUtils.buildUsageTable(mSippers);
+
+        assertThat(table.getHiddenPowerMah()).isWithin(PRECISION).of(600);
+        assertThat(getRankedSippers(table, false /* includeHidden */)).containsExactly(app);
+    }
+
+    @Test
+    public void smearScreenPower_splitByScreenTime() {
+        final BatterySipper app1 = addSipper(BatterySipper.DrainType.APP, 10001, 100, false);
+        final BatterySipper app2 = addSipper(BatterySipper.DrainType.APP, 10002, 100, false);
+        addSipper(BatterySipper.DrainType.SCREEN, -1, SCREEN_POWER, true);
+        doReturn(SCREEN_TIME_MS).when(mBatteryUtils)
+                .getScreenUsageTimeMs(eq(app1.uidObj), anyInt(), anyLong());
+        doReturn(SCREEN_TIME_MS).when(mBatteryUtils)
+                .getScreenUsageTimeMs(eq(app2.uidObj), anyInt(), anyLong());
+
+        final BatteryUsageTable table = mBatteryUtils.buildUsageTable(mSippers);
+        table.smearScreenPower();
+
+        assertThat(table.getPowerMah(0)).isWithin(PRECISION).of(100 + SCREEN_POWER / 2);
+        assertThat(app2.totalPowerMah).isWithin(PRECISION).of(100 + SCREEN_POWER / 2);
+        assertThat(table.getForegroundTimeMs(0)).isEqualTo(SCREEN_TIME_MS);
+    }
+
+    private BatterySipper addSipper(BatterySipper.DrainType drainType, int uid, double powerMah,
+            boolean hidden) {
+        final BatterySipper sipper = mock(BatterySipper.class);
+        sipper.drainType = drainType;
+        sipper.totalPowerMah = powerMah;
+        doReturn(uid).when(sipper).getUid();
+        if (uid >= 0) {
+            final BatteryStats.Uid uidObj = mock(BatteryStats.Uid.class);
+            doReturn(uid).when(uidObj).getUid();
+            sipper.uidObj = uidObj;
+        }
+        doReturn(hidden).when(mBatteryUtils).isHiddenDrain(sipper);
+        mSippers.add(sipper);
+        return sipper;
+    }
+
+    private static List<BatterySipper> getRankedSippers(BatteryUsageTable table,
+            boolean includeHidden) {
+        final List<BatterySipper> sippers = new ArrayList<>();
+        final BatteryUsageTable.Ranking ranking = table.rankByPower(includeHidden);
+        while (ranking.hasNext()) {
+            sippers.add(table.getSipper(ranking.next()));
+        }
+        return sippers;
+    }
+}
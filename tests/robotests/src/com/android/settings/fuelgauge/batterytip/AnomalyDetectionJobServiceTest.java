@@ -25,15 +25,14 @@ import static com.google.common.truth.Truth.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.ArgumentMatchers.anyInt;
-import static org.mockito.ArgumentMatchers.anyLong;
-import static org.mockito.ArgumentMatchers.anyString;
-import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.robolectric.RuntimeEnvironment.application;
@@ -74,6 +73,7 @@ import org.robolectric.android.controller.ServiceController;
 import org.robolectric.annotation.Config;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
@@ -149,14 +149,13 @@ public class AnomalyDetectionJobServiceTest {
         doReturn(UID).when(mAnomalyDetectionJobService).extractUidFromStatsDimensionsValue(any());
         doReturn(true).when(mPowerWhitelistBackend).isWhitelisted(any(String[].class));
 
-        mAnomalyDetectionJobService.saveAnomalyToDatabase(mContext,
+        mAnomalyDetectionJobService.saveAnomaliesToDatabase(mContext,
                 mUserManager, mBatteryDatabaseManager, mBatteryUtils, mPolicy,
                 mPowerWhitelistBackend, mContext.getContentResolver(),
                 mFeatureFactory.powerUsageFeatureProvider,
-                mFeatureFactory.metricsFeatureProvider, mBundle);
+                mFeatureFactory.metricsFeatureProvider, Collections.singletonList(mBundle));
 
-        verify(mBatteryDatabaseManager, never()).insertAnomaly(anyInt(), anyString(), anyInt(),
-                anyInt(), anyLong());
+        verify(mBatteryDatabaseManager, never()).insertAnomalies(any());
     }
 
     @Test
@@ -170,14 +169,13 @@ public class AnomalyDetectionJobServiceTest {
                 mAnomalyDetectionJobService).extractUidFromStatsDimensionsValue(any());
         doReturn(true).when(mBatteryUtils).shouldHideAnomaly(any(), anyInt(), any());
 
-        mAnomalyDetectionJobService.saveAnomalyToDatabase(mContext,
+        mAnomalyDetectionJobService.saveAnomaliesToDatabase(mContext,
                 mUserManager, mBatteryDatabaseManager, mBatteryUtils, mPolicy,
                 mPowerWhitelistBackend, mContext.getContentResolver(),
                 mFeatureFactory.powerUsageFeatureProvider,
-                mFeatureFactory.metricsFeatureProvider, mBundle);
+                mFeatureFactory.metricsFeatureProvider, Collections.singletonList(mBundle));
 
-        verify(mBatteryDatabaseManager, never()).insertAnomaly(anyInt(), anyString(), anyInt(),
-                anyInt(), anyLong());
+        verify(mBatteryDatabaseManager, never()).insertAnomalies(any());
         verify(mFeatureFactory.metricsFeatureProvider).action(SettingsEnums.PAGE_UNKNOWN,
                 MetricsProto.MetricsEvent.ACTION_ANOMALY_IGNORED,
                 SettingsEnums.PAGE_UNKNOWN,
@@ -190,14 +188,13 @@ public class AnomalyDetectionJobServiceTest {
         doReturn(Process.SYSTEM_UID).when(
                 mAnomalyDetectionJobService).extractUidFromStatsDimensionsValue(any());
 
-        mAnomalyDetectionJobService.saveAnomalyToDatabase(mContext,
+        mAnomalyDetectionJobService.saveAnomaliesToDatabase(mContext,
                 mUserManager, mBatteryDatabaseManager, mBatteryUtils, mPolicy,
                 mPowerWhitelistBackend, mContext.getContentResolver(),
                 mFeatureFactory.powerUsageFeatureProvider, mFeatureFactory.metricsFeatureProvider,
-                mBundle);
+                Collections.singletonList(mBundle));
 
-        verify(mBatteryDatabaseManager, never()).insertAnomaly(anyInt(), anyString(), anyInt(),
-                anyInt(), anyLong());
+        verify(mBatteryDatabaseManager, never()).insertAnomalies(any());
     }
 
     @Test
@@ -205,14 +202,13 @@ public class AnomalyDetectionJobServiceTest {
         doReturn(AnomalyDetectionJobService.UID_NULL).when(
                 mAnomalyDetectionJobService).extractUidFromStatsDimensionsValue(any());
 
-        mAnomalyDetectionJobService.saveAnomalyToDatabase(mContext,
+        mAnomalyDetectionJobService.saveAnomaliesToDatabase(mContext,
                 mUserManager, mBatteryDatabaseManager, mBatteryUtils, mPolicy,
                 mPowerWhitelistBackend, mContext.getContentResolver(),
                 mFeatureFactory.powerUsageFeatureProvider, mFeatureFactory.metricsFeatureProvider,
-                mBundle);
+                Collections.singletonList(mBundle));
 
-        verify(mBatteryDatabaseManager, never()).insertAnomaly(anyInt(), anyString(), anyInt(),
-                anyInt(), anyLong());
+        verify(mBatteryDatabaseManager, never()).insertAnomalies(any());
     }
 
     @Test
@@ -225,14 +221,15 @@ public class AnomalyDetectionJobServiceTest {
         doReturn(Process.FIRST_APPLICATION_UID).when(
                 mAnomalyDetectionJobService).extractUidFromStatsDimensionsValue(any());
 
-        mAnomalyDetectionJobService.saveAnomalyToDatabase(mContext,
+        mAnomalyDetectionJobService.saveAnomaliesToDatabase(mContext,
                 mUserManager, mBatteryDatabaseManager, mBatteryUtils, mPolicy,
                 mPowerWhitelistBackend, mContext.getContentResolver(),
                 mFeatureFactory.powerUsageFeatureProvider, mFeatureFactory.metricsFeatureProvider,
-                mBundle);
+                Collections.singletonList(mBundle));
 
-        verify(mBatteryDatabaseManager).insertAnomaly(anyInt(), anyString(), eq(6),
-                eq(AnomalyDatabaseHelper.State.AUTO_HANDLED), anyLong());
+        verify(mBatteryDatabaseManager).insertAnomalies(
+                argThat(anomalies -> isSingleAnomaly(anomalies, ANOMALY_TYPE,
+                        AnomalyDatabaseHelper.State.AUTO_HANDLED)));
         verify(mFeatureFactory.metricsFeatureProvider).action(SettingsEnums.PAGE_UNKNOWN,
                 MetricsProto.MetricsEvent.ACTION_ANOMALY_TRIGGERED,
                 SettingsEnums.PAGE_UNKNOWN,
@@ -250,14 +247,15 @@ public class AnomalyDetectionJobServiceTest {
         doReturn(Process.FIRST_APPLICATION_UID).when(
                 mAnomalyDetectionJobService).extractUidFromStatsDimensionsValue(any());
 
-        mAnomalyDetectionJobService.saveAnomalyToDatabase(mContext,
+        mAnomalyDetectionJobService.saveAnomaliesToDatabase(mContext,
                 mUserManager, mBatteryDatabaseManager, mBatteryUtils, mPolicy,
                 mPowerWhitelistBackend, mContext.getContentResolver(),
                 mFeatureFactory.powerUsageFeatureProvider, mFeatureFactory.metricsFeatureProvider,
-                mBundle);
+                Collections.singletonList(mBundle));
 
-        verify(mBatteryDatabaseManager).insertAnomaly(anyInt(), anyString(), eq(6),
-                eq(AnomalyDatabaseHelper.State.NEW), anyLong());
+        verify(mBatteryDatabaseManager).insertAnomalies(
+                argThat(anomalies -> isSingleAnomaly(anomalies, ANOMALY_TYPE,
+                        AnomalyDatabaseHelper.State.NEW)));
         verify(mFeatureFactory.metricsFeatureProvider).action(SettingsEnums.PAGE_UNKNOWN,
                 MetricsProto.MetricsEvent.ACTION_ANOMALY_TRIGGERED,
                 SettingsEnums.PAGE_UNKNOWN,
@@ -265,6 +263,37 @@ public class AnomalyDetectionJobServiceTest {
                 ANOMALY_TYPE);
     }
 
+    @Test
+    public void saveAnomaliesToDatabase_multipleAnomalies_saveInOneBatch() {
+        final ArrayList<String> cookies = new ArrayList<>();
+        cookies.add(SUBSCRIBER_COOKIES_NOT_AUTO_RESTRICTION);
+        mBundle.putStringArrayList(StatsManager.EXTRA_STATS_BROADCAST_SUBSCRIBER_COOKIES, cookies);
+        final Bundle bundle = new Bundle(mBundle);
+        bundle.putLong(AnomalyDetectionReceiver.KEY_ANOMALY_TIMESTAMP, 1000L);
+        doReturn(SYSTEM_PACKAGE).when(mBatteryUtils).getPackageName(anyInt());
+        doReturn(Process.FIRST_APPLICATION_UID).when(
+                mAnomalyDetectionJobService).extractUidFromStatsDimensionsValue(any());
+        final List<Bundle> bundles = new ArrayList<>();
+        bundles.add(mBundle);
+        bundles.add(bundle);
+
+        mAnomalyDetectionJobService.saveAnomaliesToDatabase(mContext,
+                mUserManager, mBatteryDatabaseManager, mBatteryUtils, mPolicy,
+                mPowerWhitelistBackend, mContext.getContentResolver(),
+                mFeatureFactory.powerUsageFeatureProvider, mFeatureFactory.metricsFeatureProvider,
+                bundles);
+
+        verify(mBatteryDatabaseManager).insertAnomalies(
+                argThat(anomalies -> anomalies.size() == 2));
+        verify(mBatteryUtils).getPackageName(Process.FIRST_APPLICATION_UID);
+        verify(mFeatureFactory.metricsFeatureProvider, times(2)).action(
+                SettingsEnums.PAGE_UNKNOWN,
+                MetricsProto.MetricsEvent.ACTION_ANOMALY_TRIGGERED,
+                SettingsEnums.PAGE_UNKNOWN,
+                SYSTEM_PACKAGE + "/" + VERSION_CODE,
+                ANOMALY_TYPE);
+    }
+
     @Test
     public void extractUidFromStatsDimensionsValue_extractCorrectUid() {
         // Build an integer dimensions value.
@@ -323,4 +352,11 @@ public class AnomalyDetectionJobServiceTest {
 
         assertThat(mAnomalyDetectionJobService.mIsJobCanceled).isFalse();
     }
+
+    private static boolean isSingleAnomaly(List<BatteryDatabaseManager.AnomalyRecord> anomalies,
+            int anomalyType, int anomalyState) {
+        return anomalies.size() == 1
+                && anomalies.get(0).anomalyType == anomalyType
+                && anomalies.get(0).anomalyState == anomalyState;
+    }
 }
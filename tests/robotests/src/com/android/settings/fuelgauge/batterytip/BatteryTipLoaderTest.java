@@ -20,15 +20,18 @@ import static com.google.common.truth.Truth.assertThat;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
 
 import android.content.Context;
 import android.content.Intent;
+import android.os.BatteryStats;
 import android.os.PowerManager;
 
 import com.android.internal.os.BatteryStatsHelper;
 import com.android.settings.fuelgauge.BatteryInfo;
 import com.android.settings.fuelgauge.BatteryUtils;
+import com.android.settings.fuelgauge.batterytip.detectors.HighUsageDetector;
 import com.android.settings.fuelgauge.batterytip.tips.AppLabelPredicate;
 import com.android.settings.fuelgauge.batterytip.tips.AppRestrictionPredicate;
 import com.android.settings.fuelgauge.batterytip.tips.BatteryTip;
@@ -71,6 +74,7 @@ public class BatteryTipLoaderTest {
     @Before
     public void setUp() {
         MockitoAnnotations.initMocks(this);
+        ReflectionHelpers.setStaticField(HighUsageDetector.class, "sCachedKey", null);
 
         mContext = spy(RuntimeEnvironment.application);
         doReturn(mContext).when(mContext).getApplicationContext();
@@ -96,4 +100,22 @@ public class BatteryTipLoaderTest {
             assertThat(batteryTips.get(i).getType()).isEqualTo(TIP_ORDER[i]);
         }
     }
+
+    @Test
+    public void getStatsGeneration_differentStatsWindow_notEqual() {
+        final BatteryStats stats = mock(BatteryStats.class);
+        doReturn(1000L).when(stats).getStartClockTime();
+        doReturn(42).when(stats).getHistoryUsedSize();
+        doReturn(10).when(stats).getDischargeAmount(BatteryStats.STATS_SINCE_CHARGED);
+        final List<Long> statsGeneration = BatteryTipLoader.getStatsGeneration(stats);
+
+        assertThat(BatteryTipLoader.getStatsGeneration(stats)).isEqualTo(statsGeneration);
+        doReturn(43).when(stats).getHistoryUsedSize();
+        assertThat(BatteryTipLoader.getStatsGeneration(stats)).isNotEqualTo(statsGeneration);
+    }
+
+    @Test
+    public void getStatsGeneration_noStats_returnNull() {
+        assertThat(BatteryTipLoader.getStatsGeneration(null)).isNull();
+    }
 }
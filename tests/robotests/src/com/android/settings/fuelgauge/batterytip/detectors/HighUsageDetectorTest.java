@@ -22,7 +22,9 @@ import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import android.content.Context;
@@ -49,6 +51,7 @@ import org.robolectric.RuntimeEnvironment;
 import org.robolectric.util.ReflectionHelpers;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 @RunWith(RobolectricTestRunner.class)
@@ -57,6 +60,7 @@ public class HighUsageDetectorTest {
     private static final int UID_LOW = 345;
     private static final double POWER_HIGH = 20000;
     private static final double POWER_LOW = 10000;
+    private static final List<Long> STATS_GENERATION = Arrays.asList(1000L, 42L, 10L);
     private Context mContext;
     @Mock(answer = Answers.RETURNS_DEEP_STUBS)
     private BatteryStatsHelper mBatteryStatsHelper;
@@ -79,6 +83,7 @@ public class HighUsageDetectorTest {
     @Before
     public void setUp() {
         MockitoAnnotations.initMocks(this);
+        ReflectionHelpers.setStaticField(HighUsageDetector.class, "sCachedKey", null);
 
         mContext = RuntimeEnvironment.application;
         mPolicy = spy(new BatteryTipPolicy(mContext));
@@ -153,4 +158,38 @@ public class HighUsageDetectorTest {
         assertThat(appInfos).containsExactly(mLowAppInfo, mHighAppInfo);
         assertThat(appInfos.get(0)).isEqualTo(mHighAppInfo);
     }
+
+    @Test
+    public void testDetect_sameStatsGeneration_reuseHighUsageApps() {
+        doReturn(true).when(mDataParser).isDeviceHeavilyUsed();
+        final HighUsageDetector firstDetector = createDetector(STATS_GENERATION);
+        firstDetector.detect();
+
+        final HighUsageDetector secondDetector = createDetector(STATS_GENERATION);
+        final HighUsageTip highUsageTip = (HighUsageTip) secondDetector.detect();
+
+        verify(secondDetector, never()).parseBatteryData();
+        assertThat(highUsageTip.getHighUsageAppList()).containsExactly(mHighAppInfo,
+                mLowAppInfo).inOrder();
+    }
+
+    @Test
+    public void testDetect_newStatsGeneration_parseBatteryDataAgain() {
+        doReturn(true).when(mDataParser).isDeviceHeavilyUsed();
+        createDetector(STATS_GENERATION).detect();
+
+        final HighUsageDetector secondDetector = createDetector(Arrays.asList(1000L, 43L, 10L));
+        secondDetector.detect();
+
+        verify(secondDetector).parseBatteryData();
+    }
+
+    private HighUsageDetector createDetector(List<Long> statsGeneration) {
+        final HighUsageDetector detector = spy(new HighUsageDetector(mContext, mPolicy,
+                mBatteryStatsHelper, true /* mDischarging */, statsGeneration));
+        detector.mBatteryUtils = mBatteryUtils;
+        detector.mDataParser = mDataParser;
+        doNothing().when(detector).parseBatteryData();
+        return detector;
+    }
 }
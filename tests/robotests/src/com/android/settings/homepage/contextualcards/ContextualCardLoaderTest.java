@@ -25,13 +25,17 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 import android.app.settings.SettingsEnums;
 import android.content.Context;
 import android.net.Uri;
+import android.os.SystemClock;
 import android.provider.Settings;
 
 import com.android.settings.R;
@@ -60,6 +64,7 @@ public class ContextualCardLoaderTest {
         mContext = RuntimeEnvironment.application;
         mContextualCardLoader = spy(new ContextualCardLoader(mContext));
         mFakeFeatureFactory = FakeFeatureFactory.setupForTest();
+        ContextualCardLoader.clearEligibilityVerdicts();
     }
 
     @Test
@@ -151,6 +156,90 @@ public class ContextualCardLoaderTest {
         assertThat(mContextualCardLoader.getCardCount(mContext)).isEqualTo(configCount);
     }
 
+    @Test
+    public void getEligibilityCheckerTimeout_noConfiguredTimeout_returnDefaultTimeout() {
+        assertThat(ContextualCardLoader.getEligibilityCheckerTimeout(mContext))
+                .isEqualTo(ContextualCardLoader.ELIGIBILITY_CHECKER_TIMEOUT_MS);
+    }
+
+    @Test
+    public void getEligibilityCheckerTimeout_hasConfiguredTimeout_returnConfiguredTimeout() {
+        final long timeout = 300L;
+        Settings.Global.putLong(mContext.getContentResolver(),
+                ContextualCardLoader.KEY_ELIGIBILITY_CHECKER_TIMEOUT, timeout);
+
+        assertThat(ContextualCardLoader.getEligibilityCheckerTimeout(mContext))
+                .isEqualTo(timeout);
+    }
+
+    @Test
+    public void getEligibilityCheckerTimeout_configuredTimeoutTooLong_returnMaxTimeout() {
+        Settings.Global.putLong(mContext.getContentResolver(),
+                ContextualCardLoader.KEY_ELIGIBILITY_CHECKER_TIMEOUT,
+                ContextualCardManager.CARD_CONTENT_LOADER_TIMEOUT_MS);
+
+        assertThat(ContextualCardLoader.getEligibilityCheckerTimeout(mContext))
+                .isEqualTo(ContextualCardLoader.MAX_ELIGIBILITY_CHECKER_TIMEOUT_MS);
+        assertThat(ContextualCardLoader.MAX_ELIGIBILITY_CHECKER_TIMEOUT_MS)
+                .isLessThan(ContextualCardManager.CARD_CONTENT_LOADER_TIMEOUT_MS);
+    }
+
+    @Test
+    public void filterEligibleCards_verdictWithinTtl_shouldReuseVerdict() {
+        final List<ContextualCard> candidates = getContextualCardList().subList(0, 1);
+        final EligibleCardChecker checker = mockEligibleCardChecker(candidates.get(0));
+
+        mContextualCardLoader.filterEligibleCards(candidates);
+        final List<ContextualCard> result = mContextualCardLoader.filterEligibleCards(candidates);
+
+        verify(checker).call();
+        assertThat(result).hasSize(1);
+        assertThat(result.get(0).getSliceUri()).isEqualTo(candidates.get(0).getSliceUri());
+    }
+
+    @Test
+    public void filterEligibleCards_verdictExpired_shouldCheckAgain() {
+        final List<ContextualCard> candidates = getContextualCardList().subList(0, 1);
+        final EligibleCardChecker checker = mockEligibleCardChecker(candidates.get(0));
+
+        mContextualCardLoader.filterEligibleCards(candidates);
+        SystemClock.setCurrentTimeMillis(SystemClock.elapsedRealtime()
+                + ContextualCardLoader.ELIGIBILITY_VERDICT_TTL_MS + 1);
+        mContextualCardLoader.filterEligibleCards(candidates);
+
+        verify(checker, times(2)).call();
+    }
+
+    @Test
+    public void filterEligibleCards_refreshCardUri_shouldCheckAgain() {
+        final List<ContextualCard> candidates = getContextualCardList().subList(0, 1);
+        final EligibleCardChecker checker = mockEligibleCardChecker(candidates.get(0));
+
+        mContextualCardLoader.filterEligibleCards(candidates);
+        mContextualCardLoader.mNotifyUri = CardContentProvider.REFRESH_CARD_URI;
+        mContextualCardLoader.filterEligibleCards(candidates);
+
+        verify(checker, times(2)).call();
+    }
+
+    @Test
+    public void filterEligibleCards_ineligibleVerdictWithinTtl_shouldReuseVerdict() {
+        final List<ContextualCard> candidates = getContextualCardList().subList(0, 1);
+        final EligibleCardChecker checker = mockEligibleCardChecker(null /* eligibleCard */);
+
+        assertThat(mContextualCardLoader.filterEligibleCards(candidates)).isEmpty();
+        assertThat(mContextualCardLoader.filterEligibleCards(candidates)).isEmpty();
+
+        verify(checker).call();
+    }
+
+    private EligibleCardChecker mockEligibleCardChecker(ContextualCard eligibleCard) {
+        final EligibleCardChecker checker = mock(EligibleCardChecker.class);
+        when(checker.call()).thenReturn(eligibleCard);
+        doReturn(checker).when(mContextualCardLoader).getEligibleCardChecker(any());
+        return checker;
+    }
+
     private List<ContextualCard> getContextualCardList() {
         final List<ContextualCard> cards = new ArrayList<>();
         cards.add(new ContextualCard.Builder()
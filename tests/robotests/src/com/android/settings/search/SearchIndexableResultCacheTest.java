@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.search;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+import android.os.storage.VolumeInfo;
+
+import com.android.settingslib.search.SearchIndexableRaw;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.Arrays;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class SearchIndexableResultCacheTest {
+    private static final String CLASS_NAME = "com.android.settings.FakeFragment";
+
+    private Context mContext;
+    private SearchIndexableResultCache mCache;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mCache = new SearchIndexableResultCache();
+        mCache.register(mContext);
+    }
+
+    @Test
+    public void getRawData_cached_returnCachedRawData() {
+        final List<SearchIndexableRaw> rawData = createRawData();
+        mCache.putRawData(CLASS_NAME, rawData);
+
+        assertThat(mCache.getRawData(CLASS_NAME)).isEqualTo(rawData);
+    }
+
+    @Test
+    public void getRawData_packageChanged_returnNull() {
+        mCache.putRawData(CLASS_NAME, createRawData());
+
+        mContext.sendBroadcast(new Intent(Intent.ACTION_PACKAGE_ADDED,
+                Uri.parse("package:com.example")));
+
+        assertThat(mCache.getRawData(CLASS_NAME)).isNull();
+    }
+
+    @Test
+    public void getRawData_volumeStateChanged_returnNull() {
+        mCache.putRawData(CLASS_NAME, createRawData());
+
+        mContext.sendBroadcast(new Intent(VolumeInfo.ACTION_VOLUME_STATE_CHANGED));
+
+        assertThat(mCache.getRawData(CLASS_NAME)).isNull();
+    }
+
+    private List<SearchIndexableRaw> createRawData() {
+        final SearchIndexableRaw raw = new SearchIndexableRaw(mContext);
+        raw.key = "key";
+        return Arrays.asList(raw);
+    }
+}
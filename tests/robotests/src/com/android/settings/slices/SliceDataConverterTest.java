@@ -48,6 +48,8 @@ import org.robolectric.RuntimeEnvironment;
 import org.robolectric.annotation.Config;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 @RunWith(RobolectricTestRunner.class)
@@ -114,6 +116,47 @@ public class SliceDataConverterTest {
         }
     }
 
+    @Test
+    @Config(qualifiers = "mcc999")
+    public void getSliceData_manyProviders_shouldMatchSerialConversion() {
+        final Collection<SearchIndexableData> bundles =
+                mSearchFeatureProvider.getSearchIndexableResources().getProviderValues();
+        bundles.clear();
+        // Enough providers to be split across several tasks, each one named differently.
+        final Class[] targetClasses = {FakeIndexProvider.class, SliceDataConverter.class,
+                SliceData.class, SlicesIndexer.class, SliceBuilderUtils.class,
+                SlicesDatabaseHelper.class, SlicesDatabaseAccessor.class,
+                CustomSliceRegistry.class, FakePreferenceController.class,
+                SliceDataConverterTest.class};
+        for (Class targetClass : targetClasses) {
+            bundles.add(new SearchIndexableData(targetClass,
+                    FakeIndexProvider.SEARCH_INDEX_DATA_PROVIDER));
+        }
+        doReturn(Collections.emptyList()).when(mSliceDataConverter)
+                .getAccessibilityServiceInfoList();
+        final List<String> serialSliceData = new ArrayList<>();
+        for (SearchIndexableData bundle : bundles) {
+            for (SliceData sliceData : mSliceDataConverter.getSliceDataFromBundle(bundle)) {
+                serialSliceData.add(describe(sliceData));
+            }
+        }
+
+        final List<String> parallelSliceData = new ArrayList<>();
+        for (SliceData sliceData : mSliceDataConverter.getSliceData()) {
+            parallelSliceData.add(describe(sliceData));
+        }
+
+        assertThat(serialSliceData).hasSize(targetClasses.length);
+        assertThat(parallelSliceData).containsExactlyElementsIn(serialSliceData).inOrder();
+    }
+
+    private static String describe(SliceData sliceData) {
+        return sliceData.getFragmentClassName() + "|" + sliceData.getKey() + "|"
+                + sliceData.getTitle() + "|" + sliceData.getSummary() + "|"
+                + sliceData.getScreenTitle() + "|" + sliceData.getUri() + "|"
+                + sliceData.getPreferenceController() + "|" + sliceData.getSliceType();
+    }
+
     private void assertFakeSlice(SliceData fakeSlice) {
         assertThat(fakeSlice.getKey()).isEqualTo(FAKE_KEY);
         assertThat(fakeSlice.getTitle()).isEqualTo(FAKE_TITLE);
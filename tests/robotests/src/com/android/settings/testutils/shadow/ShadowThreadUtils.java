@@ -22,19 +22,30 @@ import org.robolectric.annotation.Implementation;
 import org.robolectric.annotation.Implements;
 import org.robolectric.annotation.Resetter;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Implements(ThreadUtils.class)
 public class ShadowThreadUtils {
 
     private static boolean sIsMainThread = true;
+    private static boolean sDeferBackgroundTasks;
+    private static final List<Runnable> sBackgroundTasks = new ArrayList<>();
     private static final String TAG = "ShadowThreadUtils";
 
     @Resetter
     public static void reset() {
         sIsMainThread = true;
+        sDeferBackgroundTasks = false;
+        sBackgroundTasks.clear();
     }
 
     @Implementation
     protected static void postOnBackgroundThread(Runnable runnable) {
+        if (sDeferBackgroundTasks) {
+            sBackgroundTasks.add(runnable);
+            return;
+        }
         runnable.run();
     }
 
@@ -51,4 +62,18 @@ public class ShadowThreadUtils {
     public static void setIsMainThread(boolean isMainThread) {
         sIsMainThread = isMainThread;
     }
+
+    /**
+     * Queues the background tasks until {@link #runBackgroundTasks()} is called, instead of running
+     * them right away.
+     */
+    public static void setDeferBackgroundTasks(boolean defer) {
+        sDeferBackgroundTasks = defer;
+    }
+
+    public static void runBackgroundTasks() {
+        while (!sBackgroundTasks.isEmpty()) {
+            sBackgroundTasks.remove(0).run();
+        }
+    }
 }
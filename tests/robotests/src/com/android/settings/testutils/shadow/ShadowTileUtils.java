@@ -28,6 +28,7 @@ import com.android.settingslib.drawer.TileUtils;
 import org.robolectric.RuntimeEnvironment;
 import org.robolectric.annotation.Implementation;
 import org.robolectric.annotation.Implements;
+import org.robolectric.annotation.Resetter;
 
 import java.util.Map;
 
@@ -38,6 +39,14 @@ public class ShadowTileUtils {
 
     private static boolean sChecked;
     private static Bundle sResult;
+    private static RuntimeException sPutBooleanException;
+
+    @Resetter
+    public static void reset() {
+        sChecked = false;
+        sResult = null;
+        sPutBooleanException = null;
+    }
 
     @Implementation
     protected static String getTextFromUri(Context context, Uri uri,
@@ -60,6 +69,9 @@ public class ShadowTileUtils {
     @Implementation
     public static Bundle putBooleanToUriAndGetResult(Context context, Uri uri,
             Map<String, IContentProvider> providerMap, String key, boolean value) {
+        if (sPutBooleanException != null) {
+            throw sPutBooleanException;
+        }
         sChecked = value;
         return sResult;
     }
@@ -75,4 +87,8 @@ public class ShadowTileUtils {
     public static void setResultBundle(Bundle result) {
         sResult = result;
     }
+
+    public static void setPutBooleanException(RuntimeException exception) {
+        sPutBooleanException = exception;
+    }
 }
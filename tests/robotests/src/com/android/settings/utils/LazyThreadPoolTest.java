@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.utils;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(RobolectricTestRunner.class)
+public class LazyThreadPoolTest {
+
+    @Test
+    public void get_calledTwice_returnSameExecutor() {
+        final LazyThreadPool pool = new LazyThreadPool("Test", 2 /* threads */, 10);
+
+        assertThat(pool.get()).isSameAs(pool.get());
+    }
+
+    @Test
+    public void get_shouldBeFixedSizeAndLetIdleThreadsExit() {
+        final ThreadPoolExecutor executor =
+                new LazyThreadPool("Test", 2 /* threads */, 10).get();
+
+        assertThat(executor.getCorePoolSize()).isEqualTo(2);
+        assertThat(executor.getMaximumPoolSize()).isEqualTo(2);
+        assertThat(executor.getKeepAliveTime(TimeUnit.SECONDS)).isEqualTo(10);
+        assertThat(executor.allowsCoreThreadTimeOut()).isTrue();
+    }
+
+    @Test
+    public void get_withWorkQueue_useWorkQueue() {
+        final PriorityBlockingQueue<Runnable> queue = new PriorityBlockingQueue<>();
+
+        assertThat(new LazyThreadPool("Test", 1 /* threads */, 10, queue).get().getQueue())
+                .isSameAs(queue);
+    }
+
+    @Test
+    public void get_shouldNameThreads() throws Exception {
+        final ThreadPoolExecutor executor =
+                new LazyThreadPool("Test", 1 /* threads */, 10).get();
+
+        final String name = executor.submit(() -> Thread.currentThread().getName()).get();
+
+        assertThat(name).isEqualTo("Test-1");
+    }
+}
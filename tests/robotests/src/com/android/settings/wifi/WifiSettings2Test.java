@@ -23,10 +23,12 @@ import static com.google.common.truth.Truth.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -48,6 +50,7 @@ import android.view.View;
 
 import androidx.fragment.app.FragmentActivity;
 import androidx.preference.Preference;
+import androidx.preference.PreferenceCategory;
 import androidx.preference.PreferenceManager;
 import androidx.preference.PreferenceScreen;
 import androidx.recyclerview.widget.RecyclerView;
@@ -63,6 +66,7 @@ import com.android.wifitrackerlib.WifiPickerTracker;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.robolectric.RobolectricTestRunner;
@@ -70,6 +74,8 @@ import org.robolectric.RuntimeEnvironment;
 import org.robolectric.annotation.Config;
 import org.robolectric.shadows.ShadowToast;
 
+import java.util.Arrays;
+
 @RunWith(RobolectricTestRunner.class)
 public class WifiSettings2Test {
 
@@ -273,6 +279,78 @@ public class WifiSettings2Test {
         verify(menu).add(anyInt(), eq(WifiSettings2.MENU_ID_DISCONNECT), anyInt(), anyInt());
     }
 
+    @Test
+    public void updateWifiEntryListPreferences_sameEntries_shouldReusePreferences() {
+        setUpWifiEntryPreferenceCategory();
+        final WifiEntry wifiEntry1 = createMockWifiEntry("key1");
+        final WifiEntry wifiEntry2 = createMockWifiEntry("key2");
+        mWifiSettings2.updateWifiEntryListPreferences(Arrays.asList(wifiEntry1, wifiEntry2));
+        final Preference pref1 = mWifiSettings2.mWifiEntryPreferenceCategory.findPreference("key1");
+        final Preference pref2 = mWifiSettings2.mWifiEntryPreferenceCategory.findPreference("key2");
+
+        mWifiSettings2.updateWifiEntryListPreferences(Arrays.asList(wifiEntry2, wifiEntry1));
+
+        assertThat(mWifiSettings2.mWifiEntryPreferenceCategory.findPreference("key1"))
+                .isSameAs(pref1);
+        assertThat(mWifiSettings2.mWifiEntryPreferenceCategory.findPreference("key2"))
+                .isSameAs(pref2);
+        assertThat(pref2.getOrder()).isLessThan(pref1.getOrder());
+        assertThat(pref1.getOrder()).isLessThan(
+                mWifiSettings2.mAddWifiNetworkPreference.getOrder());
+        assertThat(mWifiSettings2.mWifiEntryPreferenceCategory.getPreferenceCount())
+                .isEqualTo(3);
+    }
+
+    @Test
+    public void updateWifiEntryListPreferences_newEntryObject_shouldReplacePreference() {
+        setUpWifiEntryPreferenceCategory();
+        mWifiSettings2.updateWifiEntryListPreferences(
+                Arrays.asList(createMockWifiEntry("key1")));
+        final Preference pref = mWifiSettings2.mWifiEntryPreferenceCategory.findPreference("key1");
+        final WifiEntry wifiEntry = createMockWifiEntry("key1");
+
+        mWifiSettings2.updateWifiEntryListPreferences(Arrays.asList(wifiEntry));
+
+        final LongPressWifiEntryPreference newPref =
+                mWifiSettings2.mWifiEntryPreferenceCategory.findPreference("key1");
+        assertThat(newPref).isNotSameAs(pref);
+        assertThat(newPref.getWifiEntry()).isSameAs(wifiEntry);
+        assertThat(mWifiSettings2.mWifiEntryPreferenceCategory.getPreferenceCount())
+                .isEqualTo(2);
+    }
+
+    @Test
+    public void updateWifiEntryListPreferences_removedEntry_shouldRemovePreference() {
+        setUpWifiEntryPreferenceCategory();
+        final WifiEntry wifiEntry = createMockWifiEntry("key1");
+        mWifiSettings2.updateWifiEntryListPreferences(
+                Arrays.asList(wifiEntry, createMockWifiEntry("key2")));
+
+        mWifiSettings2.updateWifiEntryListPreferences(Arrays.asList(wifiEntry));
+
+        assertThat(mWifiSettings2.mWifiEntryPreferenceCategory.findPreference("key2")).isNull();
+        assertThat(mWifiSettings2.mWifiEntryPreferenceCategory.getPreferenceCount())
+                .isEqualTo(2);
+    }
+
+    @Test
+    public void hideProgressBarDelayed_alreadyPending_shouldNotPostAgain() {
+        final View view = mock(View.class);
+        doReturn(view).when(mWifiSettings2).getView();
+        final ArgumentCaptor<Runnable> captor = ArgumentCaptor.forClass(Runnable.class);
+
+        mWifiSettings2.hideProgressBarDelayed();
+        mWifiSettings2.hideProgressBarDelayed();
+
+        verify(view).postDelayed(captor.capture(), anyLong());
+        verify(view, never()).removeCallbacks(any(Runnable.class));
+
+        captor.getValue().run();
+        mWifiSettings2.hideProgressBarDelayed();
+
+        verify(view, times(2)).postDelayed(any(Runnable.class), anyLong());
+    }
+
     @Test
     public void onWifiEntriesChanged_shouldChangeNextButtonState() {
         mWifiSettings2.onWifiEntriesChanged();
@@ -364,4 +442,17 @@ public class WifiSettings2Test {
         when(wifiDialog2.getController()).thenReturn(controller);
         return wifiDialog2;
     }
+
+    private void setUpWifiEntryPreferenceCategory() {
+        final PreferenceScreen screen =
+                new PreferenceManager(mContext).createPreferenceScreen(mContext);
+        mWifiSettings2.mWifiEntryPreferenceCategory = new PreferenceCategory(mContext);
+        screen.addPreference(mWifiSettings2.mWifiEntryPreferenceCategory);
+    }
+
+    private static WifiEntry createMockWifiEntry(String key) {
+        final WifiEntry wifiEntry = mock(WifiEntry.class);
+        when(wifiEntry.getKey()).thenReturn(key);
+        return wifiEntry;
+    }
 }
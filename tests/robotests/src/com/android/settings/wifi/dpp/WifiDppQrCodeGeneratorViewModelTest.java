@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.wifi.dpp;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.graphics.Bitmap;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class WifiDppQrCodeGeneratorViewModelTest {
+    private static final String QR_CODE = "WIFI:S:ssid;T:WPA;P:password;;";
+    private static final int SIZE = 200;
+
+    private WifiDppQrCodeGeneratorViewModel mViewModel;
+
+    @Before
+    public void setUp() {
+        mViewModel = new WifiDppQrCodeGeneratorViewModel();
+    }
+
+    @Test
+    public void getQrCodeBitmap_sameQrCodeAndSize_shouldReuseBitmap() throws Exception {
+        final Bitmap bitmap = mViewModel.getQrCodeBitmap(QR_CODE, SIZE);
+
+        assertThat(mViewModel.getQrCodeBitmap(QR_CODE, SIZE)).isSameAs(bitmap);
+    }
+
+    @Test
+    public void getQrCodeBitmap_differentQrCodeOrSize_shouldGenerateAgain() throws Exception {
+        final Bitmap bitmap = mViewModel.getQrCodeBitmap(QR_CODE, SIZE);
+
+        final Bitmap resizedBitmap = mViewModel.getQrCodeBitmap(QR_CODE, SIZE + 1);
+        assertThat(resizedBitmap).isNotSameAs(bitmap);
+        assertThat(resizedBitmap.getWidth()).isEqualTo(SIZE + 1);
+        assertThat(mViewModel.getQrCodeBitmap(QR_CODE + "1", SIZE + 1))
+                .isNotSameAs(resizedBitmap);
+    }
+
+    @Test
+    public void onCleared_shouldGenerateAgain() throws Exception {
+        final Bitmap bitmap = mViewModel.getQrCodeBitmap(QR_CODE, SIZE);
+
+        mViewModel.onCleared();
+
+        assertThat(mViewModel.getQrCodeBitmap(QR_CODE, SIZE)).isNotSameAs(bitmap);
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.settings.wifi.qrcode;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.MultiFormatWriter;
+import com.google.zxing.common.BitMatrix;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class QrCodeGeneratorTest {
+    private static final String CONTENTS = "WIFI:S:ssid;T:WPA;P:password;;";
+    private static final int SIZE = 200;
+
+    @Test
+    public void encodeQrCode_shouldDrawBitMatrix() throws Exception {
+        final BitMatrix qrBits = new MultiFormatWriter().encode(CONTENTS, BarcodeFormat.QR_CODE,
+                SIZE, SIZE);
+
+        final Bitmap bitmap = QrCodeGenerator.encodeQrCode(CONTENTS, SIZE);
+
+        assertThat(bitmap.getWidth()).isEqualTo(SIZE);
+        assertThat(bitmap.getHeight()).isEqualTo(SIZE);
+        for (int y = 0; y < SIZE; y += 7) {
+            for (int x = 0; x < SIZE; x += 7) {
+                assertThat(bitmap.getPixel(x, y))
+                        .isEqualTo(qrBits.get(x, y) ? Color.BLACK : Color.WHITE);
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.settings.wifi.qrcode;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.zxing.LuminanceSource;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class QrYuvLuminanceSourceTest {
+    // A 4x3 luminance plane followed by chroma data.
+    private static final byte[] YUV_DATA = {
+            0, 1, 2, 3,
+            4, 5, 6, 7,
+            8, 9, 10, 11,
+            -1, -1, -1, -1, -1, -1};
+
+    @Test
+    public void crop_shouldReadRectangleOfOriginalImage() {
+        final LuminanceSource source = new QrYuvLuminanceSource(YUV_DATA, 4, 3).crop(1, 1, 2, 2);
+
+        assertThat(source.getWidth()).isEqualTo(2);
+        assertThat(source.getHeight()).isEqualTo(2);
+        assertThat(source.getRow(1, null)).isEqualTo(new byte[] {9, 10});
+        assertThat(source.getMatrix()).isEqualTo(new byte[] {5, 6, 9, 10});
+    }
+
+    @Test
+    public void crop_twice_shouldOffsetFromFirstCrop() {
+        final LuminanceSource source =
+                new QrYuvLuminanceSource(YUV_DATA, 4, 3).crop(1, 0, 3, 3).crop(1, 1, 2, 1);
+
+        assertThat(source.getMatrix()).isEqualTo(new byte[] {6, 7});
+    }
+
+    @Test
+    public void crop_fullRows_shouldCopyContiguousRows() {
+        final LuminanceSource source = new QrYuvLuminanceSource(YUV_DATA, 4, 3).crop(0, 1, 4, 2);
+
+        assertThat(source.getMatrix()).isEqualTo(new byte[] {4, 5, 6, 7, 8, 9, 10, 11});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void crop_outsideImage_shouldThrow() {
+        new QrYuvLuminanceSource(YUV_DATA, 4, 3).crop(2, 0, 3, 1);
+    }
+}
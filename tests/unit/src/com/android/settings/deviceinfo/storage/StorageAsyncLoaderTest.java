@@ -23,6 +23,8 @@ import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import android.content.Context;
@@ -221,6 +223,34 @@ public class StorageAsyncLoaderTest {
         assertThat(result.get(PRIMARY_USER_ID).otherAppsSize).isEqualTo(DEFAULT_QUOTA + 11);
     }
 
+    @Test
+    public void testLoadingManyApps() throws Exception {
+        for (int i = 0; i < 40; i++) {
+            addPackage(PACKAGE_NAME_1 + i, 0, 1, 10, ApplicationInfo.CATEGORY_UNDEFINED);
+        }
+
+        SparseArray<StorageAsyncLoader.AppsStorageResult> result = mLoader.loadInBackground();
+
+        assertThat(result.size()).isEqualTo(1);
+        assertThat(result.get(PRIMARY_USER_ID).otherAppsSize).isEqualTo(440L);
+    }
+
+    @Test
+    public void testPackageChanged_onlyChangedPackageIsReloaded() throws Exception {
+        addPackage(PACKAGE_NAME_1, 0, 1, 10, ApplicationInfo.CATEGORY_UNDEFINED);
+        addPackage(PACKAGE_NAME_2, 0, 100, 1000, ApplicationInfo.CATEGORY_UNDEFINED);
+        mLoader.loadInBackground();
+
+        mLoader.onPackageChanged(PACKAGE_NAME_2);
+        SparseArray<StorageAsyncLoader.AppsStorageResult> result = mLoader.loadInBackground();
+
+        verify(mSource, times(1)).getStatsForPackage(anyString(), eq(PACKAGE_NAME_1),
+                any(UserHandle.class));
+        verify(mSource, times(2)).getStatsForPackage(anyString(), eq(PACKAGE_NAME_2),
+                any(UserHandle.class));
+        assertThat(result.get(PRIMARY_USER_ID).otherAppsSize).isEqualTo(1111L);
+    }
+
     private ApplicationInfo addPackage(String packageName, long cacheSize, long codeSize,
             long dataSize, int category) throws Exception {
         StorageStatsSource.AppStorageStats storageStats =